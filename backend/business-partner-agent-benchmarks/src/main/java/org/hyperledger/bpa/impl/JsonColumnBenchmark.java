@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2020-2022 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.impl;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micronaut.core.convert.ConversionContext;
+import org.hyperledger.aries.api.jsonld.VerifiableCredential.VerifiableIndyCredential;
+import org.hyperledger.aries.api.jsonld.VerifiablePresentation;
+import org.hyperledger.bpa.impl.util.Converter;
+import org.hyperledger.bpa.model.converter.VerifiablePresentationConverter;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of reading and writing a partners public profile column, once through a
+ * {@code Map<String, Object>} that is converted into the typed presentation and
+ * once with the typed json attribute converter.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonColumnBenchmark {
+
+    private final Converter conv = new Converter();
+
+    private final VerifiablePresentationConverter vpConverter = new VerifiablePresentationConverter();
+
+    private ObjectMapper mapper;
+
+    private String column;
+
+    private VerifiablePresentation<VerifiableIndyCredential> vp;
+
+    @Setup
+    public void setup() throws IOException {
+        mapper = new ObjectMapper();
+        mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        conv.setMapper(mapper);
+        vpConverter.setMapper(mapper);
+        try (InputStream in = getClass().getResourceAsStream("/verifiablePresentation.json")) {
+            column = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        vp = mapper.readValue(column, Converter.VP_TYPEREF);
+    }
+
+    @Benchmark
+    public VerifiablePresentation<VerifiableIndyCredential> readViaMap() throws IOException {
+        Map<String, Object> map = mapper.readValue(column, Converter.STRING_OBJECT_MAP);
+        return conv.fromMap(map, Converter.VP_TYPEREF);
+    }
+
+    @Benchmark
+    public VerifiablePresentation<VerifiableIndyCredential> readTyped() {
+        return vpConverter.convertToEntityValue(column, ConversionContext.DEFAULT);
+    }
+
+    @Benchmark
+    public String writeViaMap() throws IOException {
+        return mapper.writeValueAsString(conv.toMap(vp));
+    }
+
+    @Benchmark
+    public String writeTyped() {
+        return vpConverter.convertToPersistedValue(vp, ConversionContext.DEFAULT);
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2020-2022 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.impl;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.hyperledger.bpa.api.PartnerAPI;
+import org.hyperledger.bpa.config.BPAMessageSource;
+import org.hyperledger.bpa.impl.aries.schema.SchemaService;
+import org.hyperledger.bpa.impl.util.Converter;
+import org.hyperledger.bpa.persistence.model.Partner;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of converting a page of partners with public profiles into their API
+ * representation, once decoding the stored presentation on every call and once
+ * served from the converters decoded profile cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PartnerConversionBenchmark {
+
+    @Param({ "5000" })
+    int partners;
+
+    private Converter conv;
+
+    private List<Partner> page;
+
+    @Setup
+    public void setup() throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        // label lookups are served from the schema cache in the running agent
+        SchemaService schemaService = new SchemaService() {
+            @Override
+            public String getSchemaLabel(String schemaId) {
+                return "Bank Account";
+            }
+        };
+        BPAMessageSource.DefaultMessageSource msg = new BPAMessageSource.DefaultMessageSource(null) {
+            @Override
+            public String getMessage(String key) {
+                return "Organizational Profile";
+            }
+        };
+        conv = new Converter("did:sov:", mapper, schemaService, null, null, msg);
+
+        byte[] vp;
+        try (InputStream in = getClass().getResourceAsStream("/verifiablePresentation.json")) {
+            vp = in.readAllBytes();
+        }
+        page = new ArrayList<>(partners);
+        for (int i = 0; i < partners; i++) {
+            page.add(Partner.builder()
+                    .id(UUID.randomUUID())
+                    .did("did:sov:partner" + i)
+                    .alias("Partner " + i)
+                    .verifiablePresentation(mapper.readValue(vp, Converter.VP_TYPEREF))
+                    .build());
+        }
+        page.forEach(conv::toAPIObject);
+    }
+
+    @Benchmark
+    public void decodeEveryTime(Blackhole bh) {
+        for (Partner p : page) {
+            PartnerAPI api = conv.toAPIObject(p.getVerifiablePresentation());
+            PartnerAPI.copyFrom(api, p);
+            bh.consume(api);
+        }
+    }
+
+    @Benchmark
+    public void decodedProfileCache(Blackhole bh) {
+        for (Partner p : page) {
+            bh.consume(conv.toAPIObject(p));
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2020-2022 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import org.hyperledger.bpa.core.RegisteredWebhook;
+import org.hyperledger.bpa.core.RegisteredWebhook.WebhookEventType;
+import org.hyperledger.bpa.core.WebhookEvent;
+import org.hyperledger.bpa.impl.util.Converter;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of building the webhook requests for one event. Run with
+ * {@code -prof gc} to compare the allocation per event of serialising the event
+ * per subscriber with serialising it once into a shared request body.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WebhookPayloadBenchmark {
+
+    @Param({ "1", "10", "50" })
+    int subscribers;
+
+    @Param({ "false", "true" })
+    boolean signed;
+
+    private final Converter conv = new Converter();
+
+    private List<RegisteredWebhook> hooks;
+
+    private Map<String, Object> partner;
+
+    @Setup
+    public void setup() {
+        conv.setMapper(new ObjectMapper());
+        hooks = new ArrayList<>();
+        for (int i = 0; i < subscribers; i++) {
+            hooks.add(RegisteredWebhook.builder()
+                    .url("https://subscriber" + i + ".example.com/hook")
+                    .registeredEvent(List.of(WebhookEventType.PARTNER_ADD))
+                    .signingSecret(signed ? "secret" + i : null)
+                    .build());
+        }
+        partner = Map.of(
+                "id", "6c9f1d7e-2d6b-4a3c-9e55-3f0f7a4b2c11",
+                "did", "did:sov:M6Mbe3qx7vB4wpZF4sBRjt",
+                "alias", "Example Partner",
+                "state", "ACTIVE",
+                "trustPing", Boolean.TRUE,
+                "supportedCredentials", List.of("bank_account", "commercial_register"));
+    }
+
+    /** Previous behaviour: every subscriber serialises the event on its own */
+    @Benchmark
+    public void perSubscriber(Blackhole bh) {
+        for (RegisteredWebhook hook : hooks) {
+            WebhookEvent<?> event = WebhookEvent.builder()
+                    .payload(partner)
+                    .type(WebhookEventType.PARTNER_ADD)
+                    .sent(Instant.now().toEpochMilli())
+                    .build();
+            conv.writeValueAsString(event).ifPresent(json -> bh.consume(new Request.Builder()
+                    .url(hook.getUrl())
+                    .post(RequestBody.create(json, WebhookDispatcher.JSON_TYPE))
+                    .build()));
+        }
+    }
+
+    /** Current behaviour: serialised once, the request body is shared */
+    @Benchmark
+    public void shared(Blackhole bh) {
+        WebhookEvent<?> event = WebhookEvent.builder()
+                .payload(partner)
+                .type(WebhookEventType.PARTNER_ADD)
+                .sent(Instant.now().toEpochMilli())
+                .build();
+        conv.writeValueAsBytes(event).map(WebhookDispatcher.Payload::new).ifPresent(
+                p -> hooks.forEach(hook -> bh.consume(WebhookDispatcher.buildRequest(hook, p))));
+    }
+}
@@ -17,6 +17,7 @@
  */
 package org.hyperledger.bpa.core;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.*;
 import lombok.experimental.SuperBuilder;
 
@@ -40,12 +41,20 @@ public class RegisteredWebhook {
     @Size(min = 1)
     private List<WebhookEventType> registeredEvent;
     private WebhookCredentials credentials;
+    /**
+     * Optional, if set every call is signed with a HMAC-SHA256 of the body. Can be
+     * set, but is never returned by the api.
+     */
+    @ToString.Exclude
+    @JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
+    private String signingSecret;
 
     public RegisteredWebhook(RegisteredWebhook hook) {
         super();
         this.url = hook.getUrl();
         this.registeredEvent = hook.getRegisteredEvent();
         this.credentials = hook.getCredentials();
+        this.signingSecret = hook.getSigningSecret();
     }
 
     public enum WebhookEventType {
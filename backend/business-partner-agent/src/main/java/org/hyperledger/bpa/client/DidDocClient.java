@@ -19,12 +19,13 @@ package org.hyperledger.bpa.client;
 
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
-import io.micronaut.cache.annotation.Cacheable;
+import io.micronaut.context.annotation.Value;
+import io.micronaut.scheduling.TaskExecutors;
 import jakarta.inject.Inject;
+import jakarta.inject.Named;
 import jakarta.inject.Singleton;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
-import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
 import org.hyperledger.aries.AriesClient;
@@ -36,14 +37,17 @@ import org.hyperledger.aries.config.GsonConfig;
 import org.hyperledger.bpa.api.exception.NetworkException;
 import org.hyperledger.bpa.api.exception.PartnerException;
 import org.hyperledger.bpa.config.BPAMessageSource;
+import org.hyperledger.bpa.impl.util.LookupCache;
 
 import java.io.IOException;
 import java.lang.reflect.Type;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.time.Duration;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
 
 /**
  * Did document and public profile resolution
@@ -61,12 +65,54 @@ public class DidDocClient {
     @Inject
     BPAMessageSource.DefaultMessageSource msg;
 
-    private final Gson gson = GsonConfig.defaultConfig();
+    @Inject
+    HttpClients http;
+
+    @Inject
+    @Named(TaskExecutors.IO)
+    ExecutorService executor;
+
+    @Value("${bpa.did.cache.document-refresh}")
+    Duration documentRefresh;
 
-    private final OkHttpClient okClient = new OkHttpClient();
+    @Value("${bpa.did.cache.expire-after}")
+    Duration expireAfter;
+
+    @Value("${bpa.did.cache.maximum-size}")
+    Long maximumSize;
+
+    private LookupCache<Optional<DIDDocument>> didDocuments;
+
+    private final Gson gson = GsonConfig.defaultConfig();
 
-    @Cacheable(cacheNames = { "ur-cache" })
+    /**
+     * Resolves the did document through aca-py. Results are cached, concurrent
+     * calls for the same did share one resolution.
+     *
+     * @param did the fully qualified did
+     * @return {@link DIDDocument} if the did could be resolved
+     */
     public Optional<DIDDocument> getDidDocument(@NonNull String did) {
+        return getDidDocuments().get(did);
+    }
+
+    public void invalidateDidDocument(@NonNull String did) {
+        getDidDocuments().invalidate(did);
+    }
+
+    public LookupCache.Stats didDocumentCacheStats() {
+        return getDidDocuments().stats();
+    }
+
+    private synchronized LookupCache<Optional<DIDDocument>> getDidDocuments() {
+        if (didDocuments == null) {
+            didDocuments = new LookupCache<>("did-document", documentRefresh, expireAfter, maximumSize, executor,
+                    this::resolveDidDocument);
+        }
+        return didDocuments;
+    }
+
+    private Optional<DIDDocument> resolveDidDocument(@NonNull String did) {
         try {
             return ac.resolverResolveDid(did);
         } catch (IOException e) {
@@ -88,7 +134,7 @@ public class DidDocClient {
             Request request = new Request.Builder()
                     .url(url2.toString())
                     .build();
-            try (Response response = okClient.newCall(request).execute()) {
+            try (Response response = http.client(HttpClients.DID_DOC).newCall(request).execute()) {
                 if (response.isSuccessful() && response.body() != null) {
                     String body = Objects.requireNonNull(response.body()).string();
                     T md = gson.fromJson(body, type);
@@ -0,0 +1,286 @@
+/*
+ * Copyright (c) 2020-2022 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.client;
+
+import io.micronaut.context.annotation.Value;
+import io.micronaut.scheduling.annotation.Scheduled;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Response;
+import org.hyperledger.bpa.config.HttpClientProfile;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Outbound http clients for calls to other parties, e.g. did documents, public
+ * profiles, the ledger explorer and webhooks. All clients share one connection
+ * pool and use http/2 if the target supports it. Each named profile has its own
+ * timeouts. Calls are guarded per target host by a concurrency limit and a
+ * circuit breaker, and their latency is recorded.
+ */
+@Slf4j
+@Singleton
+public class HttpClients {
+
+    public static final String DID_DOC = "did-doc";
+    public static final String LEDGER_EXPLORER = "ledger-explorer";
+    public static final String INVITATION = "invitation";
+    public static final String WEBHOOK = "webhook";
+
+    /** upper bounds of the latency histogram buckets */
+    private static final long[] LATENCY_BUCKETS_MS = { 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000 };
+
+    private final Map<String, HttpClientProfile> profiles;
+
+    private final int maxRequestsPerHost;
+
+    private final Duration queueTimeout;
+
+    private final int failureThreshold;
+
+    private final Duration openDuration;
+
+    private final OkHttpClient base;
+
+    private final Map<String, OkHttpClient> clients = new ConcurrentHashMap<>();
+
+    private final Map<String, Target> targets = new ConcurrentHashMap<>();
+
+    @Inject
+    public HttpClients(
+            List<HttpClientProfile> profiles,
+            @Value("${bpa.http.max-idle-connections}") Integer maxIdleConnections,
+            @Value("${bpa.http.keep-alive}") Duration keepAlive,
+            @Value("${bpa.http.max-requests-per-host}") Integer maxRequestsPerHost,
+            @Value("${bpa.http.queue-timeout}") Duration queueTimeout,
+            @Value("${bpa.http.circuit-breaker.failure-threshold}") Integer failureThreshold,
+            @Value("${bpa.http.circuit-breaker.open-duration}") Duration openDuration) {
+        this.profiles = profiles.stream()
+                .collect(Collectors.toMap(HttpClientProfile::getName, Function.identity()));
+        this.maxRequestsPerHost = maxRequestsPerHost;
+        this.queueTimeout = queueTimeout;
+        this.failureThreshold = failureThreshold;
+        this.openDuration = openDuration;
+        this.base = new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(maxIdleConnections, keepAlive.toMillis(), TimeUnit.MILLISECONDS))
+                .addInterceptor(this::guard)
+                .build();
+    }
+
+    /**
+     * Allows to use the clients outside of the application context, e.g. in tests.
+     *
+     * @param profiles the client profiles, missing profiles use the defaults
+     * @return {@link HttpClients} with the default pool and guard settings
+     */
+    public static HttpClients withDefaults(HttpClientProfile... profiles) {
+        return new HttpClients(List.of(profiles), 32, Duration.ofMinutes(5), 16, Duration.ofSeconds(10),
+                5, Duration.ofSeconds(30));
+    }
+
+    /**
+     * @param profile the profile name, unknown profiles use the default settings
+     * @return the shared client of the profile
+     */
+    public OkHttpClient client(@NonNull String profile) {
+        return clients.computeIfAbsent(profile, this::build);
+    }
+
+    public List<TargetStats> stats() {
+        return targets.values().stream()
+                .map(Target::stats)
+                .sorted(Comparator.comparing(TargetStats::target))
+                .collect(Collectors.toList());
+    }
+
+    @Scheduled(fixedDelay = "15m", initialDelay = "15m")
+    void logStats() {
+        stats().forEach(s -> log.info("Outbound http: {}", s));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // clients without own limits share the dispatcher of the base client
+        Set<Dispatcher> dispatchers = Collections.newSetFromMap(new IdentityHashMap<>());
+        dispatchers.add(base.dispatcher());
+        clients.values().forEach(c -> dispatchers.add(c.dispatcher()));
+        dispatchers.forEach(d -> d.executorService().shutdown());
+        base.connectionPool().evictAll();
+    }
+
+    private OkHttpClient build(String name) {
+        HttpClientProfile p = profiles.getOrDefault(name, new HttpClientProfile(name));
+        OkHttpClient.Builder b = base.newBuilder()
+                .connectTimeout(p.getConnectTimeout())
+                .readTimeout(p.getReadTimeout())
+                .writeTimeout(p.getWriteTimeout())
+                .callTimeout(p.getCallTimeout())
+                .followRedirects(p.isFollowRedirects());
+        if (p.getMaxRequests() != null || p.getMaxRequestsPerHost() != null) {
+            Dispatcher dispatcher = new Dispatcher();
+            if (p.getMaxRequests() != null) {
+                dispatcher.setMaxRequests(p.getMaxRequests());
+            }
+            if (p.getMaxRequestsPerHost() != null) {
+                dispatcher.setMaxRequestsPerHost(p.getMaxRequestsPerHost());
+            }
+            b.dispatcher(dispatcher);
+        }
+        return b.build();
+    }
+
+    private Response guard(Interceptor.Chain chain) throws IOException {
+        HttpUrl url = chain.request().url();
+        Target target = targets.computeIfAbsent(url.host() + ":" + url.port(), Target::new);
+        boolean trial = target.enter();
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            Response response = chain.proceed(chain.request());
+            success = response.code() < 500;
+            return response;
+        } finally {
+            target.exit(System.nanoTime() - start, success, trial);
+        }
+    }
+
+    /**
+     * Thrown without calling the target while its circuit is open.
+     */
+    public static final class CircuitOpenException extends IOException {
+        public CircuitOpenException(String target) {
+            super("Calls to " + target + " are suspended after repeated failures");
+        }
+    }
+
+    public record TargetStats(String target, long calls, long failures, long rejected, boolean open,
+            Map<String, Long> latency) {
+    }
+
+    private final class Target {
+
+        private final String name;
+        private final Semaphore permits = new Semaphore(maxRequestsPerHost);
+        private final LongAdder[] latency = new LongAdder[LATENCY_BUCKETS_MS.length + 1];
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final AtomicInteger consecutiveFailures = new AtomicInteger();
+        private final AtomicBoolean trialCall = new AtomicBoolean();
+        private volatile boolean open;
+        private volatile long openUntil;
+
+        Target(String name) {
+            this.name = name;
+            Arrays.setAll(latency, i -> new LongAdder());
+        }
+
+        /**
+         * @return true if this is the trial call of an open circuit
+         */
+        boolean enter() throws IOException {
+            boolean trial = false;
+            if (open) {
+                // one trial call is let through once the open duration has passed
+                if (System.nanoTime() - openUntil < 0 || !trialCall.compareAndSet(false, true)) {
+                    rejected.increment();
+                    throw new CircuitOpenException(name);
+                }
+                trial = true;
+            }
+            try {
+                if (!permits.tryAcquire(queueTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                    rejected.increment();
+                    throw new IOException("Too many concurrent calls to " + name);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for a call to " + name, e);
+            } catch (IOException e) {
+                if (trial) {
+                    trialCall.set(false);
+                }
+                throw e;
+            }
+            return trial;
+        }
+
+        void exit(long nanos, boolean success, boolean trial) {
+            permits.release();
+            calls.increment();
+            latency[bucket(nanos)].increment();
+            if (success) {
+                consecutiveFailures.set(0);
+                if (open) {
+                    log.info("Calls to {} succeed again, closing circuit", name);
+                    open = false;
+                }
+            } else {
+                failures.increment();
+                if (consecutiveFailures.incrementAndGet() >= failureThreshold && (!open || trial)) {
+                    if (!open) {
+                        log.warn("{} calls to {} failed in a row, suspending calls for {}",
+                                failureThreshold, name, openDuration);
+                    }
+                    openUntil = System.nanoTime() + openDuration.toNanos();
+                    open = true;
+                }
+            }
+            if (trial) {
+                trialCall.set(false);
+            }
+        }
+
+        TargetStats stats() {
+            Map<String, Long> histogram = new LinkedHashMap<>();
+            for (int i = 0; i < latency.length; i++) {
+                String label = i < LATENCY_BUCKETS_MS.length ? "le" + LATENCY_BUCKETS_MS[i] + "ms" : "inf";
+                histogram.put(label, latency[i].sum());
+            }
+            return new TargetStats(name, calls.sum(), failures.sum(), rejected.sum(), open, histogram);
+        }
+
+        private int bucket(long nanos) {
+            long ms = TimeUnit.NANOSECONDS.toMillis(nanos);
+            for (int i = 0; i < LATENCY_BUCKETS_MS.length; i++) {
+                if (ms <= LATENCY_BUCKETS_MS[i]) {
+                    return i;
+                }
+            }
+            return LATENCY_BUCKETS_MS.length;
+        }
+    }
+}
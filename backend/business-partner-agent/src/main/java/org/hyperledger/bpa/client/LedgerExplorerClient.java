@@ -26,7 +26,6 @@ import lombok.NonNull;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import okhttp3.HttpUrl;
-import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
 import org.apache.commons.lang3.StringUtils;
@@ -71,7 +70,9 @@ public class LedgerExplorerClient {
     @Setter(value = AccessLevel.PROTECTED)
     ObjectMapper mapper;
 
-    private final OkHttpClient ok = new OkHttpClient();
+    @Inject
+    @Setter(value = AccessLevel.PROTECTED)
+    HttpClients http;
 
     /**
      * Query the ledger explorer for a list of credential definitions that are based
@@ -97,7 +98,7 @@ public class LedgerExplorerClient {
             Request request = new Request.Builder()
                     .url(b)
                     .build();
-            try (Response response = ok.newCall(request).execute()) {
+            try (Response response = http.client(HttpClients.LEDGER_EXPLORER).newCall(request).execute()) {
                 if (response.isSuccessful() && response.body() != null) {
                     String body = response.body().string();
                     LedgerQueryResult md = mapper.readValue(body, LedgerQueryResult.class);
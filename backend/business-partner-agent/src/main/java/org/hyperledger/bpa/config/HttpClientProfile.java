@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2020-2022 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.config;
+
+import io.micronaut.context.annotation.EachProperty;
+import io.micronaut.context.annotation.Parameter;
+import io.micronaut.core.annotation.Nullable;
+import lombok.Data;
+
+import java.time.Duration;
+
+/**
+ * Settings of a named outbound http client, see
+ * {@link org.hyperledger.bpa.client.HttpClients}
+ */
+@EachProperty("bpa.http.profiles")
+@Data
+public class HttpClientProfile {
+
+    /**
+     * Bean name
+     */
+    private String name;
+
+    private Duration connectTimeout = Duration.ofSeconds(10);
+    private Duration readTimeout = Duration.ofSeconds(10);
+    private Duration writeTimeout = Duration.ofSeconds(10);
+    /** overall time of a call including redirects, 0 means no limit */
+    private Duration callTimeout = Duration.ZERO;
+    private boolean followRedirects = true;
+    /** limits of asynchronous calls, the shared dispatcher is used if not set */
+    @Nullable
+    private Integer maxRequests;
+    @Nullable
+    private Integer maxRequestsPerHost;
+
+    public HttpClientProfile(@Parameter String name) {
+        this.name = name;
+    }
+}
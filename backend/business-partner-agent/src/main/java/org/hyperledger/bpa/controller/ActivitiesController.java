@@ -28,6 +28,8 @@ import io.micronaut.security.rules.SecurityRule;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.inject.Inject;
 import org.hyperledger.bpa.controller.api.activity.ActivityItem;
+import org.hyperledger.bpa.controller.api.activity.ActivityPage;
+import org.hyperledger.bpa.controller.api.activity.ActivityPageParameters;
 import org.hyperledger.bpa.controller.api.activity.ActivitySearchParameters;
 import org.hyperledger.bpa.impl.ActivityManager;
 
@@ -54,4 +56,15 @@ public class ActivitiesController {
         return HttpResponse.ok(activityManager.getItems(parameters));
     }
 
+    /**
+     * List items page by page, newest first
+     *
+     * @param parameters ActivityPageParameters Filters and cursor
+     * @return {@link ActivityPage}
+     */
+    @Get("/page")
+    public HttpResponse<ActivityPage> pageActivities(@RequestBean @Valid ActivityPageParameters parameters) {
+        return HttpResponse.ok(activityManager.getPage(parameters));
+    }
+
 }
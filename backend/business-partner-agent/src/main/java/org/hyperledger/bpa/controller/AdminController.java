@@ -36,6 +36,7 @@ import org.hyperledger.bpa.api.exception.WrongApiUsageException;
 import org.hyperledger.bpa.config.RuntimeConfig;
 import org.hyperledger.bpa.controller.api.admin.*;
 import org.hyperledger.bpa.impl.TagService;
+import org.hyperledger.bpa.impl.activity.PartnerCredDefLookup;
 import org.hyperledger.bpa.impl.aries.schema.RestrictionsManager;
 import org.hyperledger.bpa.impl.aries.schema.SchemaService;
 import org.hyperledger.bpa.impl.mode.indy.EndpointService;
@@ -67,6 +68,9 @@ public class AdminController {
     @Inject
     RuntimeConfig config;
 
+    @Inject
+    PartnerCredDefLookup credLookup;
+
     /**
      * List configured schemas
      *
@@ -98,8 +102,10 @@ public class AdminController {
     @Post("/schema")
     public HttpResponse<SchemaAPI> addSchema(@Body @Valid AddSchemaRequest req) {
         if (req instanceof AddSchemaRequest.AddIndySchema) {
-            return HttpResponse.ok(schemaService.addIndySchema(req.getSchemaId(), req.getLabel(),
-                    req.getDefaultAttributeName(), ((AddSchemaRequest.AddIndySchema) req).getTrustedIssuer()));
+            SchemaAPI schema = schemaService.addIndySchema(req.getSchemaId(), req.getLabel(),
+                    req.getDefaultAttributeName(), ((AddSchemaRequest.AddIndySchema) req).getTrustedIssuer());
+            credLookup.lookupTypesForNewSchemasAsync();
+            return HttpResponse.ok(schema);
         } else if (req instanceof AddSchemaRequest.AddJsonLDSchema addSchema) {
             return HttpResponse.ok(schemaService.addJsonLDSchema(req.getSchemaId(), req.getLabel(),
                     req.getDefaultAttributeName(), addSchema.getLdType(), addSchema.getAttributes()));
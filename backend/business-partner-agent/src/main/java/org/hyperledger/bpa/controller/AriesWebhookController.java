@@ -17,6 +17,7 @@
  */
 package org.hyperledger.bpa.controller;
 
+import io.micronaut.http.HttpResponse;
 import io.micronaut.http.annotation.Body;
 import io.micronaut.http.annotation.Controller;
 import io.micronaut.http.annotation.PathVariable;
@@ -29,13 +30,12 @@ import io.swagger.v3.oas.annotations.Hidden;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.inject.Inject;
 import lombok.extern.slf4j.Slf4j;
-import org.hyperledger.aries.webhook.EventHandler;
 import org.hyperledger.bpa.config.acapy.AcaPyAuthFetcher;
-
-import java.util.List;
+import org.hyperledger.bpa.impl.aries.EventInboxManager;
 
 /**
- * Handles incoming aca-py webhook events
+ * Handles incoming aca-py webhook events. Events are persisted in the inbox and
+ * handled in the background, so that aca-py does not have to wait.
  */
 @Slf4j
 @Hidden
@@ -48,16 +48,17 @@ public class AriesWebhookController {
     public static final String WEBHOOK_CONTROLLER_PATH = "/log/topic";
 
     @Inject
-    List<EventHandler> handlers;
+    EventInboxManager inbox;
 
     @Secured({ AcaPyAuthFetcher.ROLE_ACA_PY })
     @Post(WEBHOOK_CONTROLLER_PATH + "/{eventType}")
-    public void logEvent(
+    public HttpResponse<Void> logEvent(
             @PathVariable String eventType,
             @Body String eventBody) {
 
         log.info("Webhook received, type: {}", eventType);
 
-        handlers.forEach(eventHandler -> eventHandler.handleEvent(eventType, eventBody));
+        inbox.append(eventType, eventBody);
+        return HttpResponse.accepted();
     }
 }
@@ -25,12 +25,14 @@ import io.micronaut.scheduling.annotation.ExecuteOn;
 import io.micronaut.security.annotation.Secured;
 import io.micronaut.security.rules.SecurityRule;
 import io.micronaut.validation.Validated;
+import io.reactivex.rxjava3.core.Single;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.parameters.RequestBody;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.inject.Inject;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
+import org.hyperledger.aries.api.connection.ConnectionState;
 import org.hyperledger.bpa.api.PartnerAPI;
 import org.hyperledger.bpa.api.aries.AriesProofExchange;
 import org.hyperledger.bpa.api.exception.WrongApiUsageException;
@@ -101,6 +103,27 @@ public class PartnerController {
         return HttpResponse.ok(pm.getPartners());
     }
 
+    /**
+     * Get known partners page by page, the result does not contain the public
+     * profile
+     *
+     * @param state  Filter partners by connection state
+     * @param tag    Filter partners by tag id
+     * @param name   Filter partners by the beginning of the alias or label
+     * @param cursor nextCursor of the previous page, omit for the first page
+     * @param size   page size
+     * @return {@link PartnerPage}
+     */
+    @Get("/page")
+    public HttpResponse<PartnerPage> getPartnerPage(
+            @Parameter(description = "connection state") @Nullable @QueryValue ConnectionState state,
+            @Parameter(description = "tag id") @Nullable @QueryValue UUID tag,
+            @Parameter(description = "alias or label prefix") @Nullable @QueryValue String name,
+            @Parameter(description = "cursor") @Nullable @QueryValue String cursor,
+            @Parameter(description = "page size") @QueryValue(defaultValue = "50") Integer size) {
+        return HttpResponse.ok(pm.getPartnerPage(state, tag, name, cursor, size));
+    }
+
     /**
      * Get partner by id
      *
@@ -194,8 +217,8 @@ public class PartnerController {
      * @return {@link PartnerAPI}
      */
     @Get("/lookup/{did}")
-    public HttpResponse<PartnerAPI> lookupPartner(@PathVariable String did) {
-        return HttpResponse.ok(partnerLookup.lookupPartner(did));
+    public Single<HttpResponse<PartnerAPI>> lookupPartner(@PathVariable String did) {
+        return partnerLookup.lookupPartnerAsync(did).map(HttpResponse::ok);
     }
 
     /**
@@ -20,13 +20,16 @@ package org.hyperledger.bpa.controller;
 import io.micronaut.http.HttpResponse;
 import io.micronaut.http.annotation.Controller;
 import io.micronaut.http.annotation.Get;
+import io.micronaut.http.annotation.QueryValue;
 import io.micronaut.scheduling.TaskExecutors;
 import io.micronaut.scheduling.annotation.ExecuteOn;
 import io.micronaut.security.annotation.Secured;
 import io.micronaut.security.rules.SecurityRule;
+import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.inject.Inject;
 import org.hyperledger.bpa.controller.api.stats.BPAStats;
+import org.hyperledger.bpa.controller.api.stats.StatsPeriod;
 import org.hyperledger.bpa.impl.StatsService;
 
 @Controller("/api/status")
@@ -41,10 +44,13 @@ public class StatsController {
     /**
      * Get simple BPA information and usage statistics
      *
+     * @param period {@link StatsPeriod} of the period totals, defaults to the last
+     *               24 hours
      * @return {@link BPAStats}
      */
     @Get
-    public HttpResponse<BPAStats> getStats() {
-        return HttpResponse.ok(stats.collectStats());
+    public HttpResponse<BPAStats> getStats(
+            @Parameter(description = "period") @QueryValue(defaultValue = "LAST_24_HOURS") StatsPeriod period) {
+        return HttpResponse.ok(stats.collectStats(period));
     }
 }
@@ -17,6 +17,9 @@
  */
 package org.hyperledger.bpa.controller;
 
+import com.fasterxml.jackson.core.JacksonException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.micronaut.security.annotation.Secured;
 import io.micronaut.security.rules.SecurityRule;
 import io.micronaut.websocket.WebSocketBroadcaster;
@@ -29,10 +32,22 @@ import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
 import lombok.extern.slf4j.Slf4j;
 import org.hyperledger.bpa.impl.messaging.websocket.MessageService;
+import org.hyperledger.bpa.impl.messaging.websocket.SessionFilter;
 
 /**
  * Handles frontend websocket connections. TODO: does not work when scaled to
  * multiple instances, if this is the case redis pub/sub is required
+ * <p>
+ * Notifications that were stored while no session was connected are replayed,
+ * in the order they were stored and with their sequence, when a session opens.
+ * They are kept until the client acknowledges them by sending the sequence of
+ * the last one it received, e.g. {"ack": 42}. Clients that reconnect can pass
+ * it as lastSeen query parameter to resume after it.
+ * <p>
+ * Sessions only receive the events they are interested in, see
+ * {@link SessionFilter}. The filter is set with the query parameters types and
+ * partnerIds on connect, and can be changed by sending it as json message, e.g.
+ * {"types": ["TASK_ADDED"], "partnerIds": ["..."]}.
  */
 @Slf4j
 @Singleton
@@ -43,6 +58,9 @@ public class WebsocketController {
     @Inject
     MessageService msg;
 
+    @Inject
+    ObjectMapper mapper;
+
     @SuppressWarnings("unused")
     private final WebSocketBroadcaster broadcaster;
 
@@ -53,13 +71,25 @@ public class WebsocketController {
     @OnOpen
     public void onOpen(WebSocketSession session) {
         log.debug("New websocket session: {}", session.getId());
+        SessionFilter.fromRequest(session).applyTo(session);
         msg.subscribe(session);
-        msg.sendStored();
+        msg.sendStored(session.getRequestParameters().get("lastSeen", Long.class).orElse(null));
     }
 
     @OnMessage
     public void onMessage(String message, WebSocketSession session) {
         log.debug("Received websocket message: {} -> {}", session.getId(), message);
+        try {
+            JsonNode json = mapper.readTree(message);
+            if (json.has("ack")) {
+                msg.acknowledge(json.get("ack").asLong());
+            } else {
+                mapper.treeToValue(json, SessionFilter.class).applyTo(session);
+            }
+        } catch (JacksonException e) {
+            log.warn("Ignoring websocket message that is neither an ack nor a session filter: {}",
+                    e.getMessage());
+        }
     }
 
     @OnClose
@@ -37,6 +37,13 @@ public class WebSocketMessageBody {
     @NonNull
     private WebSocketMessage message;
 
+    /**
+     * set when a stored message is replayed, the client acknowledges it, see
+     * MessageService.sendStored
+     */
+    @Nullable
+    private Long sequence;
+
     @Data
     @NoArgsConstructor
     @AllArgsConstructor
@@ -60,6 +67,7 @@ public class WebSocketMessageBody {
         ON_PARTNER_ADDED,
         ON_PARTNER_ACCEPTED,
         ON_PARTNER_REMOVED,
+        ON_PARTNER_VERIFIED,
         ON_PRESENTATION_VERIFIED,
         ON_PRESENTATION_PROVED,
         ON_PRESENTATION_REQUEST_DECLINED,
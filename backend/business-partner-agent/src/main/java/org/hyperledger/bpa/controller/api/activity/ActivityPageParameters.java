@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2020-2022 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.controller.api.activity;
+
+import io.micronaut.core.annotation.Introspected;
+import io.micronaut.core.annotation.Nullable;
+import io.micronaut.http.annotation.QueryValue;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.UUID;
+
+@Data
+@NoArgsConstructor
+@Introspected
+public class ActivityPageParameters {
+    /** Include completed activities */
+    @Nullable
+    @QueryValue
+    private Boolean activity;
+    /** Include open tasks */
+    @Nullable
+    @QueryValue
+    private Boolean task;
+    @Nullable
+    @QueryValue
+    private ActivityType type;
+    @Nullable
+    @QueryValue
+    private UUID partnerId;
+    /** Updated at or after, ISO instant */
+    @Nullable
+    @QueryValue
+    private Instant from;
+    /** Updated before, ISO instant */
+    @Nullable
+    @QueryValue
+    private Instant to;
+    /** nextCursor of the previous page, omit for the first page */
+    @Nullable
+    @QueryValue
+    private String cursor;
+    @Nullable
+    @QueryValue
+    private Integer size;
+}
@@ -38,4 +38,8 @@ public class BPAStats {
 
     private DashboardCounts totals;
     private DashboardCounts periodTotals;
+    /**
+     * Period of the period totals
+     */
+    private StatsPeriod period;
 }
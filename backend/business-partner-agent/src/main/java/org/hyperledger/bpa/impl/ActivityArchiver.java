@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2020-2022 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.impl;
+
+import io.micronaut.context.annotation.Value;
+import io.micronaut.scheduling.annotation.Scheduled;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+import org.hyperledger.bpa.persistence.repository.ActivityRepository;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Moves completed activities that were not updated within the retention period
+ * into the activity_history table, which is partitioned by month. Keeps the
+ * live table, and with it the activity feed, small.
+ */
+@Slf4j
+@Singleton
+public class ActivityArchiver {
+
+    @Value("${bpa.activity.retention}")
+    Duration retention;
+
+    @Value("${bpa.activity.archive-batch-size}")
+    Integer batchSize;
+
+    @Inject
+    ActivityRepository activityRepo;
+
+    @Inject
+    ClusterJobRunner jobs;
+
+    @Scheduled(fixedDelay = "1h", initialDelay = "10m")
+    void scheduledArchiveCompleted() {
+        jobs.runExclusive("archive-activities", Duration.ofMinutes(50), this::archiveCompleted);
+    }
+
+    void archiveCompleted() {
+        if (retention.isZero() || retention.isNegative()) {
+            return;
+        }
+        Instant cutoff = Instant.now().minus(retention);
+        int total = 0;
+        int moved;
+        do {
+            moved = activityRepo.archiveCompleted(cutoff, batchSize);
+            total += moved;
+        } while (moved == batchSize);
+        if (total > 0) {
+            log.info("Archived {} completed activities last updated before {}", total, cutoff);
+        }
+    }
+}
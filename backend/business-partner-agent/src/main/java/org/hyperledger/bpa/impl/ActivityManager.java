@@ -17,18 +17,23 @@
  */
 package org.hyperledger.bpa.impl;
 
+import io.micronaut.context.annotation.Value;
 import io.micronaut.context.event.ApplicationEventPublisher;
 import io.micronaut.core.annotation.NonNull;
 import jakarta.inject.Inject;
 import lombok.NoArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.hyperledger.aries.api.present_proof.PresentationExchangeRole;
+import org.hyperledger.bpa.api.PartnerAPI;
 import org.hyperledger.bpa.api.aries.AriesCredential;
+import org.hyperledger.bpa.api.exception.WrongApiUsageException;
 import org.hyperledger.bpa.api.notification.ActivityNotificationEvent;
 import org.hyperledger.bpa.api.notification.TaskAddedEvent;
 import org.hyperledger.bpa.api.notification.TaskCompletedEvent;
+import org.hyperledger.bpa.config.BPAMessageSource;
 import org.hyperledger.bpa.controller.api.activity.*;
 import org.hyperledger.bpa.impl.util.Converter;
+import org.hyperledger.bpa.impl.util.KeysetCursor;
 import org.hyperledger.bpa.persistence.model.Activity;
 import org.hyperledger.bpa.persistence.model.Partner;
 import org.hyperledger.bpa.persistence.model.PartnerProof;
@@ -36,14 +41,15 @@ import org.hyperledger.bpa.persistence.repository.ActivityRepository;
 import org.hyperledger.bpa.persistence.repository.PartnerRepository;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.List;
-import java.util.Optional;
+import java.util.*;
 import java.util.stream.Collectors;
 
 @Slf4j
 @NoArgsConstructor
 public class ActivityManager {
 
+    private static final int DEFAULT_PAGE_SIZE = 50;
+
     @Inject
     PartnerRepository partnerRepo;
 
@@ -56,6 +62,12 @@ public class ActivityManager {
     @Inject
     ApplicationEventPublisher eventPublisher;
 
+    @Inject
+    BPAMessageSource.DefaultMessageSource ms;
+
+    @Value("${bpa.activity.max-page-size}")
+    Integer maxPageSize;
+
     public List<ActivityItem> getItems(ActivitySearchParameters parameters) {
         List<Activity> activities;
 
@@ -84,6 +96,52 @@ public class ActivityManager {
         return activities.stream().map(this::convert).collect(Collectors.toList());
     }
 
+    /**
+     * Keyset paginated activity feed, partners are loaded and converted once per
+     * page
+     *
+     * @param parameters {@link ActivityPageParameters}
+     * @return {@link ActivityPage}
+     */
+    public ActivityPage getPage(@NonNull ActivityPageParameters parameters) {
+        int limit = Math.max(1, Math.min(
+                parameters.getSize() != null ? parameters.getSize() : DEFAULT_PAGE_SIZE, maxPageSize));
+        KeysetCursor after = null;
+        if (parameters.getCursor() != null) {
+            after = KeysetCursor.decode(parameters.getCursor())
+                    .orElseThrow(() -> new WrongApiUsageException(ms.getMessage(
+                            "api.activity.page.invalid.cursor", Map.of("cursor", parameters.getCursor()))));
+        }
+        boolean activities = !Boolean.FALSE.equals(parameters.getActivity());
+        boolean tasks = !Boolean.FALSE.equals(parameters.getTask());
+        Boolean completed = activities && tasks ? null : Boolean.valueOf(!tasks);
+
+        List<Activity> rows = activityRepository.findPage(
+                completed,
+                parameters.getType() != null ? parameters.getType().name() : null,
+                parameters.getPartnerId(),
+                parameters.getFrom(),
+                parameters.getTo(),
+                after != null ? after.updatedAt() : null,
+                after != null ? after.id() : null,
+                limit + 1);
+        String next = null;
+        if (rows.size() > limit) {
+            rows = rows.subList(0, limit);
+            Activity last = rows.get(limit - 1);
+            next = new KeysetCursor(last.getUpdatedAt(), last.getId()).encode();
+        }
+
+        Set<UUID> partnerIds = rows.stream().map(a -> a.getPartner().getId()).collect(Collectors.toSet());
+        Map<UUID, PartnerAPI> partners = partnerIds.isEmpty() ? Map.of()
+                : partnerRepo.findByIdIn(partnerIds).stream()
+                        .collect(Collectors.toMap(Partner::getId, converter::toAPIObject));
+        List<ActivityItem> items = rows.stream()
+                .map(a -> convert(a, partners.get(a.getPartner().getId())))
+                .collect(Collectors.toList());
+        return ActivityPage.builder().items(items).nextCursor(next).build();
+    }
+
     public void addPartnerRequestReceivedTask(@NonNull Partner partner) {
         // in case event is fired multiple times
         Optional<Activity> existing = activityRepository.findByLinkIdAndTypeAndRole(partner.getId(),
@@ -358,10 +416,14 @@ public class ActivityManager {
     }
 
     private ActivityItem convert(Activity activity) {
+        return convert(activity, converter.toAPIObject(activity.getPartner()));
+    }
+
+    private static ActivityItem convert(Activity activity, PartnerAPI partner) {
         return ActivityItem.builder()
                 .id(activity.getId().toString())
                 .linkId(activity.getLinkId().toString())
-                .partner(converter.toAPIObject(activity.getPartner()))
+                .partner(partner)
                 .role(activity.getRole())
                 .state(activity.getState())
                 .type(activity.getType())
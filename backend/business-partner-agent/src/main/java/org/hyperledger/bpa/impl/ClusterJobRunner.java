@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2020-2022 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.impl;
+
+import io.micronaut.context.annotation.Value;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.hyperledger.bpa.persistence.repository.SchedulerLockRepository;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Makes sure that a scheduled job runs on one instance of the cluster per tick.
+ * Before the job runs, the instance takes the lease of the job in the
+ * scheduler_lock table, the lease is renewed while the job is running. If the
+ * instance dies, the lease expires and the next instance that ticks takes over.
+ * Jobs that only touch state of the local instance must not use this.
+ */
+@Slf4j
+@Singleton
+public class ClusterJobRunner {
+
+    @Value("${bpa.scheduler.lease}")
+    Duration lease;
+
+    @Inject
+    SchedulerLockRepository lockRepo;
+
+    private final String instanceId = UUID.randomUUID().toString();
+
+    private final Set<String> knownJobs = ConcurrentHashMap.newKeySet();
+
+    private final ScheduledExecutorService renewer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "bpa-job-lease");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * Runs the job, if no other instance holds its lease
+     *
+     * @param name        unique job name
+     * @param minInterval the lease is kept at least this long after the start of
+     *                    the job, so that instances with a shifted tick skip it.
+     *                    Should be a bit shorter than the schedule interval.
+     * @param job         the job
+     * @return true if the job ran on this instance
+     */
+    public boolean runExclusive(@NonNull String name, @NonNull Duration minInterval, @NonNull Runnable job) {
+        if (!acquire(name)) {
+            log.trace("Job {} is running on another instance", name);
+            return false;
+        }
+        long renewMillis = Math.max(1, lease.toMillis() / 3);
+        ScheduledFuture<?> renewal = renewer.scheduleAtFixedRate(
+                () -> renew(name), renewMillis, renewMillis, TimeUnit.MILLISECONDS);
+        try {
+            job.run();
+        } finally {
+            renewal.cancel(false);
+            try {
+                lockRepo.release(name, instanceId, toSeconds(minInterval));
+            } catch (Exception e) {
+                log.warn("Could not release the lease of job: {}, it expires in: {}", name, lease, e);
+            }
+        }
+        return true;
+    }
+
+    private boolean acquire(String name) {
+        try {
+            if (!knownJobs.contains(name)) {
+                lockRepo.createIfMissing(name);
+                knownJobs.add(name);
+            }
+            return lockRepo.tryAcquire(name, instanceId, toSeconds(lease)) == 1;
+        } catch (Exception e) {
+            log.error("Could not acquire the lease of job: {}", name, e);
+            return false;
+        }
+    }
+
+    private void renew(String name) {
+        try {
+            if (lockRepo.renew(name, instanceId, toSeconds(lease)) == 0) {
+                log.warn("Lost the lease of job: {}, it might run on another instance as well", name);
+            }
+        } catch (Exception e) {
+            log.warn("Could not renew the lease of job: {}", name, e);
+        }
+    }
+
+    private static double toSeconds(Duration d) {
+        return d.toMillis() / 1000d;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        renewer.shutdownNow();
+    }
+}
@@ -28,24 +28,20 @@ import org.hyperledger.bpa.api.PartnerAPI;
 import org.hyperledger.bpa.api.notification.*;
 import org.hyperledger.bpa.config.ActivityLogConfig;
 import org.hyperledger.bpa.controller.api.WebSocketMessageBody;
-import org.hyperledger.bpa.impl.messaging.websocket.MessageService;
 import org.hyperledger.bpa.impl.util.Converter;
 import org.hyperledger.bpa.persistence.model.PartnerProof;
 
 import java.util.Optional;
 
 /**
- * Notifications send via websocket
+ * Notifications send via websocket, see {@link NotificationPipeline}
  */
 @Singleton
 @Slf4j
 public class NotificationEventListener {
 
     @Inject
-    PartnerManager partnerManager;
-
-    @Inject
-    MessageService messageService;
+    NotificationPipeline notifications;
 
     @Inject
     ActivityLogConfig activityLogConfig;
@@ -62,7 +58,7 @@ public class NotificationEventListener {
         log.debug("onCredentialAddedEvent");
         // we have the connection id, but not the partner, will need to look up
         // partner...
-        PartnerAPI partnerAPI = partnerManager.getPartnerByConnectionId(event.getCredential().getConnectionId());
+        PartnerAPI partnerAPI = notifications.partnerByConnectionId(event.getCredential().getConnectionId());
         if (partnerAPI != null) {
             // if we auto respond to credential offers, and it is added, push up a
             // notification
@@ -72,7 +68,7 @@ public class NotificationEventListener {
                         event.getCredential().getId().toString(),
                         event.getCredential(),
                         partnerAPI);
-                messageService.sendMessage(message);
+                notifications.submit(message);
             }
             // if we auto-responded to the offer then this creates a completed activity
             // if we did not auto-respond to the offer, then we have an existing task to
@@ -87,7 +83,7 @@ public class NotificationEventListener {
         log.debug("onCredentialOfferedEvent");
         // we have the connection id, but not the partner, will need to look up
         // partner...
-        PartnerAPI partnerAPI = partnerManager.getPartnerByConnectionId(event.getCredential().getConnectionId());
+        PartnerAPI partnerAPI = notifications.partnerByConnectionId(event.getCredential().getConnectionId());
         if (partnerAPI != null
                 && activityLogConfig.getCredentialExchangeStatesForTasks().contains(event.getCredential().getState())) {
             WebSocketMessageBody message = WebSocketMessageBody.notificationEvent(
@@ -95,7 +91,7 @@ public class NotificationEventListener {
                     event.getCredential().getId().toString(),
                     event.getCredential(),
                     partnerAPI);
-            messageService.sendMessage(message);
+            notifications.submit(message);
             activityManager.addCredentialOfferedTask(event.getCredential());
         }
     }
@@ -114,14 +110,14 @@ public class NotificationEventListener {
     @Async
     public void onCredentialAcceptedEvent(CredentialAcceptedEvent event) {
         log.debug("onCredentialAcceptedEvent");
-        PartnerAPI partnerAPI = partnerManager.getPartnerByConnectionId(event.getCredential().getConnectionId());
+        PartnerAPI partnerAPI = notifications.partnerByConnectionId(event.getCredential().getConnectionId());
         if (partnerAPI != null) {
             WebSocketMessageBody message = WebSocketMessageBody.notificationEvent(
                     WebSocketMessageBody.WebSocketMessageType.ON_CREDENTIAL_ACCEPTED,
                     event.getCredential().getId().toString(),
                     event.getCredential(),
                     partnerAPI);
-            messageService.sendMessage(message);
+            notifications.submit(message);
             activityManager.addCredentialAcceptedActivity(event.getCredential());
         }
     }
@@ -130,14 +126,14 @@ public class NotificationEventListener {
     @Async
     public void onCredentialProblemEvent(CredentialProblemEvent event) {
         log.debug("onCredentialProblemEvent");
-        PartnerAPI partnerAPI = partnerManager.getPartnerByConnectionId(event.getCredential().getConnectionId());
+        PartnerAPI partnerAPI = notifications.partnerByConnectionId(event.getCredential().getConnectionId());
         if (partnerAPI != null) {
             WebSocketMessageBody message = WebSocketMessageBody.notificationEvent(
                     WebSocketMessageBody.WebSocketMessageType.ON_CREDENTIAL_PROBLEM,
                     event.getCredential().getId().toString(),
                     event.getCredential(),
                     partnerAPI);
-            messageService.sendMessage(message);
+            notifications.submit(message);
             activityManager.addCredentialProblemActivity(event.getCredential());
         }
     }
@@ -150,8 +146,8 @@ public class NotificationEventListener {
                 WebSocketMessageBody.WebSocketMessageType.ON_PARTNER_REQUEST_COMPLETED,
                 event.getPartner().getId().toString(),
                 null,
-                conv.toAPIObject(event.getPartner()));
-        messageService.sendMessage(message);
+                notifications.partner(event.getPartner()));
+        notifications.submit(message);
 
         activityManager.completePartnerRequestTask(event.getPartner());
     }
@@ -169,8 +165,8 @@ public class NotificationEventListener {
                     WebSocketMessageBody.WebSocketMessageType.ON_PARTNER_REQUEST_RECEIVED,
                     event.getPartner().getId().toString(),
                     null,
-                    conv.toAPIObject(event.getPartner()));
-            messageService.sendMessage(message);
+                    notifications.partner(event.getPartner()));
+            notifications.submit(message);
         }
     }
 
@@ -182,8 +178,8 @@ public class NotificationEventListener {
                 WebSocketMessageBody.WebSocketMessageType.ON_PARTNER_ADDED,
                 event.getPartner().getId().toString(),
                 null,
-                conv.toAPIObject(event.getPartner()));
-        messageService.sendMessage(message);
+                notifications.partner(event.getPartner()));
+        notifications.submit(message);
 
         activityManager.addPartnerAddedActivity(event.getPartner());
     }
@@ -196,12 +192,24 @@ public class NotificationEventListener {
                 WebSocketMessageBody.WebSocketMessageType.ON_PARTNER_ACCEPTED,
                 event.getPartner().getId().toString(),
                 null,
-                conv.toAPIObject(event.getPartner()));
-        messageService.sendMessage(message);
+                notifications.partner(event.getPartner()));
+        notifications.submit(message);
 
         activityManager.addPartnerAcceptedActivity(event.getPartner());
     }
 
+    @EventListener
+    @Async
+    public void onPartnerVerifiedEvent(PartnerVerifiedEvent event) {
+        log.debug("onPartnerVerifiedEvent");
+        WebSocketMessageBody message = WebSocketMessageBody.notificationEvent(
+                WebSocketMessageBody.WebSocketMessageType.ON_PARTNER_VERIFIED,
+                event.getPartner().getId().toString(),
+                null,
+                notifications.partner(event.getPartner()));
+        notifications.submit(message);
+    }
+
     @EventListener
     @Async
     public void onPartnerRemovedEvent(PartnerRemovedEvent event) {
@@ -210,8 +218,8 @@ public class NotificationEventListener {
                 WebSocketMessageBody.WebSocketMessageType.ON_PARTNER_REMOVED,
                 event.getPartner().getId().toString(),
                 null,
-                conv.toAPIObject(event.getPartner()));
-        messageService.sendMessage(message);
+                notifications.partner(event.getPartner()));
+        notifications.submit(message);
     }
 
     @EventListener
@@ -219,7 +227,7 @@ public class NotificationEventListener {
     public void onPresentationRequestCompletedEvent(PresentationRequestCompletedEvent event) {
         log.debug("onPresentationRequestCompletedEvent");
         // we have the partner id, but not the partner, will need to look up partner...
-        partnerManager.getPartnerById(event.getPartnerProof().getPartnerId()).ifPresent(p -> {
+        notifications.partnerById(event.getPartnerProof().getPartnerId()).ifPresent(p -> {
             WebSocketMessageBody message;
             if (PresentationExchangeRole.PROVER.equals(event.getPartnerProof().getRole())) {
                 message = WebSocketMessageBody.notificationEvent(
@@ -235,7 +243,7 @@ public class NotificationEventListener {
                         p);
             }
             activityManager.completePresentationExchangeTask(event.getPartnerProof());
-            messageService.sendMessage(message);
+            notifications.submit(message);
         });
     }
 
@@ -281,8 +289,8 @@ public class NotificationEventListener {
                 WebSocketMessageBody.WebSocketMessageType.ACTIVITY_NOTIFICATION,
                 event.getActivity().getId().toString(),
                 event.getActivity(),
-                conv.toAPIObject(event.getActivity().getPartner()));
-        messageService.sendMessage(msg);
+                notifications.partner(event.getActivity().getPartner()));
+        notifications.submit(msg);
     }
 
     @EventListener
@@ -293,8 +301,8 @@ public class NotificationEventListener {
                 WebSocketMessageBody.WebSocketMessageType.TASK_ADDED,
                 event.getActivity().getId().toString(),
                 event.getActivity(),
-                conv.toAPIObject(event.getActivity().getPartner()));
-        messageService.sendMessage(task);
+                notifications.partner(event.getActivity().getPartner()));
+        notifications.submit(task);
     }
 
     @EventListener
@@ -305,13 +313,13 @@ public class NotificationEventListener {
                 WebSocketMessageBody.WebSocketMessageType.TASK_COMPLETED,
                 event.getActivity().getId().toString(),
                 event.getActivity(),
-                conv.toAPIObject(event.getActivity().getPartner()));
-        messageService.sendMessage(task);
+                notifications.partner(event.getActivity().getPartner()));
+        notifications.submit(task);
     }
 
     private void handlePresentationRequestEvent(@NonNull PartnerProof partnerProof,
             WebSocketMessageBody.WebSocketMessageType messageType) {
-        Optional<PartnerAPI> partnerAPI = partnerManager.getPartnerById(partnerProof.getPartnerId());
+        Optional<PartnerAPI> partnerAPI = notifications.partnerById(partnerProof.getPartnerId());
         if (partnerAPI.isPresent()) {
             PartnerAPI p = partnerAPI.get();
 
@@ -325,7 +333,7 @@ public class NotificationEventListener {
                         partnerProof.getId().toString(),
                         conv.toAPIObject(partnerProof),
                         p);
-                messageService.sendMessage(message);
+                notifications.submit(message);
             }
         }
     }
@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2020-2022 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micronaut.context.annotation.Value;
+import io.micronaut.core.annotation.Nullable;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.hyperledger.bpa.api.PartnerAPI;
+import org.hyperledger.bpa.controller.api.WebSocketMessageBody;
+import org.hyperledger.bpa.impl.messaging.websocket.MessageService;
+import org.hyperledger.bpa.impl.util.Converter;
+import org.hyperledger.bpa.persistence.model.Partner;
+import org.hyperledger.bpa.persistence.repository.PartnerRepository;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces websocket notifications. Partners are resolved and decoded at most
+ * once per batch window, notifications of the same type for the same entity
+ * that arrive within the window are collapsed into the latest one, and the
+ * remaining notifications are handed to the websocket layer at once.
+ */
+@Slf4j
+@Singleton
+public class NotificationPipeline {
+
+    private final Duration window;
+
+    private final PartnerRepository partnerRepo;
+
+    private final Converter conv;
+
+    private final MessageService messageService;
+
+    private final Cache<UUID, Optional<PartnerAPI>> partnersById;
+
+    private final Cache<String, Optional<PartnerAPI>> partnersByConnectionId;
+
+    private final Map<Key, WebSocketMessageBody> pending = new LinkedHashMap<>();
+
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "bpa-notifications");
+        t.setDaemon(true);
+        return t;
+    });
+
+    @Inject
+    public NotificationPipeline(
+            @Value("${bpa.notifications.batch-window}") Duration window,
+            PartnerRepository partnerRepo,
+            Converter conv,
+            MessageService messageService) {
+        this.window = window;
+        this.partnerRepo = partnerRepo;
+        this.conv = conv;
+        this.messageService = messageService;
+        this.partnersById = Caffeine.newBuilder().expireAfterWrite(window).maximumSize(1_000).build();
+        this.partnersByConnectionId = Caffeine.newBuilder().expireAfterWrite(window).maximumSize(1_000).build();
+    }
+
+    /**
+     * @param connectionId aries connection id
+     * @return the partner, or null if there is none with this connection
+     */
+    @Nullable
+    public PartnerAPI partnerByConnectionId(@NonNull String connectionId) {
+        Optional<PartnerAPI> partner = partnersByConnectionId.getIfPresent(connectionId);
+        if (partner == null) {
+            partner = partnerRepo.findByConnectionId(connectionId).map(this::partner);
+            if (partner.isEmpty()) {
+                partnersByConnectionId.put(connectionId, partner);
+            }
+        }
+        return partner.orElse(null);
+    }
+
+    /**
+     * @param id partner id
+     * @return the partner, if it exists
+     */
+    public Optional<PartnerAPI> partnerById(@NonNull UUID id) {
+        Optional<PartnerAPI> partner = partnersById.getIfPresent(id);
+        if (partner == null) {
+            partner = partnerRepo.findById(id).map(this::partner);
+            if (partner.isEmpty()) {
+                partnersById.put(id, partner);
+            }
+        }
+        return partner;
+    }
+
+    /**
+     * Converts the partner of an event, the result replaces the partner that was
+     * resolved within the current window, so later notifications see the latest
+     * state.
+     *
+     * @param partner {@link Partner}
+     * @return {@link PartnerAPI}
+     */
+    public PartnerAPI partner(@NonNull Partner partner) {
+        PartnerAPI result = conv.toAPIObject(partner);
+        if (partner.getId() != null) {
+            partnersById.put(partner.getId(), Optional.of(result));
+        }
+        if (partner.getConnectionId() != null) {
+            partnersByConnectionId.put(partner.getConnectionId(), Optional.of(result));
+        }
+        return result;
+    }
+
+    /**
+     * Queues the notification for the next flush, it replaces a pending
+     * notification of the same type for the same entity. If batching is disabled
+     * the notification is sent right away.
+     *
+     * @param message {@link WebSocketMessageBody}
+     */
+    public void submit(@NonNull WebSocketMessageBody message) {
+        if (window.isZero() || window.isNegative()) {
+            messageService.sendMessage(message);
+            return;
+        }
+        Key key = new Key(message.getMessage().getType(), message.getMessage().getLinkId());
+        synchronized (pending) {
+            if (pending.isEmpty()) {
+                timer.schedule(this::flush, window.toMillis(), TimeUnit.MILLISECONDS);
+            }
+            // re-insert, so that the order follows the latest notification
+            pending.remove(key);
+            pending.put(key, message);
+        }
+    }
+
+    void flush() {
+        List<WebSocketMessageBody> batch;
+        synchronized (pending) {
+            batch = new ArrayList<>(pending.values());
+            pending.clear();
+        }
+        if (!batch.isEmpty()) {
+            try {
+                messageService.sendMessages(batch);
+            } catch (Exception e) {
+                log.error("Could not send {} notification(s)", batch.size(), e);
+            }
+        }
+    }
+
+    int getPendingSize() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        timer.shutdown();
+        flush();
+    }
+
+    private record Key(WebSocketMessageBody.WebSocketMessageType type, String linkId) {
+    }
+}
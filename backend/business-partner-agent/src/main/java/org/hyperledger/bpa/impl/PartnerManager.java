@@ -17,26 +17,32 @@
  */
 package org.hyperledger.bpa.impl;
 
-import io.micronaut.cache.annotation.CacheInvalidate;
 import io.micronaut.context.annotation.Value;
+import io.micronaut.context.event.ApplicationEventPublisher;
 import io.micronaut.core.annotation.Nullable;
 import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
 import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.hyperledger.aries.api.connection.ConnectionState;
 import org.hyperledger.bpa.api.PartnerAPI;
 import org.hyperledger.bpa.api.exception.EntityNotFoundException;
 import org.hyperledger.bpa.api.exception.PartnerException;
+import org.hyperledger.bpa.api.exception.WrongApiUsageException;
+import org.hyperledger.bpa.api.notification.PartnerVerifiedEvent;
 import org.hyperledger.bpa.config.BPAMessageSource;
 import org.hyperledger.bpa.controller.api.partner.AddPartnerRequest;
+import org.hyperledger.bpa.controller.api.partner.PartnerPage;
 import org.hyperledger.bpa.controller.api.partner.UpdatePartnerRequest;
 import org.hyperledger.bpa.core.RegisteredWebhook.WebhookEventType;
 import org.hyperledger.bpa.impl.activity.PartnerCredDefLookup;
 import org.hyperledger.bpa.impl.activity.PartnerLookup;
 import org.hyperledger.bpa.impl.aries.connection.ConnectionManager;
 import org.hyperledger.bpa.impl.util.Converter;
+import org.hyperledger.bpa.impl.util.KeysetCursor;
 import org.hyperledger.bpa.persistence.model.Partner;
+import org.hyperledger.bpa.persistence.model.PartnerSummary;
 import org.hyperledger.bpa.persistence.repository.HolderCredExRepository;
 import org.hyperledger.bpa.persistence.repository.PartnerRepository;
 import org.hyperledger.bpa.persistence.repository.TagRepository;
@@ -45,12 +51,16 @@ import java.util.*;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
+@Slf4j
 @Singleton
 public class PartnerManager {
 
     @Value("${bpa.did.prefix}")
     String ledgerPrefix;
 
+    @Value("${bpa.partner.max-page-size}")
+    Integer maxPageSize;
+
     @Inject
     PartnerRepository repo;
 
@@ -78,12 +88,55 @@ public class PartnerManager {
     @Inject
     BPAMessageSource.DefaultMessageSource ms;
 
+    @Inject
+    ApplicationEventPublisher eventPublisher;
+
     public List<PartnerAPI> getPartners() {
         return StreamSupport.stream(repo.findAll().spliterator(), false)
                 .map(converter::toAPIObject)
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Keyset paginated partner list that does not decode the public profile
+     *
+     * @param state      optional connection state filter
+     * @param tagId      optional tag filter
+     * @param nameSearch optional case-insensitive prefix of the alias, or label
+     * @param cursor     optional cursor from the previous {@link PartnerPage}
+     * @param size       page size
+     * @return {@link PartnerPage}
+     */
+    public PartnerPage getPartnerPage(@Nullable ConnectionState state, @Nullable UUID tagId,
+            @Nullable String nameSearch, @Nullable String cursor, int size) {
+        int limit = Math.max(1, Math.min(size, maxPageSize));
+        KeysetCursor after = cursor != null ? KeysetCursor.decode(cursor)
+                .orElseThrow(() -> new WrongApiUsageException(
+                        ms.getMessage("api.partner.page.invalid.cursor", Map.of("cursor", cursor))))
+                : null;
+        List<PartnerSummary> items = repo.findPage(
+                state != null ? state.name() : null,
+                tagId,
+                StringUtils.isNotBlank(nameSearch) ? toPrefixPattern(nameSearch) : null,
+                after != null ? after.updatedAt() : null,
+                after != null ? after.id() : null,
+                limit + 1);
+        String next = null;
+        if (items.size() > limit) {
+            items = items.subList(0, limit);
+            PartnerSummary last = items.get(limit - 1);
+            next = new KeysetCursor(last.getUpdatedAt(), last.getId()).encode();
+        }
+        return PartnerPage.builder().items(items).nextCursor(next).build();
+    }
+
+    static String toPrefixPattern(@NonNull String search) {
+        return search.trim().toLowerCase(Locale.ROOT)
+                .replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_") + "%";
+    }
+
     public Optional<PartnerAPI> getPartnerById(@NonNull UUID id) {
         return repo.findById(id).map(converter::toAPIObject);
     }
@@ -105,6 +158,7 @@ public class PartnerManager {
             }
         });
         repo.deleteByPartnerId(id);
+        converter.invalidateDecodedProfile(id);
     }
 
     public PartnerAPI addPartnerFlow(@NonNull AddPartnerRequest req) {
@@ -112,7 +166,7 @@ public class PartnerManager {
         if (dbPartner.isPresent()) {
             throw new PartnerException(ms.getMessage("api.partner.already.exists", Map.of("id", req.getDid())));
         }
-        PartnerAPI lookupP = partnerLookup.lookupPartner(req.getDid());
+        PartnerAPI lookupP = partnerLookup.lookupPartnerPending(req.getDid());
 
         Partner partner = converter.toModelObject(req.getDid(), lookupP)
                 .setAriesSupport(lookupP.getAriesSupport())
@@ -125,14 +179,34 @@ public class PartnerManager {
         Partner result = repo.save(partner);
 
         if (req.getDid().startsWith(ledgerPrefix)) {
-            credLookup.lookupTypesForAllPartnersAsync();
+            credLookup.lookupTypesForPartnerAsync(req.getDid());
         }
 
         final PartnerAPI apiPartner = converter.toAPIObject(result);
         webhook.convertAndSend(WebhookEventType.PARTNER_ADD, apiPartner);
+        if (lookupP.getValid() == null) {
+            verifyPartnerAsync(result.getId(), lookupP);
+        }
         return apiPartner;
     }
 
+    /**
+     * Verifies the public profile in the background and stores the result, clients
+     * are notified with a {@link PartnerVerifiedEvent}
+     *
+     * @param id      the partner id
+     * @param lookupP {@link PartnerAPI} as resolved by the lookup
+     */
+    void verifyPartnerAsync(@NonNull UUID id, @NonNull PartnerAPI lookupP) {
+        partnerLookup.verify(lookupP).subscribe(valid -> {
+            repo.updateValid(id, valid);
+            repo.findById(id).ifPresent(dbP -> {
+                eventPublisher.publishEventAsync(PartnerVerifiedEvent.builder().partner(dbP).build());
+                webhook.convertAndSend(WebhookEventType.PARTNER_UPDATE, converter.toAPIObject(dbP));
+            });
+        }, e -> log.error("Could not verify public profile of partner: {}", id, e));
+    }
+
     public Optional<PartnerAPI> updatePartner(@NonNull UUID id, @NonNull UpdatePartnerRequest req) {
         Optional<PartnerAPI> result = Optional.empty();
         final Optional<Partner> dbP = repo.findById(id);
@@ -175,25 +249,18 @@ public class PartnerManager {
         final Optional<Partner> dbPartner = repo.findById(id);
         if (dbPartner.isPresent()) {
             Partner dbP = dbPartner.get();
-            invalidatePartnerLookupCache();
+            partnerLookup.invalidate(dbP.getDid());
             PartnerAPI pAPI = partnerLookup.lookupPartner(dbP.getDid());
             dbP.setValid(pAPI.getValid());
-            dbP.setVerifiablePresentation(pAPI.getVerifiablePresentation() != null
-                    ? converter.toMap(pAPI.getVerifiablePresentation())
-                    : null);
+            dbP.setVerifiablePresentation(pAPI.getVerifiablePresentation());
             dbP = repo.update(dbP);
+            converter.invalidateDecodedProfile(id);
             result = Optional.of(converter.toAPIObject(dbP));
             webhook.convertAndSend(WebhookEventType.PARTNER_UPDATE, result.get());
         }
         return result;
     }
 
-    // TODO use partner UUID as cache key
-    @CacheInvalidate(cacheNames = { "partner-lookup-cache" }, all = true)
-    public void invalidatePartnerLookupCache() {
-        //
-    }
-
     public void acceptPartner(@NonNull UUID partnerId) {
         String connectionId = repo.findById(partnerId)
                 .map(Partner::getConnectionId)
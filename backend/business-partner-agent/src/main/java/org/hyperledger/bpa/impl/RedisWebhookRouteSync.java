@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2020-2022 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.impl;
+
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.pubsub.StatefulRedisPubSubConnection;
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.context.event.StartupEvent;
+import io.micronaut.runtime.event.annotation.EventListener;
+import io.micronaut.scheduling.TaskExecutors;
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
+import jakarta.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Keeps the webhook routing tables of all bpa instances in sync. Every change
+ * is announced on a dedicated channel of the shared redis pub/sub connection,
+ * the other instances then reload their table. The payload is the id of the
+ * sending node, so that a node ignores its own announcements. Routes are
+ * reloaded on the io executor, never on the redis event loop, and a failed
+ * reload does not end the subscription.
+ */
+@Slf4j
+@Singleton
+@Requires(property = "micronaut.session.http.redis.enabled")
+public class RedisWebhookRouteSync {
+
+    static final String CHANNEL = "bpa-webhook-routes";
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    @Inject
+    WebhookService webhookService;
+
+    @Inject
+    StatefulRedisConnection<String, String> redis;
+
+    @Inject
+    StatefulRedisPubSubConnection<String, String> pubSub;
+
+    @Inject
+    @Named(TaskExecutors.IO)
+    ExecutorService executor;
+
+    @EventListener
+    public void onServiceStartedEvent(@SuppressWarnings("unused") StartupEvent startEvent) {
+        pubSub.reactive().subscribe(CHANNEL).subscribe();
+        pubSub.reactive().observeChannels()
+                .filter(pm -> StringUtils.equals(pm.getChannel(), CHANNEL))
+                .filter(pm -> !StringUtils.equals(pm.getMessage(), nodeId))
+                .doOnError(e -> log.error("Error in webhook route observer", e))
+                .retry()
+                .subscribe(pm -> {
+                    try {
+                        executor.submit(() -> reload(pm.getMessage()));
+                    } catch (Exception e) {
+                        log.error("Could not schedule webhook route reload", e);
+                        webhookService.invalidateRoutes();
+                    }
+                });
+    }
+
+    void reload(String changedOn) {
+        log.debug("Webhooks changed on node: {}, reloading routes", changedOn);
+        try {
+            webhookService.reloadRoutes();
+        } catch (Exception e) {
+            log.error("Could not reload webhook routes, reloading with the next event", e);
+            webhookService.invalidateRoutes();
+        }
+    }
+
+    @EventListener
+    public void onRoutesChanged(@SuppressWarnings("unused") WebhookService.RoutesChangedEvent event) {
+        redis.reactive().publish(CHANNEL, nodeId)
+                .doOnError(e -> log.error("Could not announce webhook change", e))
+                .subscribe();
+    }
+}
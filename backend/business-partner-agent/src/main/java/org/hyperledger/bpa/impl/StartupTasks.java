@@ -109,7 +109,7 @@ public class StartupTasks {
                             vpMgmt.recreateVerifiablePresentation();
                         });
 
-        credLookup.lookupTypesForAllPartnersAsync();
+        credLookup.lookupTypesForNewSchemasAsync();
     }
 
     private void checkModeChange() {
@@ -19,29 +19,29 @@ package org.hyperledger.bpa.impl;
 
 import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
+import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
-import org.hyperledger.aries.api.connection.ConnectionState;
-import org.hyperledger.aries.api.issue_credential_v1.CredentialExchangeRole;
-import org.hyperledger.aries.api.issue_credential_v1.CredentialExchangeState;
-import org.hyperledger.aries.api.present_proof.PresentationExchangeState;
 import org.hyperledger.bpa.api.CredentialType;
 import org.hyperledger.bpa.controller.api.stats.BPAStats;
 import org.hyperledger.bpa.controller.api.stats.DashboardCounts;
+import org.hyperledger.bpa.controller.api.stats.StatsPeriod;
 import org.hyperledger.bpa.impl.aries.wallet.Identity;
-import org.hyperledger.bpa.persistence.repository.*;
+import org.hyperledger.bpa.persistence.model.DashboardCounter;
+import org.hyperledger.bpa.persistence.repository.DashboardCounterRepository;
+import org.hyperledger.bpa.persistence.repository.MyDocumentRepository;
 
 import java.time.Instant;
-import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Singleton
 public class StatsService {
 
     @Inject
-    PartnerRepository partnerRepo;
-
-    @Inject
-    HolderCredExRepository holderCredExRepo;
+    DashboardCounterRepository counterRepo;
 
     @Inject
     MyDocumentRepository docRepo;
@@ -49,52 +49,40 @@ public class StatsService {
     @Inject
     Identity identity;
 
-    @Inject
-    ActivityRepository activityRepository;
-
-    @Inject
-    PartnerProofRepository proofRepository;
-
-    public BPAStats collectStats() {
-        DashboardCounts totals = DashboardCounts
-                .builder()
-                .credentialsSent(holderCredExRepo.countByRoleEqualsAndStateEquals(
-                        CredentialExchangeRole.ISSUER,
-                        CredentialExchangeState.CREDENTIAL_ACKED))
-                .credentialsReceived(holderCredExRepo.countByRoleEqualsAndStateEquals(
-                        CredentialExchangeRole.HOLDER, CredentialExchangeState.CREDENTIAL_ACKED))
-                .tasks(activityRepository.countByCompletedFalse())
-                .partners(partnerRepo.countByStateNotEquals(ConnectionState.INVITATION))
-                .presentationRequestsSent(proofRepository.countByStateEquals(PresentationExchangeState.REQUEST_SENT))
-                .presentationRequestsReceived(
-                        proofRepository.countByStateEquals(PresentationExchangeState.PRESENTATION_RECEIVED))
-                .build();
-
-        // for now, let's just get new data created today.
-        // we could maybe pass in a date from the ux for different filter/period (last
-        // week, last month, ???)
-        Instant yesterday = Instant.now().minus(1, ChronoUnit.DAYS);
-        DashboardCounts periodTotals = DashboardCounts
-                .builder()
-                .credentialsSent(holderCredExRepo.countByRoleEqualsAndStateEqualsAndCreatedAtAfter(
-                        CredentialExchangeRole.ISSUER, CredentialExchangeState.CREDENTIAL_ACKED, yesterday))
-                .credentialsReceived(holderCredExRepo.countByRoleEqualsAndStateEqualsAndCreatedAtAfter(
-                        CredentialExchangeRole.HOLDER, CredentialExchangeState.CREDENTIAL_ACKED, yesterday))
-                .tasks(activityRepository.countByCompletedFalseAndCreatedAtAfter(yesterday))
-                .partners(partnerRepo.countByStateNotEqualsAndCreatedAtAfter(ConnectionState.INVITATION, yesterday))
-                .presentationRequestsSent(proofRepository
-                        .countByStateEqualsAndCreatedAtAfter(PresentationExchangeState.REQUEST_SENT, yesterday))
-                .presentationRequestsReceived(proofRepository.countByStateEqualsAndCreatedAtAfter(
-                        PresentationExchangeState.PRESENTATION_RECEIVED, yesterday))
-                .build();
+    /**
+     * Dashboard counts, read from the trigger maintained counters in one query
+     *
+     * @param period {@link StatsPeriod} of the period totals
+     * @return {@link BPAStats}
+     */
+    public BPAStats collectStats(@NonNull StatsPeriod period) {
+        Instant since = Instant.now().minus(period.getDuration());
+        Map<String, DashboardCounter.MetricSum> sums = counterRepo.sumByMetric(since)
+                .stream()
+                .collect(Collectors.toMap(DashboardCounter.MetricSum::getMetric, Function.identity()));
 
         return BPAStats
                 .builder()
                 .did(identity.getMyDid())
                 .profile(docRepo
                         .existsByTypeEqualsAndIsPublicTrue(CredentialType.ORGANIZATIONAL_PROFILE_CREDENTIAL))
-                .totals(totals)
-                .periodTotals(periodTotals)
+                .totals(toCounts(sums, DashboardCounter.MetricSum::getTotal))
+                .periodTotals(toCounts(sums, DashboardCounter.MetricSum::getPeriod))
+                .period(period)
+                .build();
+    }
+
+    private static DashboardCounts toCounts(Map<String, DashboardCounter.MetricSum> sums,
+            Function<DashboardCounter.MetricSum, Long> value) {
+        Function<String, Long> get = metric -> Optional.ofNullable(sums.get(metric)).map(value).orElse(0L);
+        return DashboardCounts
+                .builder()
+                .credentialsSent(get.apply(DashboardCounter.CREDENTIALS_SENT))
+                .credentialsReceived(get.apply(DashboardCounter.CREDENTIALS_RECEIVED))
+                .tasks(get.apply(DashboardCounter.TASKS))
+                .partners(get.apply(DashboardCounter.PARTNERS))
+                .presentationRequestsSent(get.apply(DashboardCounter.PRESENTATION_REQUESTS_SENT))
+                .presentationRequestsReceived(get.apply(DashboardCounter.PRESENTATION_REQUESTS_RECEIVED))
                 .build();
     }
 }
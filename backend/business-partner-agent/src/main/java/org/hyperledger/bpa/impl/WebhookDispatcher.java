@@ -0,0 +1,241 @@
+/*
+ * Copyright (c) 2020-2022 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.impl;
+
+import io.micronaut.context.annotation.Value;
+import io.micronaut.core.util.StringUtils;
+import io.micronaut.data.model.Pageable;
+import io.micronaut.scheduling.annotation.Scheduled;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.*;
+import org.hyperledger.bpa.client.HttpClients;
+import org.hyperledger.bpa.core.RegisteredWebhook;
+import org.hyperledger.bpa.core.RegisteredWebhook.WebhookCredentials;
+import org.hyperledger.bpa.persistence.model.WebhookOutbox;
+import org.hyperledger.bpa.persistence.repository.BPAWebhookRepository;
+import org.hyperledger.bpa.persistence.repository.WebhookOutboxRepository;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Delivers outbound webhook events without blocking the caller. Calls are
+ * queued per target host, so that a slow subscriber only uses up its own slots.
+ * Failed calls are persisted in the outbox and retried with exponential
+ * backoff, also after a restart.
+ */
+@Slf4j
+@Singleton
+public class WebhookDispatcher {
+
+    static final MediaType JSON_TYPE = MediaType.get("application/json; charset=utf-8");
+
+    static final String SIGNATURE_HEADER = "X-BPA-Signature-256";
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    private static final int ERROR_LENGTH = 2048;
+
+    @Value("${bpa.webhook.delivery.max-attempts}")
+    Integer maxAttempts;
+
+    @Value("${bpa.webhook.delivery.retry-backoff}")
+    Duration retryBackoff;
+
+    @Value("${bpa.webhook.delivery.retry-batch-size}")
+    Integer retryBatchSize;
+
+    @Inject
+    WebhookOutboxRepository outboxRepo;
+
+    @Inject
+    BPAWebhookRepository webhookRepo;
+
+    @Inject
+    ClusterJobRunner jobs;
+
+    private final OkHttpClient okClient;
+
+    @Inject
+    public WebhookDispatcher(HttpClients http) {
+        this.okClient = http.client(HttpClients.WEBHOOK);
+    }
+
+    /**
+     * Queues the webhook call, if the call fails it is persisted for a retry.
+     *
+     * @param webhookId {@link org.hyperledger.bpa.persistence.model.BPAWebhook} id
+     * @param hook      {@link RegisteredWebhook}
+     * @param payload   serialized webhook event
+     */
+    public void send(@NonNull UUID webhookId, @NonNull RegisteredWebhook hook, @NonNull Payload payload) {
+        enqueue(hook, payload,
+                () -> log.trace("Webhook call to {} succeeded", hook.getUrl()),
+                error -> {
+                    log.warn("Webhook call to {} failed, scheduling retry: {}", hook.getUrl(), error);
+                    outboxRepo.save(WebhookOutbox
+                            .builder()
+                            .webhookId(webhookId)
+                            .payload(payload.asString())
+                            .attempts(1)
+                            .nextAttemptAt(Instant.now().plus(backoff(1)))
+                            .lastError(error)
+                            .build());
+                });
+    }
+
+    @Scheduled(fixedDelay = "30s", initialDelay = "1m")
+    void scheduledRetryFailed() {
+        jobs.runExclusive("webhook-retry", Duration.ofSeconds(25), this::retryFailed);
+    }
+
+    void retryFailed() {
+        Instant now = Instant.now();
+        outboxRepo.findByNextAttemptAtBeforeOrderByNextAttemptAt(now, Pageable.from(0, retryBatchSize))
+                .forEach(o -> webhookRepo.findById(o.getWebhookId()).ifPresentOrElse(dbHook -> {
+                    int attempts = o.getAttempts() + 1;
+                    // move the next attempt first, so that the call is not picked up twice
+                    outboxRepo.updateAttemptsAndNextAttemptAt(o.getId(), attempts, now.plus(backoff(attempts)));
+                    RegisteredWebhook hook = dbHook.getWebhook();
+                    enqueue(hook, new Payload(o.getPayload().getBytes(StandardCharsets.UTF_8)),
+                            () -> outboxRepo.deleteById(o.getId()),
+                            error -> {
+                                if (attempts >= maxAttempts) {
+                                    log.error("Giving up on webhook call to {} after {} attempts: {}",
+                                            hook.getUrl(), attempts, error);
+                                    outboxRepo.deleteById(o.getId());
+                                } else {
+                                    outboxRepo.updateLastError(o.getId(), error);
+                                }
+                            });
+                }, () -> outboxRepo.deleteById(o.getId())));
+    }
+
+    private void enqueue(@NonNull RegisteredWebhook hook, @NonNull Payload payload,
+            @NonNull Runnable onSuccess, @NonNull Consumer<String> onFailure) {
+        okClient.newCall(buildRequest(hook, payload)).enqueue(new Callback() {
+            @Override
+            public void onFailure(@NonNull Call call, @NonNull IOException e) {
+                handleResult(() -> onFailure.accept(abbreviate(e.toString())));
+            }
+
+            @Override
+            public void onResponse(@NonNull Call call, @NonNull Response response) {
+                try (response) {
+                    if (response.isSuccessful()) {
+                        handleResult(onSuccess);
+                    } else {
+                        handleResult(() -> onFailure.accept("code: " + response.code()));
+                    }
+                }
+            }
+        });
+    }
+
+    static Request buildRequest(@NonNull RegisteredWebhook hook, @NonNull Payload payload) {
+        Request.Builder request = new Request.Builder()
+                .url(hook.getUrl())
+                .post(payload.getBody());
+        addBasicAuthHeaderIfSet(request, hook);
+        addSignatureHeaderIfSet(request, hook, payload);
+        return request.build();
+    }
+
+    private void handleResult(Runnable r) {
+        try {
+            r.run();
+        } catch (Exception e) {
+            log.error("Could not handle webhook result", e);
+        }
+    }
+
+    Duration backoff(int attempt) {
+        return retryBackoff.multipliedBy(1L << Math.min(attempt - 1, 10));
+    }
+
+    private static String abbreviate(String error) {
+        return error.length() > ERROR_LENGTH ? error.substring(0, ERROR_LENGTH) : error;
+    }
+
+    private static void addBasicAuthHeaderIfSet(Request.Builder b, RegisteredWebhook hook) {
+        final WebhookCredentials creds = hook.getCredentials();
+        if (creds != null
+                && StringUtils.isNotEmpty(creds.getUsername())) {
+            String basic = "Basic ";
+            String base64 = Base64.getEncoder()
+                    .encodeToString((creds.getUsername() + ":" + creds.getPassword())
+                            .getBytes(StandardCharsets.UTF_8));
+            b.addHeader("Authorization", basic + base64);
+        }
+    }
+
+    private static void addSignatureHeaderIfSet(Request.Builder b, RegisteredWebhook hook, Payload payload) {
+        if (StringUtils.isNotEmpty(hook.getSigningSecret())) {
+            b.addHeader(SIGNATURE_HEADER, "sha256=" + sign(hook.getSigningSecret(), payload.getBytes()));
+        }
+    }
+
+    static String sign(@NonNull String secret, byte[] data) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), HMAC_ALGORITHM));
+            return HexFormat.of().formatHex(mac.doFinal(data));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not sign webhook payload", e);
+        }
+    }
+
+    /**
+     * Serialized webhook event, the request body is immutable and can be shared by
+     * all calls of the same event.
+     */
+    public static final class Payload {
+
+        private final byte[] bytes;
+        private final RequestBody body;
+
+        public Payload(byte[] bytes) {
+            this.bytes = bytes;
+            this.body = RequestBody.create(bytes, JSON_TYPE);
+        }
+
+        byte[] getBytes() {
+            return bytes;
+        }
+
+        RequestBody getBody() {
+            return body;
+        }
+
+        String asString() {
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -17,28 +17,24 @@
  */
 package org.hyperledger.bpa.impl;
 
-import io.micronaut.core.util.StringUtils;
+import io.micronaut.context.event.ApplicationEventPublisher;
 import io.micronaut.data.exceptions.DataAccessException;
 import io.micronaut.scheduling.annotation.Async;
 import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
-import okhttp3.*;
 import org.hyperledger.bpa.api.exception.WrongApiUsageException;
 import org.hyperledger.bpa.core.RegisteredWebhook;
 import org.hyperledger.bpa.core.RegisteredWebhook.RegisteredWebhookResponse;
-import org.hyperledger.bpa.core.RegisteredWebhook.WebhookCredentials;
 import org.hyperledger.bpa.core.RegisteredWebhook.WebhookEventType;
 import org.hyperledger.bpa.core.WebhookEvent;
 import org.hyperledger.bpa.impl.util.Converter;
 import org.hyperledger.bpa.persistence.model.BPAWebhook;
 import org.hyperledger.bpa.persistence.repository.BPAWebhookRepository;
 
-import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.util.*;
 
@@ -46,20 +42,29 @@ import java.util.*;
 @Singleton
 public class WebhookService {
 
-    static final MediaType JSON_TYPE = MediaType.get("application/json; charset=utf-8");
-
-    private final OkHttpClient okClient = new OkHttpClient();
-
     @Inject
     Converter conv;
 
     @Inject
     BPAWebhookRepository repo;
 
+    @Inject
+    WebhookDispatcher dispatcher;
+
+    @Inject
+    ApplicationEventPublisher<RoutesChangedEvent> eventPublisher;
+
+    /**
+     * Decoded, immutable snapshot of all registered webhooks by event type. Only
+     * rebuilt when a webhook is registered, updated or deleted on this or another
+     * node.
+     */
+    private volatile Map<WebhookEventType, List<Route>> routes;
+
     public List<RegisteredWebhookResponse> listRegisteredWebhooks() {
         List<RegisteredWebhookResponse> result = new ArrayList<>();
         repo.findAll().forEach(h -> {
-            final RegisteredWebhook rh = conv.fromMap(h.getWebhook(), RegisteredWebhook.class);
+            final RegisteredWebhook rh = h.getWebhook();
             result.add(new RegisteredWebhookResponse(h.getId(), rh));
         });
         return result;
@@ -67,9 +72,9 @@ public class WebhookService {
 
     public RegisteredWebhookResponse registerWebhook(@NonNull RegisteredWebhook hook) {
         checkUrl(hook.getUrl());
-        final Map<String, Object> map = conv.toMap(hook);
         try {
-            BPAWebhook dbHook = repo.save(BPAWebhook.builder().webhook(map).build());
+            BPAWebhook dbHook = repo.save(BPAWebhook.builder().webhook(hook).build());
+            routesChanged();
             return new RegisteredWebhookResponse(dbHook.getId(), hook);
         } catch (@SuppressWarnings("unused") DataAccessException e) {
             throw new WrongApiUsageException("Webhook for url: " + hook.getUrl() + " is already registered");
@@ -80,12 +85,16 @@ public class WebhookService {
             @NonNull UUID id, @NonNull RegisteredWebhook hook) {
         checkUrl(hook.getUrl());
         Optional<RegisteredWebhookResponse> result = Optional.empty();
-        final Map<String, Object> map = conv.toMap(hook);
         final Optional<BPAWebhook> existing = repo.findById(id);
         if (existing.isPresent()) {
-            existing.get().setWebhook(map);
+            // the secret is never returned, so an update without one keeps the current
+            if (hook.getSigningSecret() == null && existing.get().getWebhook() != null) {
+                hook.setSigningSecret(existing.get().getWebhook().getSigningSecret());
+            }
+            existing.get().setWebhook(hook);
             try {
                 final BPAWebhook updated = repo.update(existing.get());
+                routesChanged();
                 return Optional.of(new RegisteredWebhookResponse(updated.getId(), hook));
             } catch (@SuppressWarnings("unused") DataAccessException e) {
                 throw new WrongApiUsageException("Webhook for url: " + hook.getUrl() + " is already registered");
@@ -96,42 +105,99 @@ public class WebhookService {
 
     public void deleteRegisteredWebhook(UUID id) {
         repo.deleteById(id);
+        routesChanged();
     }
 
+    /**
+     * Sends the event to all webhooks that are registered for the type, the calls
+     * are made by the {@link WebhookDispatcher} in the background.
+     *
+     * @param eventType {@link WebhookEventType}
+     * @param msg       event payload
+     */
     @Async
     public void convertAndSend(@NonNull WebhookEventType eventType, @NonNull Object msg) {
-        // Not a parallel stream for now to keep it simple
-        repo.findByEventType(eventType).forEach(e -> {
-            final RegisteredWebhook hook = conv.fromMap(e.getWebhook(), RegisteredWebhook.class);
+        List<Route> targets = getRoutes().getOrDefault(eventType, List.of());
+        if (targets.isEmpty()) {
+            return;
+        }
+        WebhookEvent<?> event = WebhookEvent
+                .builder()
+                .payload(msg)
+                .type(eventType)
+                .sent(Instant.now().toEpochMilli())
+                .build();
+        // serialised once, all targets share the same request body
+        conv.writeValueAsBytes(event).map(WebhookDispatcher.Payload::new).ifPresent(p -> targets.forEach(r -> {
             try {
-                WebhookEvent<?> event = WebhookEvent
-                        .builder()
-                        .payload(msg)
-                        .type(eventType)
-                        .sent(Instant.now().toEpochMilli())
-                        .build();
-
-                conv.writeValueAsString(event).ifPresent(json -> {
-
-                    Request.Builder request = new Request.Builder()
-                            .url(hook.getUrl())
-                            .post(RequestBody.create(json, JSON_TYPE));
-                    addBasicAuthHeaderIfSet(request, hook);
-
-                    try (Response response = okClient.newCall(request.build()).execute()) {
-                        if (!response.isSuccessful()) {
-                            String body = response.body() != null ? response.body().toString() : "";
-                            log.error("Call to {} falied, code: {}, msg: {}",
-                                    hook.getUrl(), response.code(), body);
-                        }
-                    } catch (IOException ex) {
-                        log.error("Call to " + hook.getUrl() + " failed", ex);
-                    }
-                });
-            } catch (Exception e1) {
-                log.error("Could not send webhook for url: {}", hook.getUrl(), e1);
+                dispatcher.send(r.id(), r.hook(), p);
+            } catch (Exception e) {
+                log.error("Could not send webhook: {}", r.id(), e);
+            }
+        }));
+    }
+
+    /**
+     * Rebuilds the routing table from the database. Called after local changes and
+     * when another node signals that its webhooks changed.
+     */
+    public synchronized void reloadRoutes() {
+        Map<WebhookEventType, List<Route>> table = new EnumMap<>(WebhookEventType.class);
+        repo.findAll().forEach(h -> {
+            try {
+                RegisteredWebhook hook = h.getWebhook();
+                if (hook.getRegisteredEvent() != null) {
+                    new HashSet<>(hook.getRegisteredEvent()).forEach(
+                            t -> table.computeIfAbsent(t, k -> new ArrayList<>()).add(new Route(h.getId(), hook)));
+                }
+            } catch (Exception e) {
+                log.error("Could not decode webhook: {}", h.getId(), e);
             }
         });
+        table.replaceAll((k, v) -> List.copyOf(v));
+        routes = Collections.unmodifiableMap(table);
+        log.debug("Webhook routes reloaded: {}", table.keySet());
+    }
+
+    /**
+     * Drops the routing table, it is reloaded with the next event
+     */
+    public void invalidateRoutes() {
+        routes = null;
+    }
+
+    Map<WebhookEventType, List<Route>> getRoutes() {
+        Map<WebhookEventType, List<Route>> current = routes;
+        if (current == null) {
+            synchronized (this) {
+                if (routes == null) {
+                    reloadRoutes();
+                }
+                current = routes;
+            }
+        }
+        return current;
+    }
+
+    private void routesChanged() {
+        reloadRoutes();
+        eventPublisher.publishEvent(new RoutesChangedEvent());
+    }
+
+    /**
+     * A registered webhook together with its database id
+     *
+     * @param id   webhook id
+     * @param hook decoded {@link RegisteredWebhook}
+     */
+    record Route(UUID id, RegisteredWebhook hook) {
+    }
+
+    /**
+     * Published after the webhooks of this node changed, so that other nodes can
+     * reload their routing table.
+     */
+    public static final class RoutesChangedEvent {
     }
 
     // TODO use a hibernate validator
@@ -143,16 +209,4 @@ public class WebhookService {
             throw new WrongApiUsageException("Not a valid URL: " + url);
         }
     }
-
-    private static void addBasicAuthHeaderIfSet(Request.Builder b, RegisteredWebhook hook) {
-        final WebhookCredentials creds = hook.getCredentials();
-        if (creds != null
-                && StringUtils.isNotEmpty(creds.getUsername())) {
-            String basic = "Basic ";
-            String base64 = Base64.getEncoder()
-                    .encodeToString((creds.getUsername() + ":" + creds.getPassword())
-                            .getBytes(StandardCharsets.UTF_8));
-            b.addHeader("Authorization", basic + base64);
-        }
-    }
 }
@@ -98,8 +98,9 @@ public class DidResolver {
                                 final PartnerAPI pAPI = partnerLookup.lookupPartner(pubDid.toString());
                                 p.setDid(pubDid.toString());
                                 p.setValid(pAPI.getValid());
-                                p.setVerifiablePresentation(converter.toMap(pAPI.getVerifiablePresentation()));
+                                p.setVerifiablePresentation(pAPI.getVerifiablePresentation());
                                 partnerRepo.update(p);
+                                converter.invalidateDecodedProfile(p.getId());
                             }
                         }
                     }
@@ -123,8 +124,9 @@ public class DidResolver {
         lookupPartnerSave(p.getDid()).ifPresentOrElse(pAPI -> {
             partnerRepo.updateVerifiablePresentation(
                     p.getId(),
-                    converter.toMap(pAPI.getVerifiablePresentation()),
+                    pAPI.getVerifiablePresentation(),
                     pAPI.getValid());
+            converter.invalidateDecodedProfile(p.getId());
             webhook.convertAndSend(RegisteredWebhook.WebhookEventType.PARTNER_ADD, pAPI);
         }, () -> {
             ConnectionLabel cl = splitDidFrom(p.getLabel());
@@ -132,10 +134,11 @@ public class DidResolver {
                 final PartnerAPI pAPI = partnerLookup.lookupPartner(did);
                 partnerRepo.updateVerifiablePresentation(
                         p.getId(),
-                        converter.toMap(pAPI.getVerifiablePresentation()),
+                        pAPI.getVerifiablePresentation(),
                         pAPI.getValid(),
                         cl.getLabel(),
                         did);
+                converter.invalidateDecodedProfile(p.getId());
                 webhook.convertAndSend(RegisteredWebhook.WebhookEventType.PARTNER_ADD, pAPI);
             });
         });
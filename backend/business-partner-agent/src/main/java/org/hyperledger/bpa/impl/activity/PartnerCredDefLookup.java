@@ -23,9 +23,12 @@ import io.micronaut.scheduling.annotation.Scheduled;
 import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
 import lombok.*;
+import lombok.extern.slf4j.Slf4j;
+import org.hyperledger.bpa.api.CredentialType;
 import org.hyperledger.bpa.api.PartnerAPI;
 import org.hyperledger.bpa.client.LedgerExplorerClient;
 import org.hyperledger.bpa.controller.api.partner.PartnerCredentialType;
+import org.hyperledger.bpa.impl.ClusterJobRunner;
 import org.hyperledger.bpa.impl.util.AriesStringUtil;
 import org.hyperledger.bpa.impl.util.Converter;
 import org.hyperledger.bpa.persistence.model.BPARestrictions;
@@ -35,10 +38,17 @@ import org.hyperledger.bpa.persistence.repository.BPARestrictionsRepository;
 import org.hyperledger.bpa.persistence.repository.BPASchemaRepository;
 import org.hyperledger.bpa.persistence.repository.PartnerRepository;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
+@Slf4j
 @Singleton
 public class PartnerCredDefLookup {
 
@@ -64,6 +74,12 @@ public class PartnerCredDefLookup {
     @Inject
     Converter conv;
 
+    @Inject
+    ClusterJobRunner jobs;
+
+    @Value("${bpa.ledger.lookup-concurrency}")
+    Integer concurrency;
+
     /**
      * Get/filter partners that can issue credentials that are based on the schema's
      * id.
@@ -125,29 +141,190 @@ public class PartnerCredDefLookup {
      * an issuer of credentials that are based on that schema.
      */
     @Scheduled(cron = "0 15 2 ? * *")
+    void scheduledLookupTypesForAllPartners() {
+        jobs.runExclusive("lookup-partner-credential-types", Duration.ofHours(1), this::lookupTypesForAllPartners);
+    }
+
     void lookupTypesForAllPartners() {
+        ledger.ifPresent(l -> scanSchemas(l, schemaRepo.findByType(CredentialType.INDY)));
+    }
+
+    /**
+     * Like {@link #lookupTypesForAllPartners()}, but only for schemas that were
+     * never scanned before, e.g. because they were just added.
+     */
+    void lookupTypesForNewSchemas() {
         ledger.ifPresent(l -> {
-            Map<String, List<PartnerCredentialType>> didToTypes = new HashMap<>();
-            StreamSupport.stream(schemaRepo.findAll().spliterator(), false).filter(BPASchema::typeIsIndy).forEach(
-                    s -> l.queryCredentialDefinitions(s.getSeqNo().toString()).ifPresent(defs -> defs.forEach(def -> {
-                        String did = AriesStringUtil.credDefIdGetDid(def.getCredentialDefinitionId());
-                        if (didToTypes.containsKey(did)) {
-                            didToTypes.get(did).add(def);
-                        } else {
-                            List<PartnerCredentialType> types = new ArrayList<>();
-                            types.add(def);
-                            didToTypes.put(did, types);
-                        }
-                    })));
-            didToTypes.forEach(
-                    (did, types) -> partnerRepo.updateByDid(didPrefix + did,
-                            conv.toMap(new CredentialTypeWrapper(types))));
+            List<BPASchema> schemas = schemaRepo.findByType(CredentialType.INDY)
+                    .stream()
+                    .filter(s -> s.getLedgerScannedAt() == null)
+                    .toList();
+            if (!schemas.isEmpty()) {
+                scanSchemas(l, schemas);
+            }
         });
     }
 
+    /**
+     * Looks up the credential definitions of a single partner, instead of the ones
+     * of all partners.
+     *
+     * @param did the partner's did
+     */
+    void lookupTypesForPartner(@NonNull String did) {
+        if (!did.startsWith(didPrefix)) {
+            return;
+        }
+        ledger.ifPresent(l -> {
+            Set<String> seqNos = schemaRepo.findByType(CredentialType.INDY)
+                    .stream()
+                    .map(BPASchema::getSeqNo)
+                    .filter(Objects::nonNull)
+                    .map(String::valueOf)
+                    .collect(Collectors.toSet());
+            if (seqNos.isEmpty()) {
+                return;
+            }
+            String ledgerDid = AriesStringUtil.getLastSegment(did);
+            l.queryCredentialDefinitions(did).ifPresent(defs -> {
+                List<PartnerCredentialType> types = defs
+                        .stream()
+                        .filter(def -> ledgerDid
+                                .equals(AriesStringUtil.credDefIdGetDid(def.getCredentialDefinitionId())))
+                        .filter(def -> seqNos.contains(def.getSeqno()))
+                        .toList();
+                updateChanged(seqNos, Map.of(did, types), () -> partnerRepo.findByDidIn(List.of(did)));
+            });
+        });
+    }
+
+    @Async
+    public void lookupTypesForNewSchemasAsync() {
+        lookupTypesForNewSchemas();
+    }
+
     @Async
-    public void lookupTypesForAllPartnersAsync() {
-        lookupTypesForAllPartners();
+    public void lookupTypesForPartnerAsync(@NonNull String did) {
+        lookupTypesForPartner(did);
+    }
+
+    /**
+     * Queries the ledger for the credential definitions of the schemas in parallel
+     * and updates all partners whose types changed. Schemas whose query failed are
+     * skipped, so the types of these schemas stay as they are.
+     *
+     * @param l       {@link LedgerExplorerClient}
+     * @param schemas indy schemas
+     */
+    private void scanSchemas(@NonNull LedgerExplorerClient l, @NonNull List<BPASchema> schemas) {
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(concurrency, schemas.size())), r -> {
+            Thread t = new Thread(r, "bpa-ledger-lookup");
+            t.setDaemon(true);
+            return t;
+        });
+        List<CompletableFuture<Optional<SchemaScan>>> queries;
+        try {
+            queries = schemas.stream()
+                    .filter(s -> s.getSeqNo() != null)
+                    .map(s -> CompletableFuture.supplyAsync(() -> {
+                        String seqNo = s.getSeqNo().toString();
+                        return l.queryCredentialDefinitions(seqNo).map(defs -> new SchemaScan(s, seqNo, defs
+                                .stream()
+                                .filter(def -> seqNo.equals(def.getSeqno()))
+                                .toList()));
+                    }, pool).exceptionally(e -> {
+                        log.error("Could not query credential definitions of schema: {}", s.getSchemaId(), e);
+                        return Optional.empty();
+                    }))
+                    .toList();
+            CompletableFuture.allOf(queries.toArray(CompletableFuture[]::new)).join();
+        } finally {
+            pool.shutdown();
+        }
+
+        List<SchemaScan> scans = queries.stream()
+                .map(CompletableFuture::join)
+                .flatMap(Optional::stream)
+                .toList();
+        if (scans.isEmpty()) {
+            return;
+        }
+
+        Set<String> seqNos = new HashSet<>();
+        Map<String, List<PartnerCredentialType>> didToTypes = new HashMap<>();
+        scans.forEach(scan -> {
+            seqNos.add(scan.seqNo());
+            scan.types().forEach(def -> didToTypes
+                    .computeIfAbsent(didPrefix + AriesStringUtil.credDefIdGetDid(def.getCredentialDefinitionId()),
+                            k -> new ArrayList<>())
+                    .add(def));
+        });
+
+        // partners that issue one of the credentials now, or did so before
+        updateChanged(seqNos, didToTypes, () -> {
+            Map<UUID, Partner> candidates = new HashMap<>();
+            if (!didToTypes.isEmpty()) {
+                partnerRepo.findByDidIn(new ArrayList<>(didToTypes.keySet()))
+                        .forEach(p -> candidates.put(p.getId(), p));
+            }
+            seqNos.forEach(seqNo -> partnerRepo.findBySupportedCredential(seqNo)
+                    .forEach(p -> candidates.put(p.getId(), p)));
+            return candidates.values();
+        });
+
+        Instant now = Instant.now();
+        scans.forEach(scan -> {
+            if (scan.schema().getId() != null) {
+                schemaRepo.updateLedgerScannedAt(scan.schema().getId(), now);
+            }
+        });
+    }
+
+    /**
+     * Replaces the types of the scanned schemas of each partner with the types that
+     * were found on the ledger, types of other schemas are kept. Partners are only
+     * written if their set of credential definitions changed.
+     *
+     * @param seqNos     sequence numbers of the scanned schemas
+     * @param didToTypes partner did to the credential definitions found on the
+     *                   ledger
+     * @param partners   loads the partners that might be affected, called while
+     *                   holding the lock, so that concurrent lookups do not
+     *                   overwrite each other
+     */
+    private synchronized void updateChanged(@NonNull Set<String> seqNos,
+            @NonNull Map<String, List<PartnerCredentialType>> didToTypes,
+            @NonNull Supplier<Collection<Partner>> partners) {
+        Set<String> done = new HashSet<>();
+        int updated = 0;
+        for (Partner p : partners.get()) {
+            if (p.getDid() == null || !done.add(p.getDid())) {
+                continue;
+            }
+            List<PartnerCredentialType> current = p.getSupportedCredentials() != null
+                    ? conv.fromMap(p.getSupportedCredentials(), CredentialTypeWrapper.class).getWrapped()
+                    : null;
+            Map<String, PartnerCredentialType> types = new TreeMap<>();
+            if (current != null) {
+                current.stream()
+                        .filter(t -> !seqNos.contains(t.getSeqno()))
+                        .forEach(t -> types.put(t.getCredentialDefinitionId(), t));
+            }
+            didToTypes.getOrDefault(p.getDid(), List.of()).forEach(t -> types.put(t.getCredentialDefinitionId(), t));
+
+            Set<String> before = current != null
+                    ? current.stream().map(PartnerCredentialType::getCredentialDefinitionId).collect(Collectors.toSet())
+                    : Set.of();
+            if (!before.equals(types.keySet())) {
+                partnerRepo.updateByDid(p.getDid(),
+                        conv.toMap(new CredentialTypeWrapper(new ArrayList<>(types.values()))));
+                updated++;
+            }
+        }
+        log.debug("Credential types of schemas: {}, partners checked: {}, updated: {}", seqNos, done.size(), updated);
+    }
+
+    private record SchemaScan(BPASchema schema, String seqNo, List<PartnerCredentialType> types) {
     }
 
     @Data
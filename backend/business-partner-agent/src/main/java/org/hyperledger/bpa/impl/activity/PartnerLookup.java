@@ -17,9 +17,19 @@
  */
 package org.hyperledger.bpa.impl.activity;
 
-import io.micronaut.cache.annotation.Cacheable;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micronaut.context.annotation.Value;
+import io.micronaut.core.annotation.Nullable;
 import io.micronaut.core.util.CollectionUtils;
+import io.micronaut.scheduling.TaskExecutors;
+import io.micronaut.scheduling.annotation.Scheduled;
+import io.reactivex.rxjava3.core.Maybe;
+import io.reactivex.rxjava3.core.Scheduler;
+import io.reactivex.rxjava3.core.Single;
+import io.reactivex.rxjava3.schedulers.Schedulers;
 import jakarta.inject.Inject;
+import jakarta.inject.Named;
 import jakarta.inject.Singleton;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
@@ -34,10 +44,14 @@ import org.hyperledger.bpa.client.DidDocClient;
 import org.hyperledger.bpa.config.BPAMessageSource;
 import org.hyperledger.bpa.impl.aries.jsonld.SignVerifyLD;
 import org.hyperledger.bpa.impl.util.Converter;
+import org.hyperledger.bpa.impl.util.CryptoUtil;
+import org.hyperledger.bpa.impl.util.LookupCache;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
 
 @Slf4j
 @Singleton
@@ -55,15 +69,180 @@ public class PartnerLookup {
     @Inject
     BPAMessageSource.DefaultMessageSource ms;
 
-    @Cacheable(cacheNames = { "partner-lookup-cache" })
+    @Inject
+    @Named(TaskExecutors.IO)
+    ExecutorService executor;
+
+    @Value("${bpa.did.cache.profile-refresh}")
+    Duration profileRefresh;
+
+    @Value("${bpa.did.cache.expire-after}")
+    Duration expireAfter;
+
+    @Value("${bpa.did.cache.maximum-size}")
+    Long maximumSize;
+
+    private LookupCache<PartnerAPI> profiles;
+
+    /** verification results by verkey and presentation digest */
+    private Cache<Verification, Boolean> verifications;
+
+    private Scheduler scheduler;
+
+    /**
+     * Resolves the did document and the public profile of a partner and verifies
+     * the profile's proof. Blocks the calling thread, see
+     * {@link #lookupPartnerAsync(String)}.
+     *
+     * @param did the fully qualified did
+     * @return {@link PartnerAPI}
+     */
     public PartnerAPI lookupPartner(@NonNull String did) {
+        return lookup(did, Schedulers.trampoline()).blockingGet();
+    }
+
+    /**
+     * Same as {@link #lookupPartner(String)}, but resolution and verification run
+     * on the io executor. Results are cached, concurrent calls for the same did
+     * share one lookup.
+     *
+     * @param did the fully qualified did
+     * @return {@link Single} emitting the verified {@link PartnerAPI}
+     */
+    public Single<PartnerAPI> lookupPartnerAsync(@NonNull String did) {
+        return lookup(did, getScheduler());
+    }
+
+    /**
+     * Resolves the public profile without waiting for the proof verification. Valid
+     * is only set when the presentation was verified before, otherwise it is null
+     * and the result can be passed to {@link #verify(PartnerAPI)}.
+     *
+     * @param did the fully qualified did
+     * @return {@link PartnerAPI}
+     */
+    public PartnerAPI lookupPartnerPending(@NonNull String did) {
+        PartnerAPI partner = getProfiles().get(did);
+        Boolean valid = toVerification(partner)
+                .map(v -> getVerifications().getIfPresent(v))
+                .orElse(null);
+        return withValid(partner, valid);
+    }
+
+    /**
+     * Verifies the proof of the partner's public profile on the io executor.
+     *
+     * @param partner resolved {@link PartnerAPI}
+     * @return {@link Maybe} emitting the verification result, empty if the profile
+     *         has no proof that can be verified against the did document
+     */
+    public Maybe<Boolean> verify(@NonNull PartnerAPI partner) {
+        return verify(partner, getScheduler());
+    }
+
+    /**
+     * Drops the cached profile and did document of a partner, so that the next
+     * lookup resolves both again.
+     *
+     * @param did the fully qualified did
+     */
+    public void invalidate(@NonNull String did) {
+        getProfiles().invalidate(did);
+        ur.invalidateDidDocument(did);
+    }
+
+    @Scheduled(fixedDelay = "15m", initialDelay = "15m")
+    void logCacheStats() {
+        log.info("Lookup cache statistics: {}, {}, verifications={}", getProfiles().stats(),
+                ur.didDocumentCacheStats(), getVerifications().estimatedSize());
+    }
+
+    private Single<PartnerAPI> lookup(@NonNull String did, Scheduler on) {
+        return Single.fromCallable(() -> getProfiles().get(did))
+                .subscribeOn(on)
+                .flatMap(partner -> verify(partner, on)
+                        .map(valid -> withValid(partner, valid))
+                        .defaultIfEmpty(withValid(partner, null)));
+    }
+
+    private Maybe<Boolean> verify(@NonNull PartnerAPI partner, Scheduler on) {
+        Optional<Verification> verification = toVerification(partner);
+        if (verification.isEmpty()) {
+            return Maybe.empty();
+        }
+        Verification key = verification.get();
+        Boolean known = getVerifications().getIfPresent(key);
+        if (known != null) {
+            return Maybe.just(known);
+        }
+        return Maybe.fromCallable(() -> crypto.verify(key.verkey(), partner.getVerifiablePresentation()))
+                .subscribeOn(on)
+                .doOnSuccess(valid -> getVerifications().put(key, valid));
+    }
+
+    private Optional<Verification> toVerification(PartnerAPI partner) {
+        VerifiablePresentation<VerifiableIndyCredential> vp = partner.getVerifiablePresentation();
+        if (vp == null || partner.getDidDocAPI() == null
+                || CollectionUtils.isEmpty(partner.getDidDocAPI().getVerificationMethod())) {
+            return Optional.empty();
+        }
+        String verificationMethod = vp.getProof() != null ? vp.getProof().getVerificationMethod() : "";
+        // a collision of the key would return the result of another presentation,
+        // so the key has to be a cryptographic digest
+        String digest = CryptoUtil.digest(vp);
+        if (digest == null) {
+            return Optional.empty();
+        }
+        return matchKey(verificationMethod, partner.getDidDocAPI().getVerificationMethod())
+                .map(pk -> new Verification(pk, digest));
+    }
+
+    /**
+     * Cached profiles are shared between callers, every caller gets its own copy
+     */
+    private static PartnerAPI withValid(PartnerAPI partner, @Nullable Boolean valid) {
+        return PartnerAPI
+                .builder()
+                .did(partner.getDid())
+                .ariesSupport(partner.getAriesSupport())
+                .didDocAPI(partner.getDidDocAPI())
+                .verifiablePresentation(partner.getVerifiablePresentation())
+                .credential(partner.getCredential())
+                .valid(valid)
+                .build();
+    }
+
+    private synchronized LookupCache<PartnerAPI> getProfiles() {
+        if (profiles == null) {
+            profiles = new LookupCache<>("partner-profile", profileRefresh, expireAfter, maximumSize, executor,
+                    this::resolvePartner);
+        }
+        return profiles;
+    }
+
+    private synchronized Cache<Verification, Boolean> getVerifications() {
+        if (verifications == null) {
+            verifications = Caffeine.newBuilder()
+                    .expireAfterWrite(expireAfter)
+                    .maximumSize(maximumSize)
+                    .build();
+        }
+        return verifications;
+    }
+
+    private synchronized Scheduler getScheduler() {
+        if (scheduler == null) {
+            scheduler = Schedulers.from(executor);
+        }
+        return scheduler;
+    }
+
+    private PartnerAPI resolvePartner(@NonNull String did) {
         Optional<DIDDocument> didDocument = ur.getDidDocument(did);
         if (didDocument.isPresent()) {
             Optional<String> publicProfileUrl = didDocument.get().findPublicProfileUrl();
             if (publicProfileUrl.isPresent()) {
-                PartnerAPI partner = lookupPartner(
-                        publicProfileUrl.get(),
-                        didDocument.get().getVerificationMethod());
+                PartnerAPI partner = fetchPublicProfile(publicProfileUrl.get());
                 partner.setAriesSupport(didDocument.get().hasAriesEndpoint());
                 partner.setDidDocAPI(didDocument.get());
                 return partner;
@@ -79,23 +258,11 @@ public class PartnerLookup {
         throw new PartnerException(ms.getMessage("api.partner.lookup.no.did.doc"));
     }
 
-    PartnerAPI lookupPartner(@NonNull String endpoint, List<DIDDocument.VerificationMethod> verificationMethods) {
-        Optional<VerifiablePresentation<VerifiableIndyCredential>> profile = ur.getPublicProfile(endpoint);
-        if (profile.isPresent()) {
-
-            final PartnerAPI partner = converter.toAPIObject(profile.get());
-
-            String verificationMethod = profile.get().getProof() != null
-                    ? profile.get().getProof().getVerificationMethod()
-                    : "";
-            Optional<String> pk = matchKey(verificationMethod, verificationMethods);
-            if (pk.isPresent()) {
-                final Boolean valid = crypto.verify(pk.get(), profile.get());
-                partner.setValid(valid);
-            }
-            return partner;
-        }
-        throw new PartnerException(ms.getMessage("api.partner.lookup.no.endpoint", Map.of("endpoint", endpoint)));
+    private PartnerAPI fetchPublicProfile(@NonNull String endpoint) {
+        return ur.getPublicProfile(endpoint)
+                .map(converter::toAPIObject)
+                .orElseThrow(() -> new PartnerException(
+                        ms.getMessage("api.partner.lookup.no.endpoint", Map.of("endpoint", endpoint))));
     }
 
     /**
@@ -128,4 +295,6 @@ public class PartnerLookup {
         return Optional.ofNullable(result);
     }
 
+    private record Verification(String verkey, String vpDigest) {
+    }
 }
@@ -33,6 +33,7 @@ import org.hyperledger.aries.api.present_proof_v2.V20PresExRecordToV1Converter;
 import org.hyperledger.aries.api.revocation.RevocationNotificationEvent;
 import org.hyperledger.aries.api.trustping.PingEvent;
 import org.hyperledger.aries.webhook.EventHandler;
+import org.hyperledger.aries.webhook.EventParser;
 import org.hyperledger.bpa.impl.aries.chat.ChatMessageManager;
 import org.hyperledger.bpa.impl.aries.connection.ConnectionManager;
 import org.hyperledger.bpa.impl.aries.connection.PingManager;
@@ -43,11 +44,20 @@ import org.hyperledger.bpa.impl.aries.proof.ProofEventHandler;
 import org.hyperledger.bpa.persistence.model.BPACredentialExchange;
 
 import java.util.Optional;
+import java.util.Set;
 
 @Slf4j
 @Singleton
 public class AriesEventHandler extends EventHandler {
 
+    /** topics that {@link #handleEventOrThrow(String, String)} handles itself */
+    private static final Set<String> TOPICS = Set.of(
+            "connections", "present_proof", "present_proof_v2_0", "issue_credential", "issue_credential_v2_0",
+            "issue_credential_v2_0_indy", "issue_credential_v2_0_ld_proof", "basicmessages", "ping",
+            "revocation-notification");
+
+    private final EventParser parser = new EventParser();
+
     private final ConnectionManager connection;
 
     private final Optional<PingManager> ping;
@@ -62,6 +72,10 @@ public class AriesEventHandler extends EventHandler {
 
     private final ChatMessageManager chatMessage;
 
+    private final StripedEventDispatcher dispatcher;
+
+    private final StateChangeBatcher batcher;
+
     @Inject
     public AriesEventHandler(
             ConnectionManager connectionManager,
@@ -70,7 +84,9 @@ public class AriesEventHandler extends EventHandler {
             ProofEventHandler proofEventHandler,
             LDEventHandler jsonLD,
             IssuerManager issuerCredentialManager,
-            ChatMessageManager chatMessageManager) {
+            ChatMessageManager chatMessageManager,
+            StripedEventDispatcher dispatcher,
+            StateChangeBatcher batcher) {
         this.connection = connectionManager;
         this.ping = pingManager;
         this.credHolder = holderCredentialManager;
@@ -78,6 +94,44 @@ public class AriesEventHandler extends EventHandler {
         this.proof = proofEventHandler;
         this.jsonLD = jsonLD;
         this.chatMessage = chatMessageManager;
+        this.dispatcher = dispatcher;
+        this.batcher = batcher;
+    }
+
+    /**
+     * Same as {@link #handleEvent(String, String)}, but errors that happen while
+     * handling the event are thrown, so that the caller can retry the event. The
+     * base class logs and swallows all errors, so the topics the BPA handles are
+     * parsed and routed here.
+     *
+     * @param eventType aca-py topic
+     * @param json      raw event body
+     */
+    public void handleEventOrThrow(String eventType, String json) {
+        if (!TOPICS.contains(eventType)) {
+            handleEvent(eventType, json);
+            return;
+        }
+        handleRaw(eventType, json);
+        switch (eventType) {
+        case "connections" -> parser.parseValueSave(json, ConnectionRecord.class).ifPresent(this::handleConnection);
+        case "present_proof" -> parser.parsePresentProof(json).ifPresent(this::handleProof);
+        case "present_proof_v2_0" -> parser.parseValueSave(json, V20PresExRecord.class)
+                .ifPresent(this::handleProofV2);
+        case "issue_credential" -> parser.parseValueSave(json, V1CredentialExchange.class)
+                .ifPresent(this::handleCredential);
+        case "issue_credential_v2_0" -> parser.parseValueSave(json, V20CredExRecord.class)
+                .ifPresent(this::handleCredentialV2);
+        case "issue_credential_v2_0_indy" -> parser.parseValueSave(json, V2IssueIndyCredentialEvent.class)
+                .ifPresent(this::handleIssueCredentialV2Indy);
+        case "issue_credential_v2_0_ld_proof" -> parser.parseValueSave(json, V2IssueLDCredentialEvent.class)
+                .ifPresent(this::handleIssueCredentialV2LD);
+        case "basicmessages" -> parser.parseValueSave(json, BasicMessage.class).ifPresent(this::handleBasicMessage);
+        case "ping" -> parser.parseValueSave(json, PingEvent.class).ifPresent(this::handlePing);
+        case "revocation-notification" -> parser.parseValueSave(json, RevocationNotificationEvent.class)
+                .ifPresent(this::handleRevocationNotification);
+        default -> throw new IllegalStateException("Unhandled topic: " + eventType);
+        }
     }
 
     @Override
@@ -87,14 +141,13 @@ public class AriesEventHandler extends EventHandler {
         if (connectionRecord.stateIsInvitation()) {
             return;
         }
-        synchronized (connection) {
-            if (connectionRecord.isInvitationResponse()) {
-                connection.handleInvitationEvent(connectionRecord);
-            } else if (connectionRecord.isOutgoingConnection()) {
-                connection.handleOutgoingConnectionEvent(connectionRecord);
-            } else {
-                connection.handleIncomingConnectionEvent(connectionRecord);
-            }
+        String connectionId = connectionRecord.getConnectionId();
+        if (connectionRecord.isInvitationResponse()) {
+            dispatch(connectionId, () -> connection.handleInvitationEvent(connectionRecord));
+        } else if (connectionRecord.isOutgoingConnection()) {
+            dispatch(connectionId, () -> connection.handleOutgoingConnectionEvent(connectionRecord));
+        } else {
+            dispatchBatched(connectionId, () -> connection.handleIncomingConnectionEvent(connectionRecord));
         }
     }
 
@@ -106,9 +159,7 @@ public class AriesEventHandler extends EventHandler {
     @Override
     public void handleProof(PresentationExchangeRecord presExRecord) {
         log.debug("Present Proof Event: {}", presExRecord);
-        synchronized (proof) {
-            proof.dispatch(presExRecord);
-        }
+        dispatch(presExRecord.getPresentationExchangeId(), () -> proof.dispatch(presExRecord));
     }
 
     @Override
@@ -122,21 +173,20 @@ public class AriesEventHandler extends EventHandler {
         log.debug("Credential Event: {}", v1CredEx);
         // holder events
         if (v1CredEx.roleIsHolder()) {
-            synchronized (credHolder) {
-                if (v1CredEx.stateIsCredentialAcked()) {
-                    credHolder.handleV1CredentialExchangeAcked(v1CredEx);
-                } else if (v1CredEx.stateIsOfferReceived()) {
-                    credHolder.handleOfferReceived(v1CredEx, BPACredentialExchange.ExchangePayload
-                            .indy(v1CredEx.getCredentialProposalDict().getCredentialProposal()), ExchangeVersion.V1);
-                } else {
-                    credHolder.handleStateChangesOnly(
-                            v1CredEx.getCredentialExchangeId(), v1CredEx.getState(),
-                            v1CredEx.getUpdatedAt(), v1CredEx.getErrorMsg());
-                }
+            String credExId = v1CredEx.getCredentialExchangeId();
+            if (v1CredEx.stateIsCredentialAcked()) {
+                dispatch(credExId, () -> credHolder.handleV1CredentialExchangeAcked(v1CredEx));
+            } else if (v1CredEx.stateIsOfferReceived()) {
+                dispatch(credExId, () -> credHolder.handleOfferReceived(v1CredEx, BPACredentialExchange.ExchangePayload
+                        .indy(v1CredEx.getCredentialProposalDict().getCredentialProposal()), ExchangeVersion.V1));
+            } else {
+                dispatchBatched(credExId, () -> credHolder.handleStateChangesOnly(
+                        credExId, v1CredEx.getState(),
+                        v1CredEx.getUpdatedAt(), v1CredEx.getErrorMsg()));
             }
             // issuer events
         } else if (v1CredEx.roleIsIssuer()) {
-            synchronized (credIssuer) {
+            dispatch(v1CredEx.getCredentialExchangeId(), () -> {
                 if (v1CredEx.stateIsProposalReceived()) {
                     credIssuer.handleV1CredentialProposal(v1CredEx);
                 } else if (v1CredEx.stateIsRequestReceived()) {
@@ -144,7 +194,7 @@ public class AriesEventHandler extends EventHandler {
                 } else {
                     credIssuer.handleV1CredentialExchange(v1CredEx);
                 }
-            }
+            });
         }
     }
 
@@ -152,7 +202,7 @@ public class AriesEventHandler extends EventHandler {
     public void handleCredentialV2(V20CredExRecord v2CredEx) {
         log.debug("Credential V2 Event: {}", v2CredEx);
         if (v2CredEx.roleIsIssuer()) {
-            synchronized (credIssuer) {
+            dispatch(v2CredEx.getCredentialExchangeId(), () -> {
                 if (v2CredEx.stateIsProposalReceived()) {
                     credIssuer.handleV2CredentialProposal(v2CredEx);
                 } else if (v2CredEx.stateIsRequestReceived()) {
@@ -160,18 +210,17 @@ public class AriesEventHandler extends EventHandler {
                 } else {
                     credIssuer.handleV2CredentialExchange(v2CredEx);
                 }
-            }
+            });
         } else if (v2CredEx.roleIsHolder()) {
-            synchronized (credHolder) {
-                if (v2CredEx.stateIsOfferReceived()) {
-                    credHolder.handleV2OfferReceived(v2CredEx);
-                } else if (v2CredEx.stateIsCredentialReceived()) {
-                    credHolder.handleV2CredentialReceived(v2CredEx);
-                } else {
-                    credHolder.handleStateChangesOnly(
-                            v2CredEx.getCredentialExchangeId(), v2CredEx.getState(),
-                            v2CredEx.getUpdatedAt(), v2CredEx.getErrorMsg());
-                }
+            String credExId = v2CredEx.getCredentialExchangeId();
+            if (v2CredEx.stateIsOfferReceived()) {
+                dispatch(credExId, () -> credHolder.handleV2OfferReceived(v2CredEx));
+            } else if (v2CredEx.stateIsCredentialReceived()) {
+                dispatch(credExId, () -> credHolder.handleV2CredentialReceived(v2CredEx));
+            } else {
+                dispatchBatched(credExId, () -> credHolder.handleStateChangesOnly(
+                        credExId, v2CredEx.getState(),
+                        v2CredEx.getUpdatedAt(), v2CredEx.getErrorMsg()));
             }
         }
     }
@@ -179,17 +228,15 @@ public class AriesEventHandler extends EventHandler {
     @Override
     public void handleIssueCredentialV2Indy(V2IssueIndyCredentialEvent revocationInfo) {
         log.debug("Issue Credential V2 Indy Event: {}", revocationInfo);
-        synchronized (credIssuer) {
-            credIssuer.handleIssueCredentialV2Indy(revocationInfo);
-        }
+        dispatch(revocationInfo.getCredExId(),
+                () -> credIssuer.handleIssueCredentialV2Indy(revocationInfo));
     }
 
     @Override
     public void handleIssueCredentialV2LD(V2IssueLDCredentialEvent credentialInfo) {
         log.debug("Issue LD Credential V2 Event: {}", credentialInfo);
-        synchronized (jsonLD) {
-            jsonLD.handleIssueCredentialV2LD(credentialInfo);
-        }
+        dispatch(credentialInfo.getCredExId(),
+                () -> jsonLD.handleIssueCredentialV2LD(credentialInfo));
     }
 
     @Override
@@ -208,4 +255,35 @@ public class AriesEventHandler extends EventHandler {
     public void handleRaw(String eventType, String json) {
         log.trace(json);
     }
+
+    /**
+     * Handles the event on the stripe of the exchange. The handler writes the
+     * exchange itself, so the state changes of earlier events that are still
+     * collected by the {@link StateChangeBatcher} are written first.
+     */
+    private void dispatch(String key, Runnable runnable) {
+        dispatchBatched(key, () -> {
+            batcher.flush(key);
+            runnable.run();
+        });
+    }
+
+    /**
+     * Handles the event on the stripe of the exchange. State changes the handler
+     * submitted to the {@link StateChangeBatcher} are written before this returns,
+     * or, if the inbox collects several events of the exchange, once all of them
+     * were handled. Either way before the inbox acknowledges the event.
+     */
+    private void dispatchBatched(String key, Runnable runnable) {
+        dispatcher.dispatch(key, () -> {
+            try {
+                runnable.run();
+            } catch (RuntimeException e) {
+                // the event is retried, including its state changes
+                batcher.discard(key);
+                throw e;
+            }
+            batcher.release(key);
+        });
+    }
 }
@@ -0,0 +1,294 @@
+/*
+ * Copyright (c) 2020-2022 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.impl.aries;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micronaut.context.annotation.Value;
+import io.micronaut.scheduling.annotation.Scheduled;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.hyperledger.aries.webhook.EventHandler;
+import org.hyperledger.bpa.persistence.model.AriesEventInbox;
+import org.hyperledger.bpa.persistence.repository.AriesEventInboxRepository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Durable inbox for aca-py webhook events. The webhook controller only appends
+ * the raw event, the events are then handled in the background. Events that
+ * belong to the same exchange are handled in the order they were received, even
+ * across instances, failed events are retried and dead lettered if they still
+ * fail. Events that were not handled when the instance went down are replayed
+ * on the next poll. An instance only claims as many exchanges as it has idle
+ * workers, so claimed events do not wait in memory. All pending events of an
+ * exchange are claimed and handled together, so that their state changes are
+ * written once, see {@link StateChangeBatcher}.
+ */
+@Slf4j
+@Singleton
+public class EventInboxManager {
+
+    /** aca-py record ids in the order of preference, used as ordering key */
+    private static final List<String> KEY_FIELDS = List.of(
+            "cred_ex_id", "credential_exchange_id", "pres_ex_id", "presentation_exchange_id", "connection_id");
+
+    @Value("${bpa.events.inbox.batch-size}")
+    Integer batchSize;
+
+    @Value("${bpa.events.inbox.max-events-per-key}")
+    Integer maxEventsPerKey;
+
+    @Value("${bpa.events.inbox.max-attempts}")
+    Integer maxAttempts;
+
+    @Value("${bpa.events.inbox.retry-backoff}")
+    Duration retryBackoff;
+
+    @Value("${bpa.events.inbox.claim-timeout}")
+    Duration claimTimeout;
+
+    @Inject
+    AriesEventInboxRepository inboxRepo;
+
+    @Inject
+    List<EventHandler> handlers;
+
+    @Inject
+    ObjectMapper mapper;
+
+    @Inject
+    StateChangeBatcher batcher;
+
+    private final StripedEventDispatcher workers;
+
+    private final int workerCount;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final ExecutorService poller = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "bpa-inbox-poller");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final AtomicBoolean pollScheduled = new AtomicBoolean();
+
+    @Inject
+    public EventInboxManager(@Value("${bpa.events.inbox.workers}") Integer workers) {
+        this.workers = new StripedEventDispatcher(workers, "bpa-inbox-");
+        this.workerCount = workers;
+    }
+
+    /**
+     * Persists the raw event and triggers the background processing
+     *
+     * @param eventType aca-py topic
+     * @param eventBody raw event
+     */
+    public void append(@NonNull String eventType, @NonNull String eventBody) {
+        AriesEventInbox event = AriesEventInbox
+                .builder()
+                .eventType(eventType)
+                .eventBody(eventBody)
+                .state(AriesEventInbox.InboxState.NEW)
+                .build();
+        event.setOrderingKey(resolveKey(event));
+        inboxRepo.save(event);
+        triggerPoll();
+    }
+
+    /**
+     * Fallback if a trigger was missed and replay of events that were persisted by
+     * an instance that did not handle them.
+     */
+    @Scheduled(fixedDelay = "10s", initialDelay = "30s")
+    void scheduledPoll() {
+        int released = inboxRepo.releaseExpiredClaims(Instant.now().minus(claimTimeout));
+        if (released > 0) {
+            log.warn("Released {} events from the inbox that were claimed, but never handled", released);
+        }
+        triggerPoll();
+    }
+
+    void triggerPoll() {
+        if (pollScheduled.compareAndSet(false, true)) {
+            poller.execute(() -> {
+                pollScheduled.set(false);
+                try {
+                    poll();
+                } catch (Exception e) {
+                    log.error("Could not poll the event inbox", e);
+                }
+            });
+        }
+    }
+
+    void poll() {
+        int idle = Math.min(workerCount - inFlight.get(), batchSize);
+        if (idle <= 0) {
+            // polled again when a worker is done
+            return;
+        }
+        String claimedBy = UUID.randomUUID().toString();
+        Instant now = Instant.now();
+        if (inboxRepo.claim(claimedBy, now, idle) == 0) {
+            return;
+        }
+        if (maxEventsPerKey > 1) {
+            inboxRepo.claimFollowers(claimedBy, now, maxEventsPerKey);
+        }
+        Map<String, List<AriesEventInbox>> byKey = new LinkedHashMap<>();
+        inboxRepo.findByClaimedByOrderByCreatedAt(claimedBy).forEach(
+                event -> byKey.computeIfAbsent(event.getOrderingKey(), k -> new ArrayList<>()).add(event));
+        byKey.forEach((key, events) -> {
+            inFlight.incrementAndGet();
+            workers.submit(key, () -> {
+                try {
+                    process(key, events);
+                } finally {
+                    inFlight.decrementAndGet();
+                    triggerPoll();
+                }
+            });
+        });
+    }
+
+    /**
+     * Handles all claimed events of a key together, their state changes are written
+     * once and the events are acknowledged at once. If that fails, the events are
+     * handled one by one, with retries.
+     *
+     * @param key    ordering key
+     * @param events claimed events of the key, oldest first
+     */
+    void process(@NonNull String key, @NonNull List<AriesEventInbox> events) {
+        if (events.size() > 1 && processTogether(key, events)) {
+            return;
+        }
+        events.forEach(this::process);
+    }
+
+    private boolean processTogether(@NonNull String key, @NonNull List<AriesEventInbox> events) {
+        Instant now = Instant.now();
+        for (AriesEventInbox event : events) {
+            if (inboxRepo.renewClaim(event.getId(), event.getClaimedBy(), now) == 0) {
+                return false;
+            }
+        }
+        try {
+            batcher.collect(key, () -> events.forEach(this::handle));
+        } catch (RuntimeException e) {
+            log.warn("Handling {} events of {} together failed, handling them one by one: {}",
+                    events.size(), key, e.getMessage());
+            return false;
+        }
+        inboxRepo.deleteByIdIn(events.stream().map(AriesEventInbox::getId).collect(Collectors.toList()));
+        return true;
+    }
+
+    void process(@NonNull AriesEventInbox event) {
+        int attempts = event.getAttempts() != null ? event.getAttempts() : 0;
+        RuntimeException lastError = null;
+        while (attempts < maxAttempts) {
+            if (inboxRepo.renewClaim(event.getId(), event.getClaimedBy(), Instant.now()) == 0) {
+                // released after the claim timeout, another poll handles it
+                log.warn("Claim of {} event {} expired, skipping it", event.getEventType(), event.getId());
+                return;
+            }
+            attempts++;
+            try {
+                handle(event);
+                inboxRepo.deleteById(event.getId());
+                return;
+            } catch (RuntimeException e) {
+                lastError = e;
+                log.warn("Handling of {} event {} failed, attempt {} of {}",
+                        event.getEventType(), event.getId(), attempts, maxAttempts);
+                inboxRepo.updateAttemptsAndLastError(event.getId(), attempts, StringUtils.abbreviate(
+                        e.getMessage(), 2048));
+                if (attempts < maxAttempts) {
+                    backoff(attempts);
+                }
+            }
+        }
+        log.error("Moving {} event {} to the dead letter state", event.getEventType(), event.getId(), lastError);
+        inboxRepo.updateStateAndAttemptsAndLastError(event.getId(), AriesEventInbox.InboxState.DEAD_LETTER,
+                attempts, lastError != null ? StringUtils.abbreviate(lastError.getMessage(), 2048) : null);
+    }
+
+    private void handle(@NonNull AriesEventInbox event) {
+        for (EventHandler handler : handlers) {
+            if (handler instanceof AriesEventHandler aeh) {
+                aeh.handleEventOrThrow(event.getEventType(), event.getEventBody());
+            } else {
+                handler.handleEvent(event.getEventType(), event.getEventBody());
+            }
+        }
+    }
+
+    private void backoff(int attempt) {
+        try {
+            // events of the same exchange wait on this stripe, so order is kept
+            TimeUnit.MILLISECONDS.sleep(retryBackoff.toMillis() * (1L << Math.min(attempt - 1, 10)));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    String resolveKey(@NonNull AriesEventInbox event) {
+        try {
+            JsonNode body = mapper.readTree(event.getEventBody());
+            for (String field : KEY_FIELDS) {
+                JsonNode value = body.get(field);
+                if (value != null && value.isTextual()) {
+                    return value.asText();
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Event body of {} event {} is not valid json", event.getEventType(), event.getId());
+        }
+        return event.getEventType();
+    }
+
+    int getInFlight() {
+        return inFlight.get();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        poller.shutdown();
+        workers.shutdown();
+    }
+}
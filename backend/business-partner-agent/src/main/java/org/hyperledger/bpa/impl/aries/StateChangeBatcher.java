@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2020-2022 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.impl.aries;
+
+import io.micronaut.core.annotation.Nullable;
+import jakarta.inject.Singleton;
+import lombok.NonNull;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Collects the state changes of an exchange and writes them with a single
+ * database update. The {@link EventInboxManager} hands out all pending events
+ * of an exchange at once and handles them within
+ * {@link #collect(String, Runnable)}, so the state changes of a burst are
+ * written once, before the events are acknowledged. Outside of a collect,
+ * {@link AriesEventHandler} releases the changes after every event. A failed
+ * write fails the events, and the inbox retries them.
+ */
+@Singleton
+public class StateChangeBatcher {
+
+    private final Map<String, Batch<?, ?>> pending = new ConcurrentHashMap<>();
+
+    /** keys whose changes are held back until the end of the collect */
+    private final Set<String> collecting = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Single state change of an exchange
+     *
+     * @param state     the new state
+     * @param timestamp when the state was reached
+     * @param event     the event that caused the change, the writer usually only
+     *                  needs the latest one
+     * @param <S>       state type
+     * @param <T>       event type
+     */
+    public record StateChange<S extends Enum<S>, T> (S state, Instant timestamp, T event) {
+    }
+
+    /**
+     * Adds the state change to the pending batch of the exchange
+     *
+     * @param key    connection or exchange id
+     * @param change {@link StateChange}
+     * @param writer writes all collected changes of the exchange at once, the
+     *               writer of the first change in a batch is used
+     * @param <S>    state type
+     * @param <T>    event type
+     */
+    @SuppressWarnings("unchecked")
+    public <S extends Enum<S>, T> void submit(@NonNull String key, @NonNull StateChange<S, T> change,
+            @NonNull Consumer<List<StateChange<S, T>>> writer) {
+        pending.compute(key, (k, existing) -> {
+            Batch<S, T> batch = existing != null ? (Batch<S, T>) existing : new Batch<>(writer);
+            batch.add(change);
+            return batch;
+        });
+    }
+
+    /**
+     * Handles several events of the exchange and writes all of their state changes
+     * once at the end. If the events fail, their changes are dropped.
+     *
+     * @param key    connection or exchange id
+     * @param events handles the events, in order
+     */
+    public void collect(@NonNull String key, @NonNull Runnable events) {
+        collecting.add(key);
+        try {
+            events.run();
+        } catch (RuntimeException e) {
+            discard(key);
+            throw e;
+        } finally {
+            collecting.remove(key);
+        }
+        flush(key);
+    }
+
+    /**
+     * Called after an event was handled. Writes the pending changes of the
+     * exchange, unless more events of the exchange are collected.
+     *
+     * @param key connection or exchange id
+     */
+    public void release(@Nullable String key) {
+        if (key != null && !collecting.contains(key)) {
+            flush(key);
+        }
+    }
+
+    /**
+     * Writes the pending changes of the exchange, if there are any, e.g. before the
+     * exchange is written directly. Write errors are thrown to the caller.
+     *
+     * @param key connection or exchange id
+     */
+    public void flush(@Nullable String key) {
+        if (key == null) {
+            return;
+        }
+        Batch<?, ?> batch = pending.remove(key);
+        if (batch != null) {
+            batch.write();
+        }
+    }
+
+    /**
+     * Drops the pending changes of the exchange, e.g. because its event failed and
+     * will be handled again
+     *
+     * @param key connection or exchange id
+     */
+    public void discard(@Nullable String key) {
+        if (key != null) {
+            pending.remove(key);
+        }
+    }
+
+    int getPendingSize() {
+        return pending.size();
+    }
+
+    private static final class Batch<S extends Enum<S>, T> {
+        private final List<StateChange<S, T>> changes = new ArrayList<>();
+        private final Consumer<List<StateChange<S, T>>> writer;
+
+        Batch(Consumer<List<StateChange<S, T>>> writer) {
+            this.writer = writer;
+        }
+
+        synchronized void add(StateChange<S, T> change) {
+            changes.add(change);
+        }
+
+        synchronized void write() {
+            writer.accept(List.copyOf(changes));
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2020-2022 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.impl.aries;
+
+import io.micronaut.context.annotation.Value;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Dispatches aca-py events onto a fixed number of single threaded stripes. All
+ * events with the same key (connection id, exchange id) land on the same stripe
+ * and are handled in the order they were submitted, events with different keys
+ * are handled in parallel. A handler may dispatch blocking to its own key, but
+ * not to a key on another stripe of the same dispatcher, because two stripes
+ * waiting on each other would dead lock.
+ */
+@Slf4j
+@Singleton
+public class StripedEventDispatcher {
+
+    /**
+     * stripe of the current thread, per instance, so dispatchers do not mix up
+     * their stripes
+     */
+    private final ThreadLocal<Integer> currentStripe = new ThreadLocal<>();
+
+    private final ExecutorService[] stripes;
+
+    @Inject
+    public StripedEventDispatcher(@Value("${bpa.events.stripes}") Integer stripeCount) {
+        this(stripeCount, "bpa-event-");
+    }
+
+    StripedEventDispatcher(Integer stripeCount, @NonNull String threadPrefix) {
+        if (stripeCount == null || stripeCount < 1) {
+            throw new IllegalArgumentException("Number of stripes must be a positive number");
+        }
+        this.stripes = new ExecutorService[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            final int stripe = i;
+            final AtomicInteger created = new AtomicInteger();
+            stripes[i] = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(() -> {
+                    currentStripe.set(stripe);
+                    r.run();
+                }, threadPrefix + stripe + "-" + created.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    /**
+     * Handles the event on its stripe and blocks until it is done, exceptions are
+     * re-thrown to the caller.
+     *
+     * @param key      connection or exchange id, events with the same key are
+     *                 handled in order
+     * @param runnable the event handler
+     * @throws IllegalStateException if called from another stripe of this
+     *                               dispatcher
+     */
+    public void dispatch(String key, @NonNull Runnable runnable) {
+        int stripe = stripeFor(key);
+        Integer current = currentStripe.get();
+        if (current != null) {
+            if (current != stripe) {
+                throw new IllegalStateException("Blocking dispatch from stripe " + current + " to stripe " + stripe
+                        + " could dead lock, use submit instead");
+            }
+            // already on the right stripe, queueing would dead lock
+            runnable.run();
+            return;
+        }
+        try {
+            submit(key, runnable).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Queues the event on its stripe without waiting for the result.
+     *
+     * @param key      connection or exchange id, events with the same key are
+     *                 handled in order
+     * @param runnable the event handler
+     * @return {@link CompletableFuture} that completes when the event was handled
+     */
+    public CompletableFuture<Void> submit(String key, @NonNull Runnable runnable) {
+        return CompletableFuture.runAsync(runnable, stripes[stripeFor(key)]);
+    }
+
+    int stripeFor(String key) {
+        if (key == null) {
+            return 0;
+        }
+        return Math.floorMod(key.hashCode(), stripes.length);
+    }
+
+    int getStripeCount() {
+        return stripes.length;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        for (ExecutorService stripe : stripes) {
+            stripe.shutdown();
+        }
+    }
+}
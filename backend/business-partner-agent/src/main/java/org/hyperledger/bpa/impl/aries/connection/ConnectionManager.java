@@ -49,6 +49,7 @@ import org.hyperledger.bpa.controller.api.invitation.CheckInvitationResponse;
 import org.hyperledger.bpa.controller.api.partner.CreatePartnerInvitationRequest;
 import org.hyperledger.bpa.impl.activity.DidResolver;
 import org.hyperledger.bpa.impl.activity.PartnerCredDefLookup;
+import org.hyperledger.bpa.impl.aries.StateChangeBatcher;
 import org.hyperledger.bpa.impl.util.AriesStringUtil;
 import org.hyperledger.bpa.impl.util.TimeUtil;
 import org.hyperledger.bpa.persistence.model.Partner;
@@ -103,6 +104,9 @@ public class ConnectionManager {
     @Inject
     PartnerCredDefLookup partnerCredDefLookup;
 
+    @Inject
+    StateChangeBatcher batcher;
+
     /**
      * Creates a connection invitation to be used within a barcode
      *
@@ -244,6 +248,20 @@ public class ConnectionManager {
 
     // handles invitations and incoming connection events
     public void handleIncomingConnectionEvent(ConnectionRecord record) {
+        // pure state changes are collected by the batcher and written once all
+        // collected events of the connection are handled
+        batcher.submit(record.getConnectionId(),
+                new StateChangeBatcher.StateChange<>(record.getState(),
+                        TimeUtil.fromISOInstant(record.getUpdatedAt()), record),
+                changes -> applyIncomingConnectionEvent(changes.get(changes.size() - 1).event(), changes));
+        if (hasSideEffects(record) || record.getState() == null) {
+            // written right away, together with the collected changes of earlier events
+            batcher.flush(record.getConnectionId());
+        }
+    }
+
+    private void applyIncomingConnectionEvent(@NonNull ConnectionRecord record,
+            @NonNull List<StateChangeBatcher.StateChange<ConnectionState, ConnectionRecord>> changes) {
         Optional<Partner> partner;
         if (StringUtils.isNotEmpty(record.getInvitationMsgId())) {
             partner = partnerRepo.findByConnectionIdOrInvitationMsgId(record.getConnectionId(),
@@ -262,7 +280,7 @@ public class ConnectionManager {
                     if (StringUtils.isEmpty(dbP.getConnectionId())) {
                         dbP.setConnectionId(record.getConnectionId());
                     }
-                    dbP.pushStates(record.getState(), record.getUpdatedAt());
+                    changes.forEach(c -> dbP.pushStates(c.state(), c.timestamp()));
                     partnerRepo.update(dbP);
                     resolveAndSend(record, dbP);
                 },
@@ -273,12 +291,14 @@ public class ConnectionManager {
                             .connectionId(record.getConnectionId())
                             .did(resolveDidFromRecord(record))
                             .state(record.getState())
-                            .pushStateChange(record.getState(), TimeUtil.fromISOInstant(record.getUpdatedAt()))
                             .label(record.getTheirLabel())
                             .incoming(Boolean.TRUE)
                             .trustPing(Boolean.TRUE)
                             .invitationMsgId(record.getInvitationMsgId())
                             .build();
+                    for (StateChangeBatcher.StateChange<ConnectionState, ConnectionRecord> c : changes) {
+                        p.pushStates(c.state(), c.timestamp());
+                    }
                     p = partnerRepo.save(p);
                     resolveAndSend(record, p);
                 });
@@ -317,6 +337,17 @@ public class ConnectionManager {
         });
     }
 
+    /**
+     * @param record {@link ConnectionRecord}
+     * @return true if {@link #resolveAndSend(ConnectionRecord, Partner)} does more
+     *         than persisting the state
+     */
+    private static boolean hasSideEffects(@NonNull ConnectionRecord record) {
+        return (record.isInvitationResponse() && record.stateIsResponse())
+                || record.stateIsRequest()
+                || (record.stateIsActive() && record.isIncomingConnection());
+    }
+
     private void resolveAndSend(ConnectionRecord record, Partner p) {
         if (record.isInvitationResponse()) {
             // handle Connection Invitations...
@@ -337,7 +368,9 @@ public class ConnectionManager {
             }
         } else if (record.stateIsActive() && record.isIncomingConnection()) {
             eventPublisher.publishEventAsync(PartnerRequestCompletedEvent.builder().partner(p).build());
-            partnerCredDefLookup.lookupTypesForAllPartnersAsync();
+            if (p.getDid() != null) {
+                partnerCredDefLookup.lookupTypesForPartnerAsync(p.getDid());
+            }
         }
     }
 
@@ -37,6 +37,7 @@ import org.hyperledger.aries.api.connection.ReceiveInvitationRequest;
 import org.hyperledger.aries.api.out_of_band.InvitationMessage;
 import org.hyperledger.aries.config.GsonConfig;
 import org.hyperledger.bpa.api.exception.InvitationException;
+import org.hyperledger.bpa.client.HttpClients;
 import org.hyperledger.bpa.config.BPAMessageSource;
 import org.hyperledger.bpa.controller.api.invitation.CheckInvitationResponse;
 import org.hyperledger.bpa.impl.util.Converter;
@@ -64,8 +65,10 @@ public class InvitationParser {
             "did:sov:BzCbsNYhMrjHiqZDTUASHg;spec/out-of-band/1.0/invitation",
             "https://didcomm.org/out-of-band/1.0/invitation");
 
-    public InvitationParser() {
-        this.httpClient = new OkHttpClient.Builder().followRedirects(false).build();
+    @Inject
+    public InvitationParser(HttpClients http) {
+        // redirects are followed manually as they may carry the invitation
+        this.httpClient = http.client(HttpClients.INVITATION).newBuilder().followRedirects(false).build();
     }
 
     @Inject
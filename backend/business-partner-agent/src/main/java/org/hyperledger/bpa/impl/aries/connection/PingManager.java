@@ -18,10 +18,11 @@
 package org.hyperledger.bpa.impl.aries.connection;
 
 import io.micronaut.context.annotation.Requires;
+import io.micronaut.context.annotation.Value;
 import io.micronaut.context.env.Environment;
 import io.micronaut.core.util.CollectionUtils;
-import io.micronaut.core.util.StringUtils;
 import io.micronaut.scheduling.annotation.Scheduled;
+import jakarta.annotation.PreDestroy;
 import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
 import lombok.extern.slf4j.Slf4j;
@@ -29,19 +30,42 @@ import org.hyperledger.aries.AriesClient;
 import org.hyperledger.aries.api.connection.ConnectionState;
 import org.hyperledger.aries.api.exception.AriesException;
 import org.hyperledger.aries.api.trustping.PingEvent;
-import org.hyperledger.aries.api.trustping.PingEventState;
 import org.hyperledger.aries.api.trustping.PingRequest;
+import org.hyperledger.bpa.impl.ClusterJobRunner;
 import org.hyperledger.bpa.persistence.model.Partner;
+import org.hyperledger.bpa.persistence.model.TrustPing;
 import org.hyperledger.bpa.persistence.repository.PartnerRepository;
+import org.hyperledger.bpa.persistence.repository.TrustPingRepository;
 
 import java.io.IOException;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
-import java.util.stream.StreamSupport;
 
+/**
+ * Pings all connections that have trust ping enabled once per cycle. Pings are
+ * spread with random jitter over {@code bpa.ping.spread}, never sent faster
+ * than {@code bpa.ping.rate} per second, and at most
+ * {@code bpa.ping.concurrency} are in flight at the same time. Pings and their
+ * responses are stored in the database, because the cycle runs on one instance
+ * of the cluster while the responses can be received by any instance. The
+ * responses of a cycle are written with a single update at the start of the
+ * next one.
+ */
 @Slf4j
 @Singleton
 @Requires(notEnv = { Environment.TEST })
@@ -57,110 +81,254 @@ public class PingManager {
     @Inject
     PartnerRepository repo;
 
-    private boolean firstRun;
+    @Inject
+    TrustPingRepository pings;
 
-    public PingManager() {
-        super();
-        this.firstRun = true;
-    }
+    @Inject
+    ClusterJobRunner jobs;
+
+    @Value("${bpa.ping.concurrency}")
+    Integer concurrency;
+
+    @Value("${bpa.ping.rate}")
+    Integer rate;
 
-    // threadId, connectionId
-    private final Map<String, String> sent = new ConcurrentHashMap<>();
+    @Value("${bpa.ping.spread}")
+    Duration spread;
 
-    // threadId, state
-    private final Map<String, PingEventState> received = new ConcurrentHashMap<>();
+    @Value("${bpa.ping.stale.page-size}")
+    Integer stalePageSize;
+
+    @Value("${bpa.ping.stale.delete-concurrency}")
+    Integer staleDeleteConcurrency;
+
+    private ScheduledExecutorService pinger;
+
+    private volatile Reconciliation lastReconciliation;
 
     public void handlePingEvent(PingEvent event) {
         if (event.stateIsResponseReceived()) {
-            received.put(event.getThreadId(), event.getState());
+            pings.recordResponse(event.getThreadId());
         }
     }
 
     @Scheduled(fixedDelay = "1m", initialDelay = "90s") // init delay needs to be > than aca-py connection timeout
+    void scheduledCheckConnections() {
+        jobs.runExclusive("ping-connections", Duration.ofSeconds(50), this::checkConnections);
+    }
+
     void checkConnections() {
         try {
+            Instant cycleStart = Instant.now();
             List<String> connectionsToPing = repo
                     .findByStateInAndTrustPingTrueAndAriesSupportTrue(statesToFilter)
                     .stream().map(Partner::getConnectionId).collect(Collectors.toList());
             if (CollectionUtils.isNotEmpty(connectionsToPing)) {
-                if (!firstRun) {
-                    setNewState();
-                }
+                setNewState(cycleStart);
                 sendPingToConnections(connectionsToPing);
             }
-            if (firstRun) {
-                firstRun = false;
-            }
         } catch (Exception e) {
             log.error("Trust ping job failed.", e);
         }
     }
 
-    private void setNewState() {
-        sent.forEach((k, v) -> {
-            ConnectionState state;
-            if (received.containsKey(k)) {
-                state = ConnectionState.PING_RESPONSE;
-                repo.updateStateAndLastSeenByConnectionId(v, state, Instant.now());
-            } else {
-                state = ConnectionState.PING_NO_RESPONSE;
-                repo.updateStateByConnectionId(v, state);
+    /**
+     * Evaluates the pings of the previous cycles, no matter which instance sent
+     * them
+     *
+     * @param before pings sent before this point in time
+     */
+    private void setNewState(Instant before) {
+        List<TrustPing> previous = pings.findBySentAtLessThan(before);
+        if (previous.isEmpty()) {
+            return;
+        }
+        Set<String> pinged = new HashSet<>();
+        Set<String> responded = new HashSet<>();
+        previous.forEach(p -> {
+            // responses to pings that were never recorded as sent are dropped
+            if (p.getConnectionId() != null) {
+                pinged.add(p.getConnectionId());
+                if (p.getRespondedAt() != null) {
+                    responded.add(p.getConnectionId());
+                }
             }
         });
-        sent.clear();
-        received.clear();
+        pings.deleteByThreadIdIn(previous.stream().map(TrustPing::getThreadId).collect(Collectors.toList()));
+        if (!pinged.isEmpty()) {
+            int updated = repo.updatePingResults(pinged, responded,
+                    ConnectionState.PING_RESPONSE, ConnectionState.PING_NO_RESPONSE, Instant.now());
+            log.debug("Trust ping results: pinged: {}, responded: {}, updated: {}",
+                    pinged.size(), responded.size(), updated);
+        }
     }
 
+    /**
+     * Schedules one ping per connection and waits until all of them were sent. Each
+     * connection gets an equally sized slot of the spread window (or of the rate
+     * limit, if that is longer) and is pinged at a random offset within its slot.
+     * The jitter is capped so that two consecutive pings are never closer than the
+     * rate limit allows.
+     *
+     * @param connectionsToPing connection ids
+     */
     private void sendPingToConnections(List<String> connectionsToPing) {
-        try {
-            for (String connectionId : connectionsToPing) {
-                log.debug("Sending ping to: {}", connectionId);
+        int count = connectionsToPing.size();
+        long minGap = TimeUnit.SECONDS.toNanos(1) / Math.max(1, rate);
+        long slot = Math.max(spread.toNanos() / count, minGap);
+        long maxJitter = slot - minGap;
+
+        AtomicBoolean unavailable = new AtomicBoolean();
+        AtomicInteger failed = new AtomicInteger();
+        List<CompletableFuture<Void>> pings = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String connectionId = connectionsToPing.get(i);
+            long delay = i * slot + (maxJitter > 0 ? ThreadLocalRandom.current().nextLong(maxJitter) : 0);
+            CompletableFuture<Void> done = new CompletableFuture<>();
+            getPinger().schedule(() -> {
                 try {
-                    aries.connectionsSendPing(connectionId, new PingRequest(connectionId))
-                            .ifPresent(resp -> sent.put(resp.getThreadId(), connectionId));
-                } catch (AriesException e) {
-                    if (e.getCode() == 404) {
-                        log.error("Connection id {} exists in the BPA but not in aca-py", connectionId);
-                        repo.updateStateByConnectionId(connectionId, ConnectionState.PING_NO_RESPONSE);
+                    if (unavailable.get()) {
+                        failed.incrementAndGet();
                     } else {
-                        log.error("Could not send ping request to connection {}", connectionId, e);
+                        sendPing(connectionId, unavailable, failed);
                     }
+                } finally {
+                    done.complete(null);
                 }
+            }, delay, TimeUnit.NANOSECONDS);
+            pings.add(done);
+        }
+
+        // pings that are still pending after the timeout are collected with the next
+        // cycle
+        long timeout = count * slot + spread.toNanos();
+        try {
+            CompletableFuture.allOf(pings.toArray(CompletableFuture[]::new)).get(timeout, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            log.warn("Not all trust pings were sent within {}ms", TimeUnit.NANOSECONDS.toMillis(timeout));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("Trust ping cycle failed", e);
+        }
+        log.debug("Sent trust pings: {}, failed: {}", count - failed.get(), failed.get());
+    }
+
+    private void sendPing(String connectionId, AtomicBoolean unavailable, AtomicInteger failed) {
+        log.debug("Sending ping to: {}", connectionId);
+        try {
+            aries.connectionsSendPing(connectionId, new PingRequest(connectionId))
+                    .ifPresent(resp -> pings.recordSent(resp.getThreadId(), connectionId, Instant.now()));
+        } catch (AriesException e) {
+            failed.incrementAndGet();
+            if (e.getCode() == 404) {
+                log.error("Connection id {} exists in the BPA but not in aca-py", connectionId);
+                // a ping that is never answered, so the connection is set to no response
+                pings.recordSent(UUID.randomUUID().toString(), connectionId, Instant.now());
+            } else {
+                log.error("Could not send ping request to connection {}", connectionId, e);
             }
         } catch (IOException e) {
-            log.error("Could not ping active connections, because aca-py is not available", e);
+            failed.incrementAndGet();
+            if (unavailable.compareAndSet(false, true)) {
+                log.error("Could not ping active connections, because aca-py is not available", e);
+            }
         }
     }
 
-    int getSentSize() {
-        return sent.size();
+    private synchronized ScheduledExecutorService getPinger() {
+        if (pinger == null) {
+            AtomicInteger threadCount = new AtomicInteger();
+            pinger = Executors.newScheduledThreadPool(Math.max(1, concurrency), r -> {
+                Thread t = new Thread(r, "bpa-ping-" + threadCount.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        return pinger;
     }
 
-    int getReceivedSize() {
-        return received.size();
+    @PreDestroy
+    synchronized void shutdown() {
+        if (pinger != null) {
+            pinger.shutdownNow();
+        }
     }
 
+    /**
+     * Removes connections from aca-py that do not belong to a partner anymore. Only
+     * the connection ids of the partners are loaded, the aca-py connections are
+     * then compared against them page by page, and the stale connections of a page
+     * are removed in parallel.
+     */
     @Scheduled(fixedDelay = "30m", initialDelay = "1m")
+    void scheduledDeleteStaleConnections() {
+        jobs.runExclusive("delete-stale-connections", Duration.ofMinutes(25), this::deleteStaleConnections);
+    }
+
     void deleteStaleConnections() {
-        List<String> bpaConIds = StreamSupport.stream(repo.findAll().spliterator(), false)
-                .map(Partner::getConnectionId)
-                .filter(StringUtils::isNotEmpty)
-                .toList();
+        long start = System.nanoTime();
+        Set<String> bpaConIds = new HashSet<>(repo.findConnectionIds());
 
+        List<String> acaConIds;
         try {
-            List<String> acaConIds = aries.connectionIds();
-            List<String> stale = acaConIds
-                    .stream()
-                    .filter(acaId -> bpaConIds
-                            .stream()
-                            .noneMatch(bpaId -> bpaId.equals(acaId)))
-                    .toList();
-            for (String conId : stale) {
-                aries.connectionsRemove(conId);
-            }
+            acaConIds = aries.connectionIds();
         } catch (IOException e) {
             log.error("aca-py not reachable.", e);
+            return;
+        }
+
+        AtomicInteger removed = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        ExecutorService deleter = Executors.newFixedThreadPool(Math.max(1, staleDeleteConcurrency), r -> {
+            Thread t = new Thread(r, "bpa-stale-connections");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            int pageSize = Math.max(1, stalePageSize);
+            for (int from = 0; from < acaConIds.size(); from += pageSize) {
+                List<CompletableFuture<Void>> deletes = acaConIds
+                        .subList(from, Math.min(from + pageSize, acaConIds.size()))
+                        .stream()
+                        .filter(acaId -> !bpaConIds.contains(acaId))
+                        .map(stale -> CompletableFuture.runAsync(() -> {
+                            try {
+                                aries.connectionsRemove(stale);
+                                removed.incrementAndGet();
+                            } catch (Exception e) {
+                                failed.incrementAndGet();
+                                log.warn("Could not remove stale connection: {}", stale, e);
+                            }
+                        }, deleter))
+                        .toList();
+                CompletableFuture.allOf(deletes.toArray(CompletableFuture[]::new)).join();
+            }
+        } finally {
+            deleter.shutdown();
         }
 
+        lastReconciliation = new Reconciliation(acaConIds.size(), removed.get(), failed.get(),
+                Duration.ofNanos(System.nanoTime() - start));
+        if (removed.get() > 0 || failed.get() > 0) {
+            log.info("Stale connections: {}", lastReconciliation);
+        } else {
+            log.debug("Stale connections: {}", lastReconciliation);
+        }
+    }
+
+    Reconciliation getLastReconciliation() {
+        return lastReconciliation;
+    }
+
+    /**
+     * Result of the last stale connection run
+     *
+     * @param scanned  number of aca-py connections that were compared
+     * @param removed  number of stale connections that were removed
+     * @param failed   number of stale connections that could not be removed
+     * @param duration of the run
+     */
+    record Reconciliation(int scanned, int removed, int failed, Duration duration) {
     }
 }
@@ -39,6 +39,7 @@ import org.hyperledger.aries.api.issue_credential_v2.V20CredExRecord;
 import org.hyperledger.aries.api.issue_credential_v2.V2CredentialExchangeFree;
 import org.hyperledger.aries.api.issue_credential_v2.V2ToV1IndyCredentialConverter;
 import org.hyperledger.bpa.api.aries.SchemaAPI;
+import org.hyperledger.bpa.impl.ClusterJobRunner;
 import org.hyperledger.bpa.impl.activity.LabelStrategy;
 import org.hyperledger.bpa.impl.aries.schema.SchemaService;
 import org.hyperledger.bpa.persistence.model.BPACredentialExchange;
@@ -46,6 +47,7 @@ import org.hyperledger.bpa.persistence.model.BPASchema;
 import org.hyperledger.bpa.persistence.repository.HolderCredExRepository;
 
 import java.io.IOException;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.Map;
 import java.util.Objects;
@@ -64,6 +66,9 @@ public class HolderIndyManager {
     @Inject
     HolderCredExRepository holderCredExRepo;
 
+    @Inject
+    ClusterJobRunner jobs;
+
     @Inject
     LabelStrategy labelStrategy;
 
@@ -112,6 +117,10 @@ public class HolderIndyManager {
      * this BPA.
      */
     @Scheduled(fixedDelay = "5m", initialDelay = "1m")
+    void scheduledCheckRevocationStatus() {
+        jobs.runExclusive("check-revocation-status", Duration.ofMinutes(4), this::checkRevocationStatus);
+    }
+
     void checkRevocationStatus() {
         log.trace("Running revocation checks");
         holderCredExRepo.findNotRevoked().parallelStream().forEach(cred -> {
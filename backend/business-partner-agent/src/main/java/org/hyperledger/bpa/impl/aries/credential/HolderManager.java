@@ -47,6 +47,7 @@ import org.hyperledger.bpa.api.exception.PartnerException;
 import org.hyperledger.bpa.api.notification.CredentialAddedEvent;
 import org.hyperledger.bpa.api.notification.CredentialOfferedEvent;
 import org.hyperledger.bpa.impl.activity.LabelStrategy;
+import org.hyperledger.bpa.impl.aries.StateChangeBatcher;
 import org.hyperledger.bpa.impl.aries.jsonld.HolderLDManager;
 import org.hyperledger.bpa.impl.aries.jsonld.VPManager;
 import org.hyperledger.bpa.impl.aries.wallet.Identity;
@@ -105,6 +106,9 @@ public class HolderManager extends CredentialManagerBase {
     @Inject
     Identity identity;
 
+    @Inject
+    StateChangeBatcher batcher;
+
     // Credential Management - Called By User
 
     /**
@@ -345,16 +349,24 @@ public class HolderManager extends CredentialManagerBase {
         });
     }
 
-    // credential request, receive and problem events
+    // credential request, receive and problem events, the state change is written
+    // by the batcher once all collected events of the exchange are handled
     public void handleStateChangesOnly(
             @NonNull String credExId, @Nullable CredentialExchangeState state,
             @NonNull String updatedAt, @Nullable String errorMsg) {
+        CredentialExchangeState s = state == null || CredentialExchangeState.ABANDONED.equals(state)
+                ? CredentialExchangeState.PROBLEM
+                : state;
+        batcher.submit(credExId, new StateChangeBatcher.StateChange<>(s, TimeUtil.fromISOInstant(updatedAt), errorMsg),
+                changes -> writeStateChanges(credExId, changes));
+    }
+
+    private void writeStateChanges(@NonNull String credExId,
+            @NonNull List<StateChangeBatcher.StateChange<CredentialExchangeState, String>> changes) {
         holderCredExRepo.findByCredentialExchangeId(credExId).ifPresent(db -> {
             if (db.stateIsNotDeclined()) { // already handled
-                CredentialExchangeState s = state == null || CredentialExchangeState.ABANDONED.equals(state)
-                        ? CredentialExchangeState.PROBLEM
-                        : state;
-                db.pushStates(s, updatedAt);
+                changes.forEach(c -> db.pushStates(c.state(), c.timestamp()));
+                String errorMsg = changes.get(changes.size() - 1).event();
                 holderCredExRepo.updateStates(db.getId(), db.getState(), db.getStateToTimestamp(), errorMsg);
             }
         });
@@ -405,8 +417,8 @@ public class HolderManager extends CredentialManagerBase {
             if (StringUtils.isNotEmpty(p.getAlias())) {
                 issuer = p.getAlias();
             } else if (p.getVerifiablePresentation() != null) {
-                VerifiablePresentation<VerifiableCredential.VerifiableIndyCredential> vp = conv
-                        .fromMap(Objects.requireNonNull(p.getVerifiablePresentation()), Converter.VP_TYPEREF);
+                VerifiablePresentation<VerifiableCredential.VerifiableIndyCredential> vp = p
+                        .getVerifiablePresentation();
                 Optional<VerifiableCredential.VerifiableIndyCredential> profile = vp.getVerifiableCredential()
                         .stream().filter(ic -> ic.getType().contains("OrganizationalProfileCredential")).findAny();
                 if (profile.isPresent() && profile.get().getCredentialSubject() != null) {
@@ -17,8 +17,11 @@
  */
 package org.hyperledger.bpa.impl.messaging;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.jknack.handlebars.Handlebars;
 import com.github.jknack.handlebars.Template;
+import io.micronaut.context.annotation.Value;
 import io.micronaut.core.annotation.Nullable;
 import io.micronaut.data.exceptions.DataAccessException;
 import io.micronaut.runtime.event.annotation.EventListener;
@@ -38,6 +41,7 @@ import org.hyperledger.bpa.controller.api.messaging.MessageTemplateCmd;
 import org.hyperledger.bpa.controller.api.messaging.MessageTriggerConfigCmd;
 import org.hyperledger.bpa.controller.api.messaging.MessageUserInfoCmd;
 import org.hyperledger.bpa.impl.messaging.email.EmailCmd;
+import org.hyperledger.bpa.impl.messaging.email.EmailOutbox;
 import org.hyperledger.bpa.impl.messaging.email.EmailService;
 import org.hyperledger.bpa.impl.util.TimeUtil;
 import org.hyperledger.bpa.persistence.model.Partner;
@@ -51,6 +55,7 @@ import org.hyperledger.bpa.persistence.repository.messaging.MessageTriggerConfig
 import org.hyperledger.bpa.persistence.repository.messaging.MessageUserInfoRepository;
 
 import java.io.IOException;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.List;
 import java.util.Map;
@@ -64,9 +69,20 @@ public class MessagingManager {
 
     private final Handlebars handlebars = new Handlebars();
 
+    /** compiled templates by template id, the source is kept to detect changes */
+    private final Cache<UUID, CompiledTemplate> templates = Caffeine.newBuilder().maximumSize(1_000).build();
+
+    private Cache<MessageTrigger, List<MessageTriggerConfig>> triggerConfigs;
+
+    @Value("${bpa.mail.trigger-cache-ttl}")
+    Duration triggerCacheTtl;
+
     @Inject
     Optional<EmailService> emailService;
 
+    @Inject
+    Optional<EmailOutbox> outbox;
+
     @Inject
     MessageTemplateRepository messageTemplate;
 
@@ -101,11 +117,15 @@ public class MessagingManager {
 
     public void updateMessageTemplate(@NonNull UUID id, @Nullable String subject, @NonNull String template) {
         messageTemplate.updateTemplateInfo(id, subject, template);
+        templates.invalidate(id);
+        getTriggerConfigs().invalidateAll();
     }
 
     public void deleteTemplateInfo(@NonNull UUID id) {
         try {
             messageTemplate.deleteById(id);
+            templates.invalidate(id);
+            getTriggerConfigs().invalidateAll();
         } catch (DataAccessException e) {
             log.error("Could not delete message template", e);
             throw new WrongApiUsageException(ms.getMessage("mail.template.constrain.violation"));
@@ -130,11 +150,13 @@ public class MessagingManager {
 
     public void updateUserInfo(@NonNull UUID id, @Nullable String label, @NonNull String sendTo) {
         userInfo.updateUserInfo(id, label, sendTo);
+        getTriggerConfigs().invalidateAll();
     }
 
     public void deleteUserInfo(@NonNull UUID id) {
         try {
             userInfo.deleteById(id);
+            getTriggerConfigs().invalidateAll();
         } catch (DataAccessException e) {
             log.error("Could not delete user info", e);
             throw new WrongApiUsageException(ms.getMessage("mail.user.info.constrain.violation"));
@@ -151,12 +173,14 @@ public class MessagingManager {
 
     public MessageTriggerConfigCmd.ApiTriggerConfig addTriggerConfig(@NonNull MessageTrigger trigger,
             @Nullable UUID messageTemplateId, @NonNull UUID userInfoId) {
-        return MessageTriggerConfigCmd.ApiTriggerConfig.fromMessageTriggerConfig(triggerConfig.save(MessageTriggerConfig
+        MessageTriggerConfig saved = triggerConfig.save(MessageTriggerConfig
                 .builder()
                 .trigger(trigger)
                 .template(messageTemplateId != null ? MessageTemplate.builder().id(messageTemplateId).build() : null)
                 .userInfo(MessageUserInfo.builder().id(userInfoId).build())
-                .build()));
+                .build());
+        getTriggerConfigs().invalidate(trigger);
+        return MessageTriggerConfigCmd.ApiTriggerConfig.fromMessageTriggerConfig(saved);
     }
 
     public void updateTriggerConfig(@NonNull UUID id, @NonNull MessageTrigger trigger, @Nullable UUID messageTemplateId,
@@ -164,10 +188,13 @@ public class MessagingManager {
         triggerConfig.updateTriggerConfig(id, trigger,
                 MessageTemplate.builder().id(messageTemplateId).build(),
                 MessageUserInfo.builder().id(userInfoId).build());
+        // the previous trigger of the config is not known here
+        getTriggerConfigs().invalidateAll();
     }
 
     public void deleteTriggerConfig(@NonNull UUID id) {
         triggerConfig.deleteById(id);
+        getTriggerConfigs().invalidateAll();
     }
 
     // invitation
@@ -231,11 +258,13 @@ public class MessagingManager {
     }
 
     private void findAndSend(@NonNull MessageTrigger trigger) {
-        emailService.ifPresent(mailer -> {
+        outbox.ifPresent(mailer -> {
+            List<MessageTriggerConfig> configs = getTriggerConfigs().get(trigger, triggerConfig::findByTrigger);
+            if (configs == null || configs.isEmpty()) {
+                return;
+            }
             String defaultSubject = ms.getMessage("mail.default.event.subject");
-            triggerConfig.findByTrigger(trigger)
-                    .parallelStream()
-                    .forEach(t -> mailer.send(t.toEmailCmd(defaultSubject, resolveEventMessageBody(trigger, t))));
+            configs.forEach(t -> mailer.submit(t.toEmailCmd(defaultSubject, resolveEventMessageBody(trigger, t))));
         });
     }
 
@@ -260,10 +289,36 @@ public class MessagingManager {
     private String compileTemplate(@NonNull MessageTemplate t, @NonNull Map<String, Object> model,
             @NonNull String defaultBody) {
         try {
-            Template template = handlebars.compileInline(t.getTemplate());
-            return template.apply(model);
+            return compiled(t).apply(model);
         } catch (IOException e) {
             return defaultBody;
         }
     }
+
+    private Template compiled(@NonNull MessageTemplate t) throws IOException {
+        if (t.getId() == null) {
+            return handlebars.compileInline(t.getTemplate());
+        }
+        CompiledTemplate c = templates.getIfPresent(t.getId());
+        if (c == null || !c.source().equals(t.getTemplate())) {
+            c = new CompiledTemplate(t.getTemplate(), handlebars.compileInline(t.getTemplate()));
+            templates.put(t.getId(), c);
+        }
+        return c.template();
+    }
+
+    /**
+     * Trigger configs are read on every event, so they are cached. Changes made
+     * through this instance invalidate the cache right away, changes made by other
+     * instances become visible after the ttl.
+     */
+    private synchronized Cache<MessageTrigger, List<MessageTriggerConfig>> getTriggerConfigs() {
+        if (triggerConfigs == null) {
+            triggerConfigs = Caffeine.newBuilder().expireAfterWrite(triggerCacheTtl).build();
+        }
+        return triggerConfigs;
+    }
+
+    private record CompiledTemplate(String source, Template template) {
+    }
 }
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2020-2022 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.impl.messaging.email;
+
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.context.annotation.Value;
+import io.micronaut.data.model.Pageable;
+import io.micronaut.scheduling.annotation.Scheduled;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.hyperledger.bpa.impl.ClusterJobRunner;
+import org.hyperledger.bpa.persistence.model.messaging.MailOutbox;
+import org.hyperledger.bpa.persistence.repository.messaging.MailOutboxRepository;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Persisted outbox of emails, so that the mail provider is never called from an
+ * event thread and no email is lost on a full queue or a restart. Emails are
+ * handed to the provider by one instance of the cluster at a fixed rate, failed
+ * emails are retried with exponential backoff.
+ */
+@Slf4j
+@Singleton
+@Requires(beans = EmailService.class)
+public class EmailOutbox {
+
+    private static final int ERROR_LENGTH = 2048;
+
+    @Value("${bpa.mail.outbox.rate}")
+    Integer rate;
+
+    @Value("${bpa.mail.outbox.max-attempts}")
+    Integer maxAttempts;
+
+    @Value("${bpa.mail.outbox.retry-backoff}")
+    Duration retryBackoff;
+
+    @Inject
+    EmailService emailService;
+
+    @Inject
+    MailOutboxRepository outboxRepo;
+
+    @Inject
+    ClusterJobRunner jobs;
+
+    /**
+     * Persists the email, it is sent with the next run of the outbox.
+     *
+     * @param cmd {@link EmailCmd}
+     */
+    public void submit(@NonNull EmailCmd cmd) {
+        outboxRepo.save(MailOutbox
+                .builder()
+                .sendTo(cmd.getTo())
+                .subject(cmd.getSubject())
+                .textBody(cmd.getTextBody())
+                .nextAttemptAt(Instant.now())
+                .build());
+    }
+
+    @Scheduled(fixedDelay = "1s", initialDelay = "10s")
+    void scheduledSendDue() {
+        jobs.runExclusive("mail-outbox", Duration.ofMillis(900), this::sendDue);
+    }
+
+    /**
+     * Sends up to rate emails that are due
+     */
+    void sendDue() {
+        Instant now = Instant.now();
+        outboxRepo.findByNextAttemptAtBeforeOrderByNextAttemptAt(now, Pageable.from(0, Math.max(rate, 1)))
+                .forEach(mail -> {
+                    int attempts = mail.getAttempts() + 1;
+                    // move the next attempt first, so that the email is not sent again right away
+                    // if this instance dies while sending
+                    outboxRepo.updateAttemptsAndNextAttemptAt(mail.getId(), attempts, now.plus(backoff(attempts)));
+                    try {
+                        emailService.send(mail.toEmailCmd());
+                        outboxRepo.deleteById(mail.getId());
+                    } catch (Exception e) {
+                        if (attempts >= maxAttempts) {
+                            log.error("Giving up on email to: {} after {} attempt(s)", mail.getSendTo(), attempts, e);
+                            outboxRepo.deleteById(mail.getId());
+                        } else {
+                            log.warn("Could not send email to: {}, retrying in {}. Reason: {}", mail.getSendTo(),
+                                    backoff(attempts), e.getMessage());
+                            outboxRepo.updateLastError(mail.getId(), abbreviate(e.toString()));
+                        }
+                    }
+                });
+    }
+
+    Duration backoff(int attempt) {
+        return retryBackoff.multipliedBy(1L << Math.min(attempt - 1, 10));
+    }
+
+    private static String abbreviate(String error) {
+        return error.length() > ERROR_LENGTH ? error.substring(0, ERROR_LENGTH) : error;
+    }
+}
@@ -27,7 +27,6 @@ import jakarta.inject.Singleton;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.hyperledger.bpa.controller.api.WebSocketMessageBody;
-import org.hyperledger.bpa.impl.util.Converter;
 import org.hyperledger.bpa.persistence.repository.MessageQueueRepository;
 import org.slf4j.Logger;
 
@@ -48,10 +47,6 @@ public final class InMemoryMessageService implements MessageService {
     @Getter
     MessageQueueRepository queue;
 
-    @Inject
-    @Getter
-    Converter conv;
-
     private final Map<String, WebSocketSession> connected = new ConcurrentHashMap<>();
 
     public void subscribe(WebSocketSession session) {
@@ -67,7 +62,12 @@ public final class InMemoryMessageService implements MessageService {
     }
 
     public void send(WebSocketMessageBody message) {
-        broadcaster.broadcastSync(message);
+        broadcaster.broadcastAsync(message, SessionFilter.sessionsFor(message))
+                .whenComplete((m, e) -> {
+                    if (e != null) {
+                        log.error("Could not send websocket message.", e);
+                    }
+                });
     }
 
     public Logger getLog() {
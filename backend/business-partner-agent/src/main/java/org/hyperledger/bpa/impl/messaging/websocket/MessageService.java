@@ -17,18 +17,21 @@
  */
 package org.hyperledger.bpa.impl.messaging.websocket;
 
+import io.micronaut.core.annotation.Nullable;
 import io.micronaut.scheduling.annotation.Async;
 import io.micronaut.websocket.WebSocketSession;
 import org.hyperledger.bpa.controller.api.WebSocketMessageBody;
-import org.hyperledger.bpa.impl.util.Converter;
 import org.hyperledger.bpa.persistence.model.MessageQueue;
 import org.hyperledger.bpa.persistence.repository.MessageQueueRepository;
 import org.slf4j.Logger;
 
-import java.util.stream.StreamSupport;
+import java.util.List;
+import java.util.stream.Collectors;
 
 public interface MessageService {
 
+    int REPLAY_PAGE_SIZE = 100;
+
     void subscribe(WebSocketSession session);
 
     void unsubscribe(WebSocketSession session);
@@ -39,8 +42,6 @@ public interface MessageService {
 
     MessageQueueRepository getQueue();
 
-    Converter getConv();
-
     Logger getLog();
 
     default String baseChannel() {
@@ -54,7 +55,7 @@ public interface MessageService {
             if (hasConnectedSessions()) {
                 send(message);
             } else {
-                MessageQueue msg = MessageQueue.builder().message(getConv().toMap(message)).build();
+                MessageQueue msg = MessageQueue.builder().message(message).build();
                 getQueue().save(msg);
             }
         } catch (Exception e) {
@@ -62,14 +63,71 @@ public interface MessageService {
         }
     }
 
-    /** Called by controller */
-    default void sendStored() {
-        StreamSupport.stream(getQueue().findAll().spliterator(), false)
-                .filter(msg -> msg.getMessage() != null)
-                .forEach(msg -> {
-                    WebSocketMessageBody toSend = getConv().fromMap(msg.getMessage(), WebSocketMessageBody.class);
-                    send(toSend);
-                });
-        getQueue().deleteAll();
+    /**
+     * Sends a batch of notifications, the connected sessions are only checked once
+     *
+     * @param messages list of {@link WebSocketMessageBody}
+     */
+    default void sendMessages(List<WebSocketMessageBody> messages) {
+        try {
+            if (hasConnectedSessions()) {
+                messages.forEach(this::send);
+            } else {
+                getQueue().saveAll(messages.stream()
+                        .map(message -> MessageQueue.builder().message(message).build())
+                        .collect(Collectors.toList()));
+            }
+        } catch (Exception e) {
+            getLog().error("Could not send websocket messages.", e);
+        }
+    }
+
+    /**
+     * Called by controller. Replays stored messages page by page in the order they
+     * were stored, every message carries its sequence. Messages are kept until the
+     * client acknowledges them, see {@link #acknowledge(long)}, so a message that
+     * got lost on the way is replayed again on the next connect. Messages that are
+     * stored while the replay runs are picked up by the next page or the next
+     * replay.
+     *
+     * @param lastSeen optional sequence of the last message the client received, it
+     *                 and all older messages are acknowledged without sending them
+     *                 again
+     */
+    default void sendStored(@Nullable Long lastSeen) {
+        long after = 0;
+        if (lastSeen != null && lastSeen > 0) {
+            acknowledge(lastSeen);
+            after = lastSeen;
+        }
+        List<MessageQueue> page;
+        do {
+            page = getQueue().findPage(after, REPLAY_PAGE_SIZE);
+            try {
+                for (MessageQueue msg : page) {
+                    if (msg.getMessage() != null) {
+                        msg.getMessage().setSequence(msg.getSeq());
+                        send(msg.getMessage());
+                    }
+                    after = msg.getSeq();
+                }
+            } catch (Exception e) {
+                getLog().error("Could not replay stored websocket message, stopping after: {}", after, e);
+                return;
+            }
+        } while (page.size() == REPLAY_PAGE_SIZE);
+    }
+
+    /**
+     * Called by controller when the client acknowledges replayed messages. Stored
+     * messages that are never acknowledged are removed by the
+     * {@link StoredMessagePruner}.
+     *
+     * @param seq sequence of the last message the client received, it and all older
+     *            messages are removed
+     */
+    default void acknowledge(long seq) {
+        int removed = getQueue().deleteBySeqLessThanEquals(seq);
+        getLog().debug("Client acknowledged stored websocket messages up to: {}, removed: {}", seq, removed);
     }
 }
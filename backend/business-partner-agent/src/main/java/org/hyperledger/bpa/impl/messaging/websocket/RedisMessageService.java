@@ -18,30 +18,48 @@
 package org.hyperledger.bpa.impl.messaging.websocket;
 
 import com.fasterxml.jackson.core.JacksonException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import io.lettuce.core.KeyValue;
+import io.lettuce.core.Range;
 import io.lettuce.core.api.StatefulRedisConnection;
 import io.lettuce.core.pubsub.StatefulRedisPubSubConnection;
 import io.micronaut.context.annotation.Requires;
+import io.micronaut.context.annotation.Value;
 import io.micronaut.context.event.StartupEvent;
 import io.micronaut.runtime.event.annotation.EventListener;
+import io.micronaut.scheduling.annotation.Scheduled;
 import io.micronaut.websocket.WebSocketBroadcaster;
 import io.micronaut.websocket.WebSocketSession;
+import jakarta.annotation.PreDestroy;
 import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.EnumUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.hyperledger.bpa.controller.api.WebSocketMessageBody;
-import org.hyperledger.bpa.impl.util.Converter;
+import org.hyperledger.bpa.controller.api.WebSocketMessageBody.WebSocketMessageType;
 import org.hyperledger.bpa.persistence.repository.MessageQueueRepository;
 import org.slf4j.Logger;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 /**
- * Simple messaging service implementation that broadcasts incoming events to a
- * channel. Each bpa instance publishes/subscribes events to the same channel,
- * incoming channel events are then broadcast to all connected websockets. TODO:
- * for multi tenancy channels need to be separated by tenant id.
+ * Websocket fan-out when the bpa is scaled to multiple instances. Every
+ * instance tracks its own sessions and announces them in a sorted set, scored
+ * by the expiry of the announcement, which is renewed by a heartbeat. Messages
+ * are published without blocking, messages that arrive while a publish is in
+ * flight are sent as one batch. Batches go to their own channel, single
+ * messages keep the format of the base channel, so that instances that do not
+ * know about batches still work during a rolling upgrade.
  */
 @Slf4j
 @Singleton
@@ -55,10 +73,6 @@ public final class RedisMessageService implements MessageService {
     @Getter
     MessageQueueRepository queue;
 
-    @Inject
-    @Getter
-    Converter conv;
-
     @Inject
     ObjectMapper mapper;
 
@@ -68,43 +82,183 @@ public final class RedisMessageService implements MessageService {
     @Inject
     StatefulRedisPubSubConnection<String, String> pubSub;
 
+    @Value("${bpa.websocket.presence-ttl}")
+    Duration presenceTtl;
+
+    @Value("${bpa.websocket.max-batch-size}")
+    Integer maxBatchSize;
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final Map<String, WebSocketSession> connected = new ConcurrentHashMap<>();
+
+    /** true if another instance announced open sessions */
+    private final AtomicBoolean remoteSessions = new AtomicBoolean();
+
+    private final Queue<WebSocketMessageBody> pending = new ConcurrentLinkedQueue<>();
+
+    private final AtomicBoolean publishing = new AtomicBoolean();
+
     @EventListener
     public void onServiceStartedEvent(@SuppressWarnings("unused") StartupEvent startEvent) {
-        pubSub.reactive().subscribe(baseChannel()).subscribe();
+        pubSub.reactive().subscribe(baseChannel(), batchChannel(), presenceChannel()).subscribe();
         pubSub.reactive().observeChannels()
                 .doOnNext(pm -> {
-                    log.debug("Reactive handler sending to channel: {}, message, {}", pm.getChannel(), pm.getMessage());
-                    if (StringUtils.equals(pm.getChannel(), baseChannel())) {
-                        broadcaster.broadcastSync(pm.getMessage());
+                    log.trace("Reactive handler received on channel: {}, message, {}", pm.getChannel(),
+                            pm.getMessage());
+                    if (StringUtils.equalsAny(pm.getChannel(), baseChannel(), batchChannel())) {
+                        deliver(pm.getMessage());
+                    } else if (StringUtils.equals(pm.getChannel(), presenceChannel())
+                            && !nodeId.equals(pm.getMessage())) {
+                        refreshRemoteSessions();
                     }
                 })
                 .doOnError(e -> log.error("Error in reactive observer", e))
                 .subscribe();
+        refreshRemoteSessions();
     }
 
     public void subscribe(WebSocketSession session) {
-        redis.sync().hset(baseChannel(), session.getId(), null);
+        connected.put(session.getId(), session);
+        announcePresence();
     }
 
     public void unsubscribe(WebSocketSession session) {
-        redis.sync().hdel(baseChannel(), session.getId());
+        connected.remove(session.getId());
+        announcePresence();
     }
 
     public boolean hasConnectedSessions() {
-        KeyValue<String, String> subscriptions = redis.reactive().hgetall(baseChannel()).blockFirst();
-        return subscriptions != null && !subscriptions.isEmpty();
+        return !connected.isEmpty() || remoteSessions.get();
     }
 
     public void send(WebSocketMessageBody body) {
+        pending.add(body);
+        publishPending();
+    }
+
+    public Logger getLog() {
+        return log;
+    }
+
+    @SuppressWarnings("unused")
+    @Scheduled(fixedDelay = "30s", initialDelay = "30s")
+    void renewPresence() {
+        connected.values().removeIf(s -> !s.isOpen());
+        long now = System.currentTimeMillis();
+        redis.async().zremrangebyscore(presenceKey(), Range.create(0, now));
+        if (!connected.isEmpty()) {
+            redis.async().zadd(presenceKey(), now + presenceTtl.toMillis(), nodeId);
+        }
+        refreshRemoteSessions();
+    }
+
+    @PreDestroy
+    public void shutdown() {
         try {
-            String message = mapper.writeValueAsString(body);
-            redis.reactive().publish(baseChannel(), message).block();
+            redis.sync().zrem(presenceKey(), nodeId);
+        } catch (Exception e) {
+            log.warn("Could not remove websocket presence of this instance: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Publishes everything that is pending, only one publish is in flight at a
+     * time, so messages of a burst are collected into the next batch
+     */
+    void publishPending() {
+        while (!pending.isEmpty() && publishing.compareAndSet(false, true)) {
+            List<WebSocketMessageBody> batch = new ArrayList<>();
+            WebSocketMessageBody next;
+            while (batch.size() < maxBatchSize && (next = pending.poll()) != null) {
+                batch.add(next);
+            }
+            if (batch.isEmpty()) {
+                publishing.set(false);
+                continue;
+            }
+            try {
+                boolean single = batch.size() == 1;
+                String message = mapper.writeValueAsString(single ? batch.get(0) : batch);
+                redis.async().publish(single ? baseChannel() : batchChannel(), message).whenComplete((receivers, e) -> {
+                    if (e != null) {
+                        log.error("Could not send {} message(s) to channel", batch.size(), e);
+                    }
+                    publishing.set(false);
+                    publishPending();
+                });
+                return;
+            } catch (JacksonException e) {
+                log.error("Could not send message to channel", e);
+                publishing.set(false);
+            }
+        }
+    }
+
+    /**
+     * Broadcasts a published message, or batch of messages, to the interested
+     * sessions of this instance
+     */
+    void deliver(String message) {
+        if (connected.isEmpty()) {
+            return;
+        }
+        try {
+            JsonNode messages = mapper.readTree(message);
+            if (messages.isArray()) {
+                messages.forEach(this::broadcast);
+            } else {
+                broadcast(messages);
+            }
         } catch (JacksonException e) {
-            log.error("Could not send message to channel", e);
+            log.error("Could not read message from channel", e);
         }
     }
 
-    public Logger getLog() {
-        return log;
+    private void broadcast(JsonNode message) {
+        JsonNode body = message.path("message");
+        broadcaster.broadcastAsync(message.toString(), SessionFilter.sessionsFor(
+                EnumUtils.getEnum(WebSocketMessageType.class, body.path("type").asText()),
+                body.path("partner").path("id").textValue()))
+                .whenComplete((m, e) -> {
+                    if (e != null) {
+                        log.error("Could not send websocket message.", e);
+                    }
+                });
+    }
+
+    private void announcePresence() {
+        (connected.isEmpty()
+                ? redis.async().zrem(presenceKey(), nodeId)
+                : redis.async().zadd(presenceKey(), System.currentTimeMillis() + presenceTtl.toMillis(), nodeId))
+                        .thenCompose(r -> redis.async().publish(presenceChannel(), nodeId))
+                        .whenComplete((r, e) -> {
+                            if (e != null) {
+                                log.error("Could not announce websocket presence", e);
+                            }
+                        });
+    }
+
+    private void refreshRemoteSessions() {
+        redis.async().zrangebyscore(presenceKey(), Range.create(System.currentTimeMillis(), Long.MAX_VALUE))
+                .whenComplete((nodes, e) -> {
+                    if (e != null) {
+                        log.error("Could not read websocket presence", e);
+                    } else {
+                        remoteSessions.set(nodes.stream().anyMatch(n -> !nodeId.equals(n)));
+                    }
+                });
+    }
+
+    private String batchChannel() {
+        return baseChannel() + "-batch";
+    }
+
+    private String presenceKey() {
+        return baseChannel() + ":presence";
+    }
+
+    private String presenceChannel() {
+        return baseChannel() + "-presence";
     }
 }
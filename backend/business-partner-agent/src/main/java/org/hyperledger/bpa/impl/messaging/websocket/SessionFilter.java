@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2020-2022 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.impl.messaging.websocket;
+
+import io.micronaut.core.annotation.Nullable;
+import io.micronaut.websocket.WebSocketSession;
+import lombok.NonNull;
+import org.apache.commons.lang3.EnumUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.hyperledger.bpa.controller.api.WebSocketMessageBody;
+import org.hyperledger.bpa.controller.api.WebSocketMessageBody.WebSocketMessageType;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * The events a websocket session is interested in. Empty sets match everything,
+ * the partner filter only applies to events that concern a partner.
+ *
+ * @param types      event types
+ * @param partnerIds partner ids
+ */
+public record SessionFilter(Set<WebSocketMessageType> types, Set<String> partnerIds) {
+
+    public static final SessionFilter ALL = new SessionFilter(Set.of(), Set.of());
+
+    private static final String ATTRIBUTE = "bpa.session-filter";
+
+    public SessionFilter {
+        types = types != null ? Set.copyOf(types) : Set.of();
+        partnerIds = partnerIds != null ? Set.copyOf(partnerIds) : Set.of();
+    }
+
+    /**
+     * Reads the filter from the query parameters of the websocket request, types
+     * and partnerIds, both either comma separated or repeated. Unknown types are
+     * ignored.
+     *
+     * @param session {@link WebSocketSession}
+     * @return {@link SessionFilter}
+     */
+    public static SessionFilter fromRequest(@NonNull WebSocketSession session) {
+        return new SessionFilter(
+                split(session.getRequestParameters().getAll("types")).stream()
+                        .map(t -> EnumUtils.getEnum(WebSocketMessageType.class, t))
+                        .filter(Objects::nonNull)
+                        .collect(Collectors.toSet()),
+                split(session.getRequestParameters().getAll("partnerIds")));
+    }
+
+    /**
+     * @param session {@link WebSocketSession}
+     * @return the filter of the session, {@link #ALL} if none was set
+     */
+    public static SessionFilter of(@NonNull WebSocketSession session) {
+        return session.get(ATTRIBUTE, SessionFilter.class).orElse(ALL);
+    }
+
+    public void applyTo(@NonNull WebSocketSession session) {
+        session.put(ATTRIBUTE, this);
+    }
+
+    public boolean matches(@Nullable WebSocketMessageType type, @Nullable String partnerId) {
+        return (types.isEmpty() || type != null && types.contains(type))
+                && (partnerIds.isEmpty() || partnerId == null || partnerIds.contains(partnerId));
+    }
+
+    /**
+     * @param type      event type
+     * @param partnerId optional id of the partner the event concerns
+     * @return broadcast filter that selects the sessions interested in the event
+     */
+    public static Predicate<WebSocketSession> sessionsFor(@Nullable WebSocketMessageType type,
+            @Nullable String partnerId) {
+        return session -> of(session).matches(type, partnerId);
+    }
+
+    public static Predicate<WebSocketSession> sessionsFor(@NonNull WebSocketMessageBody body) {
+        WebSocketMessageBody.WebSocketMessage message = body.getMessage();
+        return sessionsFor(message.getType(), message.getPartner() != null ? message.getPartner().getId() : null);
+    }
+
+    private static Set<String> split(Collection<String> values) {
+        return values.stream()
+                .flatMap(v -> Arrays.stream(StringUtils.split(v, ',')))
+                .map(String::trim)
+                .filter(StringUtils::isNotEmpty)
+                .collect(Collectors.toSet());
+    }
+}
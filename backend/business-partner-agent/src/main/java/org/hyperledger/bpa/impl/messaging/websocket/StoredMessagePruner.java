@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2020-2022 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.impl.messaging.websocket;
+
+import io.micronaut.context.annotation.Value;
+import io.micronaut.scheduling.annotation.Scheduled;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+import org.hyperledger.bpa.impl.ClusterJobRunner;
+import org.hyperledger.bpa.persistence.repository.MessageQueueRepository;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Removes stored websocket messages that were not replayed within the retention
+ * period, e.g. because no frontend connected in the meantime.
+ */
+@Slf4j
+@Singleton
+public class StoredMessagePruner {
+
+    @Value("${bpa.websocket.stored-retention}")
+    Duration retention;
+
+    @Inject
+    MessageQueueRepository queue;
+
+    @Inject
+    ClusterJobRunner jobs;
+
+    @Scheduled(fixedDelay = "1h", initialDelay = "15m")
+    void scheduledPrune() {
+        jobs.runExclusive("prune-stored-messages", Duration.ofMinutes(50), this::prune);
+    }
+
+    void prune() {
+        if (retention.isZero() || retention.isNegative()) {
+            return;
+        }
+        Instant cutoff = Instant.now().minus(retention);
+        int removed = queue.deleteByCreatedAtLessThan(cutoff);
+        if (removed > 0) {
+            log.info("Removed {} stored websocket messages created before {}", removed, cutoff);
+        }
+    }
+}
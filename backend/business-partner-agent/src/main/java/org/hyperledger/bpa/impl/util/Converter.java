@@ -21,6 +21,8 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
@@ -54,6 +56,7 @@ import org.hyperledger.bpa.persistence.model.Partner;
 import org.hyperledger.bpa.persistence.model.PartnerProof;
 
 import javax.validation.constraints.NotNull;
+import java.time.Duration;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -95,15 +98,58 @@ public class Converter {
     @Inject
     BPAMessageSource.DefaultMessageSource msg;
 
+    /**
+     * Decoded public profiles by partner id, the hash of the stored presentation
+     * guards against stale entries if an update was not invalidated.
+     */
+    private final Cache<UUID, DecodedProfile> decodedProfiles = Caffeine.newBuilder()
+            .maximumSize(10_000)
+            .expireAfterAccess(Duration.ofHours(12))
+            .build();
+
     public PartnerAPI toAPIObject(@NonNull Partner p) {
         PartnerAPI result = PartnerAPI.from(p);
         if (p.getVerifiablePresentation() != null) {
-            result = toAPIObject(fromMap(p.getVerifiablePresentation(), VP_TYPEREF));
+            result = decodeProfile(p);
             PartnerAPI.copyFrom(result, p);
         }
         return result;
     }
 
+    /**
+     * Drops the decoded public profile of a partner, needs to be called whenever
+     * the partners verifiable presentation changes.
+     *
+     * @param partnerId the partner id
+     */
+    public void invalidateDecodedProfile(@NonNull UUID partnerId) {
+        decodedProfiles.invalidate(partnerId);
+    }
+
+    /**
+     * Deserializing the presentation and resolving the schema labels is the
+     * expensive part of the partner conversion, so the result is cached per
+     * partner. Cached credentials are shared between calls and must not be
+     * modified.
+     */
+    private PartnerAPI decodeProfile(@NonNull Partner p) {
+        if (p.getId() == null) {
+            return toAPIObject(p.getVerifiablePresentation());
+        }
+        int vpHash = p.getVerifiablePresentation().hashCode();
+        DecodedProfile decoded = decodedProfiles.getIfPresent(p.getId());
+        if (decoded == null || decoded.vpHash() != vpHash) {
+            PartnerAPI api = toAPIObject(p.getVerifiablePresentation());
+            decoded = new DecodedProfile(vpHash, api.getVerifiablePresentation(),
+                    Collections.unmodifiableList(api.getCredential()));
+            decodedProfiles.put(p.getId(), decoded);
+        }
+        return PartnerAPI.builder()
+                .verifiablePresentation(decoded.vp())
+                .credential(decoded.credentials())
+                .build();
+    }
+
     public PartnerAPI toAPIObject(@NonNull VerifiablePresentation<VerifiableIndyCredential> partner) {
         List<PartnerCredential> pc = new ArrayList<>();
         if (partner.getVerifiableCredential() != null) {
@@ -160,8 +206,7 @@ public class Converter {
                 .builder()
                 .did(did)
                 .valid(api.getValid())
-                .verifiablePresentation(
-                        api.getVerifiablePresentation() != null ? toMap(api.getVerifiablePresentation()) : null)
+                .verifiablePresentation(api.getVerifiablePresentation())
                 .build();
     }
 
@@ -238,6 +283,15 @@ public class Converter {
         return Optional.empty();
     }
 
+    public Optional<byte[]> writeValueAsBytes(Object value) {
+        try {
+            return Optional.of(mapper.writeValueAsBytes(value));
+        } catch (JsonProcessingException e) {
+            log.error("Could not serialise to bytes: {}", value, e);
+        }
+        return Optional.empty();
+    }
+
     public AriesProofExchange toAPIObject(@NonNull PartnerProof p) {
         AriesProofExchange proof = AriesProofExchange.from(p);
 
@@ -348,4 +402,10 @@ public class Converter {
         }
         return schemaId;
     }
+
+    private record DecodedProfile(
+            int vpHash,
+            VerifiablePresentation<VerifiableIndyCredential> vp,
+            List<PartnerCredential> credentials) {
+    }
 }
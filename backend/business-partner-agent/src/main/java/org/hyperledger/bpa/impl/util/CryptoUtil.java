@@ -46,6 +46,16 @@ public class CryptoUtil {
         return b.equals(o);
     }
 
+    /**
+     * @param base object that is serialized to json
+     * @return hex encoded SHA3-256 digest of the object's json, null if the
+     *         algorithm is not available
+     */
+    @Nullable
+    public static String digest(@NonNull Object base) {
+        return toSHA256Hex(GsonConfig.defaultConfig().toJson(base));
+    }
+
     private static String toSHA256Hex(@NonNull String base) {
         try {
             MessageDigest digest = MessageDigest.getInstance("SHA3-256");
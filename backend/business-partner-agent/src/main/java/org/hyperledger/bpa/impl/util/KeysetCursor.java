@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2020-2022 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.impl.util;
+
+import lombok.NonNull;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Position of the last row of a page that is ordered by (updated_at, id), the
+ * encoded form is opaque to the client.
+ *
+ * @param updatedAt updated_at of the last row
+ * @param id        id of the last row
+ */
+public record KeysetCursor(@NonNull Instant updatedAt, @NonNull UUID id) {
+
+    public String encode() {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((updatedAt + "|" + id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static Optional<KeysetCursor> decode(@NonNull String cursor) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8)
+                    .split("\\|");
+            if (parts.length == 2) {
+                return Optional.of(new KeysetCursor(Instant.parse(parts[0]), UUID.fromString(parts[1])));
+            }
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            // invalid
+        }
+        return Optional.empty();
+    }
+}
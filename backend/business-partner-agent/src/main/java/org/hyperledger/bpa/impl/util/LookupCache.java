@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2020-2022 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.impl.util;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import lombok.NonNull;
+
+import java.time.Duration;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+/**
+ * Cache for remote lookups like did resolution. Concurrent callers of a missing
+ * key share one in-flight lookup. Entries older than the refresh time are still
+ * served while one background lookup replaces them. Entries older than the
+ * expiry time are looked up again before they are returned. Failed lookups are
+ * not cached, a failed background refresh keeps the old value.
+ *
+ * @param <V> the cached value
+ */
+public class LookupCache<V> {
+
+    private final String name;
+
+    private final LoadingCache<String, V> cache;
+
+    /**
+     * @param name         cache name used in the statistics
+     * @param refreshAfter entries older than this are refreshed in the background
+     * @param expireAfter  entries older than this are not served anymore
+     * @param maximumSize  max number of cached keys
+     * @param executor     runs the background refreshes
+     * @param lookup       the remote lookup, exceptions are passed to the caller
+     */
+    public LookupCache(@NonNull String name, @NonNull Duration refreshAfter, @NonNull Duration expireAfter,
+            long maximumSize, @NonNull Executor executor, @NonNull Function<String, V> lookup) {
+        this.name = name;
+        this.cache = Caffeine.newBuilder()
+                .refreshAfterWrite(refreshAfter)
+                .expireAfterWrite(expireAfter)
+                .maximumSize(maximumSize)
+                .executor(executor)
+                .recordStats()
+                .build(lookup::apply);
+    }
+
+    public V get(@NonNull String key) {
+        return cache.get(key);
+    }
+
+    public void invalidate(@NonNull String key) {
+        cache.invalidate(key);
+    }
+
+    public Stats stats() {
+        CacheStats s = cache.stats();
+        return new Stats(name, cache.estimatedSize(), s.hitCount(), s.missCount(), s.loadFailureCount(),
+                s.evictionCount());
+    }
+
+    public record Stats(String name, long size, long hits, long misses, long failures, long evictions) {
+    }
+}
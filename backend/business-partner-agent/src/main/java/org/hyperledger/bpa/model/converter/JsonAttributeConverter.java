@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2020-2022 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.model.converter;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import io.micronaut.core.annotation.NonNull;
+import io.micronaut.core.convert.ConversionContext;
+import io.micronaut.data.model.runtime.convert.AttributeConverter;
+import jakarta.inject.Inject;
+
+import java.io.IOException;
+
+/**
+ * Maps a json column directly to a typed class. Reading and writing goes
+ * through a reader and writer that are bound to the type once, instead of
+ * converting a {@code Map<String, Object>} into the typed class on every
+ * access.
+ *
+ * @param <T> the entity property type
+ */
+public abstract class JsonAttributeConverter<T> implements AttributeConverter<T, String> {
+
+    @Inject
+    ObjectMapper mapper;
+
+    private volatile ObjectReader reader;
+
+    private volatile ObjectWriter writer;
+
+    /**
+     * @return the type the column is mapped to
+     */
+    protected abstract TypeReference<T> type();
+
+    @Override
+    public String convertToPersistedValue(T entityValue, @NonNull ConversionContext context) {
+        if (entityValue == null) {
+            return null;
+        }
+        try {
+            return writer().writeValueAsString(entityValue);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not serialise json column of type: " + type().getType(), e);
+        }
+    }
+
+    @Override
+    public T convertToEntityValue(String persistedValue, @NonNull ConversionContext context) {
+        if (persistedValue == null) {
+            return null;
+        }
+        try {
+            return reader().readValue(persistedValue);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not deserialize json column of type: " + type().getType(), e);
+        }
+    }
+
+    /**
+     * @return the mapper the reader and writer are created from
+     */
+    protected ObjectMapper mapper() {
+        return mapper;
+    }
+
+    ObjectReader reader() {
+        if (reader == null) {
+            reader = mapper().readerFor(type());
+        }
+        return reader;
+    }
+
+    ObjectWriter writer() {
+        if (writer == null) {
+            writer = mapper().writerFor(type());
+        }
+        return writer;
+    }
+
+    /**
+     * Allows to use the converter outside of the application context, e.g. in
+     * tests.
+     *
+     * @param mapper {@link ObjectMapper}
+     */
+    public void setMapper(@NonNull ObjectMapper mapper) {
+        this.mapper = mapper;
+        this.reader = null;
+        this.writer = null;
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2020-2022 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.model.converter;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.introspect.Annotated;
+import com.fasterxml.jackson.databind.introspect.JacksonAnnotationIntrospector;
+import jakarta.inject.Singleton;
+import org.hyperledger.bpa.core.RegisteredWebhook;
+
+/**
+ * Json column holding a registered webhook. The signing secret is write only in
+ * the api, so the column is mapped with access restrictions ignored, otherwise
+ * the secret would be lost on persist.
+ */
+@Singleton
+public class RegisteredWebhookConverter extends JsonAttributeConverter<RegisteredWebhook> {
+
+    private static final TypeReference<RegisteredWebhook> TYPE = new TypeReference<>() {
+    };
+
+    @Override
+    protected TypeReference<RegisteredWebhook> type() {
+        return TYPE;
+    }
+
+    @Override
+    protected ObjectMapper mapper() {
+        return super.mapper().copy().setAnnotationIntrospector(new JacksonAnnotationIntrospector() {
+            @Override
+            public JsonProperty.Access findPropertyAccess(Annotated m) {
+                return null;
+            }
+        });
+    }
+}
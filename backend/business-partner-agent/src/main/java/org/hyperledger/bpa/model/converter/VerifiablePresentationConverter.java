@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2020-2022 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.model.converter;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import jakarta.inject.Singleton;
+import org.hyperledger.aries.api.jsonld.VerifiableCredential.VerifiableIndyCredential;
+import org.hyperledger.aries.api.jsonld.VerifiablePresentation;
+
+/**
+ * Json column holding the public profile of a partner.
+ */
+@Singleton
+public class VerifiablePresentationConverter
+        extends JsonAttributeConverter<VerifiablePresentation<VerifiableIndyCredential>> {
+
+    private static final TypeReference<VerifiablePresentation<VerifiableIndyCredential>> TYPE = new TypeReference<>() {
+    };
+
+    @Override
+    protected TypeReference<VerifiablePresentation<VerifiableIndyCredential>> type() {
+        return TYPE;
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2020-2022 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.persistence.model;
+
+import io.micronaut.core.annotation.Nullable;
+import io.micronaut.data.annotation.AutoPopulated;
+import io.micronaut.data.annotation.DateCreated;
+import io.micronaut.data.annotation.DateUpdated;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Raw aca-py webhook event as it was received, events stay in the inbox until
+ * they have been handled, or are dead lettered after too many failed attempts.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Entity
+@Table(name = "aries_event_inbox")
+public class AriesEventInbox {
+
+    @Id
+    @AutoPopulated
+    private UUID id;
+
+    @DateCreated
+    private Instant createdAt;
+
+    @DateUpdated
+    private Instant updatedAt;
+
+    private String eventType;
+
+    private String eventBody;
+
+    /** connection or exchange id, events with the same key are handled in order */
+    private String orderingKey;
+
+    /** claim of the poll that handles the event */
+    @Nullable
+    private String claimedBy;
+
+    @Enumerated(EnumType.STRING)
+    private InboxState state;
+
+    @Builder.Default
+    private Integer attempts = 0;
+
+    @Nullable
+    private String lastError;
+
+    public enum InboxState {
+        NEW,
+        PROCESSING,
+        DEAD_LETTER
+    }
+}
@@ -76,6 +76,13 @@ public class BPASchema implements CredentialTypeTranslator {
     @Nullable
     private String ldType;
 
+    /**
+     * When the credential definitions of this schema were last looked up on the
+     * ledger, null if never
+     */
+    @Nullable
+    private Instant ledgerScannedAt;
+
     @OneToMany(fetch = FetchType.LAZY, mappedBy = "schema", cascade = { CascadeType.PERSIST, CascadeType.REFRESH })
     private List<BPARestrictions> restrictions;
 
@@ -26,12 +26,13 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hyperledger.bpa.core.RegisteredWebhook;
+import org.hyperledger.bpa.model.converter.RegisteredWebhookConverter;
 
 import javax.persistence.Entity;
 import javax.persistence.Id;
 import javax.persistence.Table;
 import java.time.Instant;
-import java.util.Map;
 import java.util.UUID;
 
 @Data
@@ -52,6 +53,6 @@ public class BPAWebhook {
     @DateUpdated
     private Instant updatedAt;
 
-    @TypeDef(type = DataType.JSON)
-    private Map<String, Object> webhook;
+    @TypeDef(type = DataType.JSON, converter = RegisteredWebhookConverter.class)
+    private RegisteredWebhook webhook;
 }
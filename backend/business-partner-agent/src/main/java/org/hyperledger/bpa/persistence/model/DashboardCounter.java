@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2020-2022 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.persistence.model;
+
+import io.micronaut.core.annotation.Introspected;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Embeddable;
+import javax.persistence.EmbeddedId;
+import javax.persistence.Entity;
+import javax.persistence.Table;
+import java.time.Instant;
+
+/**
+ * Number of counted rows of a dashboard metric that were created within the
+ * hour of the bucket. Every bucket is spread over shards to avoid lock
+ * contention, so only the sum of all shards is meaningful. Written by database
+ * triggers only, see V1.37__dashboard-counters.sql and
+ * V1.45__dashboard-counter-shards.sql
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Entity
+@Table(name = "dashboard_counter")
+public class DashboardCounter {
+
+    public static final String PARTNERS = "partners";
+    public static final String CREDENTIALS_SENT = "credentials_sent";
+    public static final String CREDENTIALS_RECEIVED = "credentials_received";
+    public static final String PRESENTATION_REQUESTS_SENT = "presentation_requests_sent";
+    public static final String PRESENTATION_REQUESTS_RECEIVED = "presentation_requests_received";
+    public static final String TASKS = "tasks";
+
+    @EmbeddedId
+    private DashboardCounterId id;
+
+    private Long count;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Embeddable
+    public static class DashboardCounterId {
+        private String metric;
+        private Instant bucket;
+        private Short shard;
+    }
+
+    /**
+     * Sum of a metric over all buckets, and over the buckets of a period
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Introspected
+    public static class MetricSum {
+        private String metric;
+        private Long total;
+        private Long period;
+    }
+}
@@ -26,12 +26,14 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hyperledger.bpa.controller.api.WebSocketMessageBody;
+import org.hyperledger.bpa.model.converter.WebSocketMessageConverter;
 
 import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
 import javax.persistence.Table;
 import java.time.Instant;
-import java.util.Map;
 import java.util.UUID;
 
 @NoArgsConstructor
@@ -46,10 +48,14 @@ public class MessageQueue {
     @AutoPopulated
     private UUID id;
 
+    /** replay order, assigned by the database */
+    @GeneratedValue
+    private Long seq;
+
     @DateCreated
     private Instant createdAt;
 
     @Nullable
-    @TypeDef(type = DataType.JSON)
-    private Map<String, Object> message;
+    @TypeDef(type = DataType.JSON, converter = WebSocketMessageConverter.class)
+    private WebSocketMessageBody message;
 }
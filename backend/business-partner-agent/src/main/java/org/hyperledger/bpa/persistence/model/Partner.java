@@ -27,9 +27,11 @@ import lombok.*;
 import lombok.experimental.Accessors;
 import org.hyperledger.acy_py.generated.model.InvitationRecord;
 import org.hyperledger.aries.api.connection.ConnectionState;
+import org.hyperledger.aries.api.jsonld.VerifiableCredential.VerifiableIndyCredential;
 import org.hyperledger.aries.api.jsonld.VerifiablePresentation;
 import org.hyperledger.bpa.api.PartnerAPI;
 import org.hyperledger.bpa.controller.api.partner.PartnerCredentialType;
+import org.hyperledger.bpa.model.converter.VerifiablePresentationConverter;
 
 import javax.persistence.*;
 import java.time.Instant;
@@ -122,8 +124,8 @@ public class Partner extends StateChangeDecorator<Partner, ConnectionState> {
      * {@link PartnerAPI}
      */
     @Nullable
-    @TypeDef(type = DataType.JSON)
-    private Map<String, Object> verifiablePresentation;
+    @TypeDef(type = DataType.JSON, converter = VerifiablePresentationConverter.class)
+    private VerifiablePresentation<VerifiableIndyCredential> verifiablePresentation;
 
     /**
      * credential offer or proof request when using OOB invitations with attachments
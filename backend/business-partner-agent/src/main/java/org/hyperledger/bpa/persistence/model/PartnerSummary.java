@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2020-2022 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.persistence.model;
+
+import io.micronaut.core.annotation.Introspected;
+import io.micronaut.core.annotation.Nullable;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hyperledger.aries.api.connection.ConnectionState;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Slim projection of a {@link Partner} for list views, does not load the
+ * verifiable presentation, the invitation record and the tags.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Introspected
+public class PartnerSummary {
+    private UUID id;
+    private Instant createdAt;
+    private Instant updatedAt;
+    @Nullable
+    private Instant lastSeen;
+    private String did;
+    private Boolean ariesSupport;
+    @Nullable
+    private ConnectionState state;
+    @Nullable
+    private String label;
+    @Nullable
+    private String alias;
+    @Nullable
+    private Boolean incoming;
+    @Nullable
+    private Boolean valid;
+    @Nullable
+    private Boolean trustPing;
+}
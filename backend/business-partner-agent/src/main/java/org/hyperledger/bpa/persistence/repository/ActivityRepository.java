@@ -18,7 +18,9 @@
 package org.hyperledger.bpa.persistence.repository;
 
 import io.micronaut.core.annotation.NonNull;
+import io.micronaut.core.annotation.Nullable;
 import io.micronaut.data.annotation.Join;
+import io.micronaut.data.annotation.Query;
 import io.micronaut.data.jdbc.annotation.JdbcRepository;
 import io.micronaut.data.model.query.builder.sql.Dialect;
 import io.micronaut.data.repository.CrudRepository;
@@ -56,8 +58,32 @@ public interface ActivityRepository extends CrudRepository<Activity, UUID> {
     @Join(value = "partner", type = Join.Type.LEFT_FETCH)
     List<Activity> findByTypeAndCompletedTrueOrderByUpdatedAtDesc(@NonNull ActivityType type);
 
-    Long countByCompletedFalse();
+    /**
+     * Keyset pagination over (updated_at, id), newest first. All filters are
+     * optional, the first page is requested without updatedAt and id. The partner
+     * is not fetched, only its id is set.
+     */
+    @Query("SELECT a.* FROM activity a "
+            + "WHERE (CAST(:completed AS boolean) IS NULL OR a.completed = :completed) "
+            + "AND (CAST(:type AS varchar) IS NULL OR a.type = :type) "
+            + "AND (CAST(:partnerId AS uuid) IS NULL OR a.partner_id = :partnerId) "
+            + "AND (CAST(:updatedFrom AS timestamp) IS NULL OR a.updated_at >= :updatedFrom) "
+            + "AND (CAST(:updatedTo AS timestamp) IS NULL OR a.updated_at < :updatedTo) "
+            + "AND (CAST(:updatedAt AS timestamp) IS NULL OR (a.updated_at, a.id) < (:updatedAt, :id)) "
+            + "ORDER BY a.updated_at DESC, a.id DESC LIMIT :size")
+    List<Activity> findPage(@Nullable Boolean completed, @Nullable String type, @Nullable UUID partnerId,
+            @Nullable Instant updatedFrom, @Nullable Instant updatedTo,
+            @Nullable Instant updatedAt, @Nullable UUID id, int size);
 
-    Long countByCompletedFalseAndCreatedAtAfter(Instant createdAt);
+    /**
+     * Moves completed activities that were last updated before the cutoff into the
+     * partitioned activity_history table
+     *
+     * @param cutoff    last update before
+     * @param batchSize max rows moved
+     * @return number of moved rows
+     */
+    @Query("SELECT archive_activities(CAST(:cutoff AS timestamp), :batchSize)")
+    int archiveCompleted(Instant cutoff, int batchSize);
 
 }
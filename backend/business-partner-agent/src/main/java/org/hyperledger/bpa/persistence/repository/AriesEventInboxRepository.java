@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2020-2022 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.persistence.repository;
+
+import io.micronaut.core.annotation.NonNull;
+import io.micronaut.core.annotation.Nullable;
+import io.micronaut.data.annotation.Id;
+import io.micronaut.data.annotation.Query;
+import io.micronaut.data.jdbc.annotation.JdbcRepository;
+import io.micronaut.data.model.query.builder.sql.Dialect;
+import io.micronaut.data.repository.CrudRepository;
+import org.hyperledger.bpa.persistence.model.AriesEventInbox;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+@JdbcRepository(dialect = Dialect.POSTGRES)
+public interface AriesEventInboxRepository extends CrudRepository<AriesEventInbox, UUID> {
+
+    Long countByState(@NonNull AriesEventInbox.InboxState state);
+
+    /**
+     * Claims the oldest new event of each key that has no event in processing,
+     * oldest first. Instances that claim at the same time never get the same event,
+     * and never two events of the same key.
+     *
+     * @param claimedBy claim id, used to load the claimed events
+     * @param now       claim time
+     * @param limit     max number of events to claim
+     * @return number of claimed events
+     */
+    @Query("UPDATE aries_event_inbox SET state = 'PROCESSING', claimed_by = :claimedBy, updated_at = :now "
+            + "WHERE state = 'NEW' AND id IN ("
+            + "SELECT id FROM ("
+            + "SELECT DISTINCT ON (i.ordering_key) i.id, i.created_at FROM aries_event_inbox i "
+            + "WHERE i.state = 'NEW' AND NOT EXISTS (SELECT 1 FROM aries_event_inbox p "
+            + "WHERE p.ordering_key = i.ordering_key AND p.state = 'PROCESSING') "
+            + "ORDER BY i.ordering_key, i.created_at) heads "
+            + "ORDER BY created_at LIMIT :limit)")
+    int claim(@NonNull String claimedBy, @NonNull Instant now, int limit);
+
+    /**
+     * Claims the new events that follow the heads claimed by {@link #claim}, so
+     * that all pending events of a key are handled together. No other instance can
+     * claim them, because their key already has an event in processing.
+     *
+     * @param claimedBy claim id of the heads
+     * @param now       claim time
+     * @param maxPerKey max number of events per key, including the head
+     * @return number of claimed events
+     */
+    @Query("UPDATE aries_event_inbox SET state = 'PROCESSING', claimed_by = :claimedBy, updated_at = :now "
+            + "WHERE state = 'NEW' AND id IN ("
+            + "SELECT id FROM ("
+            + "SELECT i.id, row_number() OVER (PARTITION BY i.ordering_key ORDER BY i.created_at) AS rn "
+            + "FROM aries_event_inbox i WHERE i.state = 'NEW' AND i.ordering_key IN ("
+            + "SELECT c.ordering_key FROM aries_event_inbox c WHERE c.claimed_by = :claimedBy)) followers "
+            + "WHERE rn < :maxPerKey)")
+    int claimFollowers(@NonNull String claimedBy, @NonNull Instant now, int maxPerKey);
+
+    List<AriesEventInbox> findByClaimedByOrderByCreatedAt(@NonNull String claimedBy);
+
+    /**
+     * Renews the claim when the event is handled, so that waiting in memory does
+     * not count against the claim timeout.
+     *
+     * @param id        {@link AriesEventInbox} id
+     * @param claimedBy claim id
+     * @param now       renewal time
+     * @return 0 if the claim expired and the event was released
+     */
+    @Query("UPDATE aries_event_inbox SET updated_at = :now "
+            + "WHERE id = :id AND claimed_by = :claimedBy AND state = 'PROCESSING'")
+    int renewClaim(@NonNull UUID id, @NonNull String claimedBy, @NonNull Instant now);
+
+    void deleteByIdIn(@NonNull Collection<UUID> id);
+
+    void updateAttemptsAndLastError(@Id UUID id, Integer attempts, @Nullable String lastError);
+
+    void updateStateAndAttemptsAndLastError(@Id UUID id, AriesEventInbox.InboxState state, Integer attempts,
+            @Nullable String lastError);
+
+    /**
+     * Releases events that were claimed by an instance that did not finish them,
+     * e.g. because it crashed.
+     *
+     * @param before claimed before
+     * @return number of released events
+     */
+    @Query("UPDATE aries_event_inbox SET state = 'NEW', claimed_by = NULL "
+            + "WHERE state = 'PROCESSING' AND updated_at < :before")
+    int releaseExpiredClaims(@NonNull Instant before);
+}
@@ -26,6 +26,7 @@ import io.micronaut.data.repository.CrudRepository;
 import org.hyperledger.bpa.api.CredentialType;
 import org.hyperledger.bpa.persistence.model.BPASchema;
 
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -50,4 +51,6 @@ public interface BPASchemaRepository extends CrudRepository<BPASchema, UUID> {
     Optional<BPASchema> findById(@NonNull UUID id);
 
     void updateDefaultAttributeName(@Id UUID id, String defaultAttributeName);
+
+    void updateLedgerScannedAt(@Id UUID id, Instant ledgerScannedAt);
 }
@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2020-2022 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.persistence.repository;
+
+import io.micronaut.data.annotation.Query;
+import io.micronaut.data.jdbc.annotation.JdbcRepository;
+import io.micronaut.data.model.query.builder.sql.Dialect;
+import io.micronaut.data.repository.CrudRepository;
+import org.hyperledger.bpa.persistence.model.DashboardCounter;
+
+import java.time.Instant;
+import java.util.List;
+
+@JdbcRepository(dialect = Dialect.POSTGRES)
+public interface DashboardCounterRepository
+        extends CrudRepository<DashboardCounter, DashboardCounter.DashboardCounterId> {
+
+    /**
+     * Sums over all buckets and shards of a metric.
+     *
+     * @param since start of the period, rounded down to the hour
+     * @return all time and period sum of each metric
+     */
+    @Query("SELECT metric, sum(count) AS total, "
+            + "coalesce(sum(count) FILTER (WHERE bucket >= date_trunc('hour', CAST(:since AS timestamp))), 0) AS period "
+            + "FROM dashboard_counter GROUP BY metric")
+    List<DashboardCounter.MetricSum> sumByMetric(Instant since);
+}
@@ -30,7 +30,6 @@ import org.hyperledger.aries.api.issue_credential_v1.CredentialExchangeState;
 import org.hyperledger.bpa.persistence.model.BPACredentialExchange;
 import org.hyperledger.bpa.persistence.model.StateChangeDecorator;
 
-import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -98,11 +97,4 @@ public interface HolderCredExRepository extends CrudRepository<BPACredentialExch
     @Query("UPDATE bpa_credential_exchange SET partner_id = null WHERE partner_id = :partnerId AND role = 'HOLDER'")
     Number setPartnerIdToNull(UUID partnerId);
 
-    // count
-
-    Long countByRoleEqualsAndStateEquals(CredentialExchangeRole role, CredentialExchangeState state);
-
-    Long countByRoleEqualsAndStateEqualsAndCreatedAtAfter(
-            CredentialExchangeRole role, CredentialExchangeState state, Instant issuedAt);
-
 }
@@ -17,13 +17,31 @@
  */
 package org.hyperledger.bpa.persistence.repository;
 
+import io.micronaut.data.annotation.Query;
 import io.micronaut.data.jdbc.annotation.JdbcRepository;
 import io.micronaut.data.model.query.builder.sql.Dialect;
 import io.micronaut.data.repository.CrudRepository;
 import org.hyperledger.bpa.persistence.model.MessageQueue;
 
+import java.time.Instant;
+import java.util.List;
 import java.util.UUID;
 
 @JdbcRepository(dialect = Dialect.POSTGRES)
 public interface MessageQueueRepository extends CrudRepository<MessageQueue, UUID> {
+
+    /**
+     * Stored messages in replay order
+     *
+     * @param after sequence of the last message of the previous page, 0 for the
+     *              first page
+     * @param size  page size
+     * @return list of {@link MessageQueue}
+     */
+    @Query("SELECT * FROM message_queue WHERE seq > :after ORDER BY seq LIMIT :size")
+    List<MessageQueue> findPage(long after, int size);
+
+    int deleteBySeqLessThanEquals(Long seq);
+
+    int deleteByCreatedAtLessThan(Instant createdAt);
 }
@@ -27,10 +27,14 @@ import io.micronaut.data.model.query.builder.sql.Dialect;
 import io.micronaut.data.repository.CrudRepository;
 import org.hyperledger.acy_py.generated.model.InvitationRecord;
 import org.hyperledger.aries.api.connection.ConnectionState;
+import org.hyperledger.aries.api.jsonld.VerifiableCredential.VerifiableIndyCredential;
+import org.hyperledger.aries.api.jsonld.VerifiablePresentation;
 import org.hyperledger.bpa.persistence.model.Partner;
+import org.hyperledger.bpa.persistence.model.PartnerSummary;
 import org.hyperledger.bpa.persistence.model.StateChangeDecorator;
 
 import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -60,26 +64,56 @@ public interface PartnerRepository extends CrudRepository<Partner, UUID> {
 
     List<Partner> findByDidIn(List<String> did);
 
+    @Query("SELECT connection_id FROM partner WHERE connection_id IS NOT NULL AND connection_id != ''")
+    List<String> findConnectionIds();
+
+    List<Partner> findByIdIn(Collection<UUID> id);
+
     Optional<Partner> findByInvitationMsgId(String invitationMsgId);
 
-    @Query("SELECT distinct partner.* FROM partner,jsonb_to_recordset(partner.supported_credentials->'wrapped') as items(seqno text) where items.seqno = :seqNo")
+    /**
+     * Partners that can issue credentials of a schema, served from
+     * partner_supported_credential, which a trigger keeps in sync with
+     * supported_credentials
+     *
+     * @param seqNo indy schema sequence number
+     * @return list of {@link Partner}
+     */
+    @Query("SELECT partner.* FROM partner WHERE partner.id IN "
+            + "(SELECT psc.partner_id FROM partner_supported_credential psc WHERE psc.seq_no = :seqNo)")
     List<Partner> findBySupportedCredential(String seqNo);
 
     List<Partner> findByStateInAndTrustPingTrueAndAriesSupportTrue(List<ConnectionState> state);
 
+    /**
+     * Keyset pagination over (updated_at, id), newest first. All filters are
+     * optional, the first page is requested without updatedAt and id.
+     *
+     * @param state      connection state
+     * @param tagId      partner has tag
+     * @param namePrefix lower case LIKE prefix pattern of the alias, or if not set,
+     *                   the label
+     * @param updatedAt  updated_at of the last partner of the previous page
+     * @param id         id of the last partner of the previous page
+     * @param size       max page size
+     * @return {@link PartnerSummary}
+     */
+    @Query("SELECT p.id, p.created_at, p.updated_at, p.last_seen, p.did, p.aries_support, p.state, p.label, "
+            + "p.alias, p.incoming, p.valid, p.trust_ping FROM partner p "
+            + "WHERE (CAST(:state AS varchar) IS NULL OR p.state = :state) "
+            + "AND (CAST(:tagId AS uuid) IS NULL OR EXISTS "
+            + "(SELECT 1 FROM partner_tag pt WHERE pt.partner_id = p.id AND pt.tag_id = :tagId)) "
+            + "AND (CAST(:namePrefix AS varchar) IS NULL OR lower(coalesce(p.alias, p.label)) LIKE :namePrefix) "
+            + "AND (CAST(:updatedAt AS timestamp) IS NULL OR (p.updated_at, p.id) < (:updatedAt, :id)) "
+            + "ORDER BY p.updated_at DESC, p.id DESC LIMIT :size")
+    List<PartnerSummary> findPage(@Nullable String state, @Nullable UUID tagId, @Nullable String namePrefix,
+            @Nullable Instant updatedAt, @Nullable UUID id, int size);
+
     // delete
 
     @Query("delete from partner_tag where partner_id = :id; delete from partner where id = :id")
     void deleteByPartnerId(@NonNull UUID id);
 
-    // count
-
-    Long countByStateNotEquals(ConnectionState state);
-
-    Long countByCreatedAtAfter(Instant createdAt);
-
-    Long countByStateNotEqualsAndCreatedAtAfter(ConnectionState state, Instant createdAt);
-
     // update
 
     void updateState(@Id UUID id, ConnectionState state,
@@ -92,14 +126,16 @@ public interface PartnerRepository extends CrudRepository<Partner, UUID> {
 
     int updateDid(@Id UUID id, String did);
 
+    int updateValid(@Id UUID id, @Nullable Boolean valid);
+
     Number updateByDid(String did, Map<String, Object> supportedCredentials);
 
     Number updateVerifiablePresentation(@Id UUID id,
-            Map<String, Object> verifiablePresentation, @Nullable Boolean valid,
+            VerifiablePresentation<VerifiableIndyCredential> verifiablePresentation, @Nullable Boolean valid,
             String label, String did);
 
     Number updateVerifiablePresentation(@Id UUID id,
-            Map<String, Object> verifiablePresentation, @Nullable Boolean valid);
+            VerifiablePresentation<VerifiableIndyCredential> verifiablePresentation, @Nullable Boolean valid);
 
     Number updateInvitationRecord(@Id UUID is, @Nullable InvitationRecord invitationRecord);
 
@@ -113,4 +149,24 @@ public interface PartnerRepository extends CrudRepository<Partner, UUID> {
     @Query("UPDATE partner SET state = :newState, last_seen = :lastSeen WHERE connection_id = :connectionId")
     void updateStateAndLastSeenByConnectionId(String connectionId, ConnectionState newState, Instant lastSeen);
 
+    /**
+     * Writes the result of a trust ping cycle with a single statement. Pinged
+     * connections that responded are set to PING_RESPONSE and their last seen
+     * timestamp is updated, all others are set to PING_NO_RESPONSE.
+     *
+     * @param pinged          connection ids of the cycle
+     * @param responded       subset of the pinged connections that responded
+     * @param responseState   {@link ConnectionState#PING_RESPONSE}
+     * @param noResponseState {@link ConnectionState#PING_NO_RESPONSE}
+     * @param lastSeen        when the responses were collected
+     * @return number of updated partners
+     */
+    @Query("UPDATE partner SET "
+            + "state = CASE WHEN connection_id IN (:responded) THEN :responseState ELSE :noResponseState END, "
+            + "last_seen = CASE WHEN connection_id IN (:responded) THEN :lastSeen ELSE last_seen END "
+            + "WHERE connection_id IN (:pinged) "
+            + "AND (connection_id IN (:responded) OR state IS NULL OR state != :noResponseState)")
+    int updatePingResults(Collection<String> pinged, Collection<String> responded,
+            ConnectionState responseState, ConnectionState noResponseState, Instant lastSeen);
+
 }
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2020-2022 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.persistence.repository;
+
+import io.micronaut.core.annotation.NonNull;
+import io.micronaut.data.annotation.Query;
+import io.micronaut.data.jdbc.annotation.JdbcRepository;
+import io.micronaut.data.model.query.builder.sql.Dialect;
+import io.micronaut.data.repository.CrudRepository;
+import org.hyperledger.bpa.persistence.model.SchedulerLock;
+
+/**
+ * All lease timestamps are computed by the database.
+ */
+@JdbcRepository(dialect = Dialect.POSTGRES)
+public interface SchedulerLockRepository extends CrudRepository<SchedulerLock, String> {
+
+    @Query("INSERT INTO scheduler_lock (name, locked_by, locked_at, locked_until) "
+            + "VALUES (:name, '', now(), now()) ON CONFLICT (name) DO NOTHING")
+    void createIfMissing(@NonNull String name);
+
+    /**
+     * Takes the lease if it is free
+     *
+     * @param name         job name
+     * @param lockedBy     instance id
+     * @param leaseSeconds how long the lease is valid if it is not renewed
+     * @return 1 if the lease was taken, 0 if another instance holds it
+     */
+    @Query("UPDATE scheduler_lock SET locked_by = :lockedBy, locked_at = now(), "
+            + "locked_until = now() + make_interval(secs => :leaseSeconds) "
+            + "WHERE name = :name AND locked_until <= now()")
+    int tryAcquire(@NonNull String name, @NonNull String lockedBy, double leaseSeconds);
+
+    /**
+     * Extends the lease of a running job
+     *
+     * @param name         job name
+     * @param lockedBy     instance id
+     * @param leaseSeconds new validity from now on
+     * @return 1 if the lease was extended, 0 if it was lost to another instance
+     */
+    @Query("UPDATE scheduler_lock SET locked_until = now() + make_interval(secs => :leaseSeconds) "
+            + "WHERE name = :name AND locked_by = :lockedBy")
+    int renew(@NonNull String name, @NonNull String lockedBy, double leaseSeconds);
+
+    /**
+     * Releases the lease of a finished job, but keeps it for at least the minimum
+     * interval after the start, so that other instances skip the same tick.
+     *
+     * @param name       job name
+     * @param lockedBy   instance id
+     * @param minSeconds minimum time between two runs of the job
+     * @return 1 if the lease was released
+     */
+    @Query("UPDATE scheduler_lock SET locked_until = GREATEST(now(), locked_at + make_interval(secs => :minSeconds)) "
+            + "WHERE name = :name AND locked_by = :lockedBy")
+    int release(@NonNull String name, @NonNull String lockedBy, double minSeconds);
+}
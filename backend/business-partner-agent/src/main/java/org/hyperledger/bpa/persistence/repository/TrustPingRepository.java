@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2020-2022 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.persistence.repository;
+
+import io.micronaut.core.annotation.NonNull;
+import io.micronaut.data.annotation.Query;
+import io.micronaut.data.jdbc.annotation.JdbcRepository;
+import io.micronaut.data.model.query.builder.sql.Dialect;
+import io.micronaut.data.repository.CrudRepository;
+import org.hyperledger.bpa.persistence.model.TrustPing;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A ping and its response can be recorded by different instances and in any
+ * order, so both are upserts.
+ */
+@JdbcRepository(dialect = Dialect.POSTGRES)
+public interface TrustPingRepository extends CrudRepository<TrustPing, String> {
+
+    @Query("INSERT INTO trust_ping (thread_id, connection_id, sent_at) VALUES (:threadId, :connectionId, :sentAt) "
+            + "ON CONFLICT (thread_id) DO UPDATE SET connection_id = EXCLUDED.connection_id, "
+            + "sent_at = EXCLUDED.sent_at")
+    void recordSent(@NonNull String threadId, @NonNull String connectionId, @NonNull Instant sentAt);
+
+    @Query("INSERT INTO trust_ping (thread_id, sent_at, responded_at) VALUES (:threadId, now(), now()) "
+            + "ON CONFLICT (thread_id) DO UPDATE SET responded_at = now()")
+    void recordResponse(@NonNull String threadId);
+
+    List<TrustPing> findBySentAtLessThan(@NonNull Instant before);
+
+    void deleteByThreadIdIn(@NonNull Collection<String> threadIds);
+}
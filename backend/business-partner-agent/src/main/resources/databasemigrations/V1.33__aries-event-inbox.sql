@@ -0,0 +1,12 @@
+CREATE TABLE aries_event_inbox (
+    id uuid PRIMARY KEY,
+    created_at timestamp without time zone NOT NULL,
+    updated_at timestamp without time zone,
+    event_type character varying(255) NOT NULL,
+    event_body text NOT NULL,
+    state character varying(255) NOT NULL,
+    attempts integer NOT NULL DEFAULT 0,
+    last_error text
+);
+
+CREATE INDEX aries_event_inbox_state_idx ON aries_event_inbox (state, created_at);
@@ -0,0 +1,17 @@
+CREATE TABLE webhook_outbox (
+    id uuid PRIMARY KEY,
+    created_at timestamp without time zone,
+    updated_at timestamp without time zone,
+    webhook_id uuid NOT NULL,
+    payload text NOT NULL,
+    attempts integer NOT NULL DEFAULT 0,
+    next_attempt_at timestamp without time zone NOT NULL,
+    last_error text
+);
+
+ALTER TABLE webhook_outbox
+    ADD CONSTRAINT webhook_outbox_fk_1
+        FOREIGN KEY (webhook_id)
+            REFERENCES bpa_webhook(id) ON DELETE CASCADE;
+
+CREATE INDEX webhook_outbox_next_attempt_idx ON webhook_outbox (next_attempt_at);
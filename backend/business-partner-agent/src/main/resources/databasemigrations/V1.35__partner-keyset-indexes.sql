@@ -0,0 +1,7 @@
+-- keyset pagination over (updated_at, id) needs a value in every row
+UPDATE partner SET updated_at = coalesce(created_at, now()) WHERE updated_at IS NULL;
+
+CREATE INDEX partner_updated_at_id_idx ON partner (updated_at DESC, id DESC);
+CREATE INDEX partner_state_updated_at_id_idx ON partner (state, updated_at DESC, id DESC);
+CREATE INDEX partner_name_prefix_idx ON partner (lower(coalesce(alias, label)) text_pattern_ops);
+CREATE INDEX partner_tag_tag_id_idx ON partner_tag (tag_id, partner_id);
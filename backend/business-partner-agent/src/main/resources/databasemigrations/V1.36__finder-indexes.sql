@@ -0,0 +1,21 @@
+-- lookups done for every aries webhook event
+
+CREATE INDEX partner_connection_id_idx ON partner (connection_id);
+CREATE INDEX partner_invitation_msg_id_idx ON partner (invitation_msg_id);
+CREATE INDEX partner_did_idx ON partner (did);
+
+CREATE INDEX bpa_credential_exchange_cred_ex_id_idx ON bpa_credential_exchange (credential_exchange_id);
+CREATE INDEX bpa_credential_exchange_referent_idx ON bpa_credential_exchange (referent);
+CREATE INDEX bpa_credential_exchange_revocation_idx ON bpa_credential_exchange (rev_reg_id, cred_rev_id);
+CREATE INDEX bpa_credential_exchange_partner_id_idx ON bpa_credential_exchange (partner_id);
+-- expressions have to match HolderCredExRepository.findBySchemaIdAndCredentialDefinitionId
+CREATE INDEX bpa_credential_exchange_holder_cred_def_idx ON bpa_credential_exchange
+    ((credential->>'schemaId'), (credential->>'credentialDefinitionId')) WHERE role = 'HOLDER';
+
+CREATE INDEX partner_proof_presentation_exchange_id_idx ON partner_proof (presentation_exchange_id);
+CREATE INDEX partner_proof_thread_id_idx ON partner_proof (thread_id);
+CREATE INDEX partner_proof_partner_id_idx ON partner_proof (partner_id);
+
+CREATE INDEX activity_link_id_type_role_idx ON activity (link_id, type, role);
+
+CREATE INDEX chat_message_partner_id_created_at_idx ON chat_message (partner_id, created_at);
@@ -0,0 +1,140 @@
+-- Dashboard counters per metric and hour of creation of the counted row.
+-- Maintained by triggers, so that every write path is covered, including the
+-- native update queries.
+
+CREATE TABLE dashboard_counter (
+    metric character varying(255) NOT NULL,
+    bucket timestamp without time zone NOT NULL,
+    count bigint NOT NULL,
+    PRIMARY KEY (metric, bucket)
+);
+
+CREATE FUNCTION dashboard_counter_move(old_metric varchar, old_created timestamp,
+                                       new_metric varchar, new_created timestamp) RETURNS void AS $$
+DECLARE
+    old_bucket timestamp := date_trunc('hour', coalesce(old_created, 'epoch'::timestamp));
+    new_bucket timestamp := date_trunc('hour', coalesce(new_created, 'epoch'::timestamp));
+BEGIN
+    IF old_metric IS NOT DISTINCT FROM new_metric AND old_bucket = new_bucket THEN
+        RETURN;
+    END IF;
+    IF old_metric IS NOT NULL THEN
+        UPDATE dashboard_counter SET count = count - 1 WHERE metric = old_metric AND bucket = old_bucket;
+    END IF;
+    IF new_metric IS NOT NULL THEN
+        INSERT INTO dashboard_counter (metric, bucket, count) VALUES (new_metric, new_bucket, 1)
+            ON CONFLICT (metric, bucket) DO UPDATE SET count = dashboard_counter.count + 1;
+    END IF;
+END;
+$$ LANGUAGE plpgsql;
+
+-- metric of a row, null if the row is not counted
+
+CREATE FUNCTION dashboard_partner_metric(state varchar) RETURNS varchar AS $$
+    SELECT CASE WHEN state <> 'INVITATION' THEN 'partners' END;
+$$ LANGUAGE sql IMMUTABLE;
+
+CREATE FUNCTION dashboard_credential_metric(role varchar, state varchar) RETURNS varchar AS $$
+    SELECT CASE
+        WHEN state = 'CREDENTIAL_ACKED' AND role = 'ISSUER' THEN 'credentials_sent'
+        WHEN state = 'CREDENTIAL_ACKED' AND role = 'HOLDER' THEN 'credentials_received'
+    END;
+$$ LANGUAGE sql IMMUTABLE;
+
+CREATE FUNCTION dashboard_proof_metric(state varchar) RETURNS varchar AS $$
+    SELECT CASE
+        WHEN state = 'REQUEST_SENT' THEN 'presentation_requests_sent'
+        WHEN state = 'PRESENTATION_RECEIVED' THEN 'presentation_requests_received'
+    END;
+$$ LANGUAGE sql IMMUTABLE;
+
+CREATE FUNCTION dashboard_activity_metric(completed boolean) RETURNS varchar AS $$
+    SELECT CASE WHEN NOT completed THEN 'tasks' END;
+$$ LANGUAGE sql IMMUTABLE;
+
+-- triggers
+
+CREATE FUNCTION dashboard_partner_trigger() RETURNS trigger AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        PERFORM dashboard_counter_move(NULL, NULL, dashboard_partner_metric(NEW.state), NEW.created_at);
+    ELSIF TG_OP = 'UPDATE' THEN
+        PERFORM dashboard_counter_move(dashboard_partner_metric(OLD.state), OLD.created_at,
+                                       dashboard_partner_metric(NEW.state), NEW.created_at);
+    ELSE
+        PERFORM dashboard_counter_move(dashboard_partner_metric(OLD.state), OLD.created_at, NULL, NULL);
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE FUNCTION dashboard_credential_trigger() RETURNS trigger AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        PERFORM dashboard_counter_move(NULL, NULL, dashboard_credential_metric(NEW.role, NEW.state), NEW.created_at);
+    ELSIF TG_OP = 'UPDATE' THEN
+        PERFORM dashboard_counter_move(dashboard_credential_metric(OLD.role, OLD.state), OLD.created_at,
+                                       dashboard_credential_metric(NEW.role, NEW.state), NEW.created_at);
+    ELSE
+        PERFORM dashboard_counter_move(dashboard_credential_metric(OLD.role, OLD.state), OLD.created_at, NULL, NULL);
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE FUNCTION dashboard_proof_trigger() RETURNS trigger AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        PERFORM dashboard_counter_move(NULL, NULL, dashboard_proof_metric(NEW.state), NEW.created_at);
+    ELSIF TG_OP = 'UPDATE' THEN
+        PERFORM dashboard_counter_move(dashboard_proof_metric(OLD.state), OLD.created_at,
+                                       dashboard_proof_metric(NEW.state), NEW.created_at);
+    ELSE
+        PERFORM dashboard_counter_move(dashboard_proof_metric(OLD.state), OLD.created_at, NULL, NULL);
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE FUNCTION dashboard_activity_trigger() RETURNS trigger AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        PERFORM dashboard_counter_move(NULL, NULL, dashboard_activity_metric(NEW.completed), NEW.created_at);
+    ELSIF TG_OP = 'UPDATE' THEN
+        PERFORM dashboard_counter_move(dashboard_activity_metric(OLD.completed), OLD.created_at,
+                                       dashboard_activity_metric(NEW.completed), NEW.created_at);
+    ELSE
+        PERFORM dashboard_counter_move(dashboard_activity_metric(OLD.completed), OLD.created_at, NULL, NULL);
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER partner_dashboard_counter AFTER INSERT OR UPDATE OF state, created_at OR DELETE ON partner
+    FOR EACH ROW EXECUTE FUNCTION dashboard_partner_trigger();
+CREATE TRIGGER bpa_credential_exchange_dashboard_counter
+    AFTER INSERT OR UPDATE OF role, state, created_at OR DELETE ON bpa_credential_exchange
+    FOR EACH ROW EXECUTE FUNCTION dashboard_credential_trigger();
+CREATE TRIGGER partner_proof_dashboard_counter AFTER INSERT OR UPDATE OF state, created_at OR DELETE ON partner_proof
+    FOR EACH ROW EXECUTE FUNCTION dashboard_proof_trigger();
+CREATE TRIGGER activity_dashboard_counter AFTER INSERT OR UPDATE OF completed, created_at OR DELETE ON activity
+    FOR EACH ROW EXECUTE FUNCTION dashboard_activity_trigger();
+
+-- backfill
+
+INSERT INTO dashboard_counter (metric, bucket, count)
+SELECT metric, bucket, count(*) FROM (
+    SELECT dashboard_partner_metric(state) AS metric,
+           date_trunc('hour', coalesce(created_at, 'epoch'::timestamp)) AS bucket FROM partner
+    UNION ALL
+    SELECT dashboard_credential_metric(role, state),
+           date_trunc('hour', coalesce(created_at, 'epoch'::timestamp)) FROM bpa_credential_exchange
+    UNION ALL
+    SELECT dashboard_proof_metric(state),
+           date_trunc('hour', coalesce(created_at, 'epoch'::timestamp)) FROM partner_proof
+    UNION ALL
+    SELECT dashboard_activity_metric(completed),
+           date_trunc('hour', coalesce(created_at, 'epoch'::timestamp)) FROM activity
+) counted
+WHERE metric IS NOT NULL
+GROUP BY metric, bucket;
@@ -0,0 +1,55 @@
+-- paged activity feed
+
+CREATE INDEX activity_updated_at_id_idx ON activity (updated_at DESC, id DESC);
+CREATE INDEX activity_completed_updated_at_id_idx ON activity (completed, updated_at DESC, id DESC);
+CREATE INDEX activity_partner_id_idx ON activity (partner_id);
+
+-- completed activities past retention, one partition per month of the last update
+
+CREATE TABLE activity_history (
+    id uuid NOT NULL,
+    partner_id uuid NOT NULL,
+    link_id uuid NOT NULL,
+    type character varying(255),
+    role character varying(255),
+    state character varying(255),
+    completed boolean NOT NULL,
+    created_at timestamp without time zone,
+    updated_at timestamp without time zone NOT NULL,
+    archived_at timestamp without time zone NOT NULL DEFAULT now(),
+    PRIMARY KEY (id, updated_at),
+    CONSTRAINT activity_history_partner_fk_1
+        FOREIGN KEY (partner_id)
+            REFERENCES partner(id)
+            ON DELETE CASCADE
+) PARTITION BY RANGE (updated_at);
+
+CREATE INDEX activity_history_partner_id_idx ON activity_history (partner_id);
+
+CREATE FUNCTION archive_activities(cutoff timestamp, batch_size int) RETURNS int AS $$
+DECLARE
+    month timestamp;
+    partition_name text;
+    moved int;
+BEGIN
+    FOR month IN
+        SELECT DISTINCT date_trunc('month', updated_at) FROM activity
+        WHERE completed AND updated_at < cutoff
+    LOOP
+        partition_name := 'activity_history_' || to_char(month, 'YYYY_MM');
+        EXECUTE format('CREATE TABLE IF NOT EXISTS %I PARTITION OF activity_history FOR VALUES FROM (%L) TO (%L)',
+                       partition_name, month, month + interval '1 month');
+    END LOOP;
+
+    WITH moved_rows AS (
+        DELETE FROM activity WHERE id IN (
+            SELECT id FROM activity WHERE completed AND updated_at < cutoff
+            ORDER BY updated_at LIMIT batch_size FOR UPDATE SKIP LOCKED)
+        RETURNING *
+    )
+    INSERT INTO activity_history (id, partner_id, link_id, type, role, state, completed, created_at, updated_at)
+    SELECT id, partner_id, link_id, type, role, state, completed, created_at, updated_at FROM moved_rows;
+    GET DIAGNOSTICS moved = ROW_COUNT;
+    RETURN moved;
+END;
+$$ LANGUAGE plpgsql;
@@ -0,0 +1,8 @@
+-- one row per scheduled job, the instance that holds the lease runs the job
+-- times are set by the database, so that the clocks of the instances do not matter
+CREATE TABLE scheduler_lock (
+    name character varying(64) PRIMARY KEY,
+    locked_by character varying(255) NOT NULL,
+    locked_at timestamp with time zone NOT NULL,
+    locked_until timestamp with time zone NOT NULL
+);
@@ -0,0 +1,2 @@
+-- when the credential definitions of the schema were last looked up on the ledger, null if never
+ALTER TABLE bpa_schema ADD COLUMN ledger_scanned_at timestamp without time zone;
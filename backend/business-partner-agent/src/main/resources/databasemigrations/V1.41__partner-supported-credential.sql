@@ -0,0 +1,45 @@
+-- relational copy of partner.supported_credentials, so that the issuers of a schema can be found by index
+CREATE TABLE partner_supported_credential (
+    partner_id uuid NOT NULL,
+    seq_no character varying(255) NOT NULL,
+    cred_def_id character varying(255) NOT NULL,
+    PRIMARY KEY (partner_id, cred_def_id),
+    CONSTRAINT partner_supported_credential_fk_1
+        FOREIGN KEY (partner_id) REFERENCES partner(id) ON DELETE CASCADE
+);
+
+CREATE INDEX partner_supported_credential_seq_no_idx ON partner_supported_credential (seq_no, partner_id);
+
+-- PartnerCredDefLookup writes the json, the rows follow in the same statement
+CREATE FUNCTION partner_supported_credential_sync() RETURNS trigger AS $$
+BEGIN
+    DELETE FROM partner_supported_credential WHERE partner_id = NEW.id;
+    IF jsonb_typeof(NEW.supported_credentials->'wrapped') = 'array' THEN
+        INSERT INTO partner_supported_credential (partner_id, seq_no, cred_def_id)
+        SELECT DISTINCT NEW.id, items.seqno, items."credentialDefinitionId"
+        FROM jsonb_to_recordset(NEW.supported_credentials->'wrapped')
+            AS items(seqno text, "credentialDefinitionId" text)
+        WHERE items.seqno IS NOT NULL AND items."credentialDefinitionId" IS NOT NULL;
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER partner_supported_credential_insert
+    AFTER INSERT ON partner
+    FOR EACH ROW WHEN (NEW.supported_credentials IS NOT NULL)
+    EXECUTE FUNCTION partner_supported_credential_sync();
+
+CREATE TRIGGER partner_supported_credential_update
+    AFTER UPDATE OF supported_credentials ON partner
+    FOR EACH ROW WHEN (OLD.supported_credentials IS DISTINCT FROM NEW.supported_credentials)
+    EXECUTE FUNCTION partner_supported_credential_sync();
+
+-- backfill
+INSERT INTO partner_supported_credential (partner_id, seq_no, cred_def_id)
+SELECT DISTINCT p.id, items.seqno, items."credentialDefinitionId"
+FROM (SELECT id, supported_credentials->'wrapped' AS wrapped
+      FROM partner
+      WHERE jsonb_typeof(supported_credentials->'wrapped') = 'array') p,
+    jsonb_to_recordset(p.wrapped) AS items(seqno text, "credentialDefinitionId" text)
+WHERE items.seqno IS NOT NULL AND items."credentialDefinitionId" IS NOT NULL;
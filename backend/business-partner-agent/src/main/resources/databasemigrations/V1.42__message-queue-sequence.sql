@@ -0,0 +1,5 @@
+-- stored websocket messages are replayed in the order they were stored
+ALTER TABLE message_queue ADD COLUMN seq bigserial;
+
+CREATE UNIQUE INDEX message_queue_seq_idx ON message_queue (seq);
+CREATE INDEX message_queue_created_at_idx ON message_queue (created_at);
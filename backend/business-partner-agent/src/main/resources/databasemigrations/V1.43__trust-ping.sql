@@ -0,0 +1,11 @@
+-- trust pings of the current and the previous cycle, the instance that sends a ping and the instance that
+-- receives its response can differ
+-- sent and response can arrive in any order, so both are upserts and connection_id is null until the ping is recorded
+CREATE TABLE trust_ping (
+    thread_id character varying(255) PRIMARY KEY,
+    connection_id character varying(255),
+    sent_at timestamp with time zone NOT NULL,
+    responded_at timestamp with time zone
+);
+
+CREATE INDEX trust_ping_sent_at_idx ON trust_ping (sent_at);
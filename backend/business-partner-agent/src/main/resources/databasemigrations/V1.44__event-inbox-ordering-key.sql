@@ -0,0 +1,9 @@
+-- only the oldest event of an exchange can be claimed, and only while no other event of the exchange is processed,
+-- so events of the same exchange are handled one after the other, no matter which instance claims them
+ALTER TABLE aries_event_inbox ADD COLUMN ordering_key character varying(255);
+ALTER TABLE aries_event_inbox ADD COLUMN claimed_by character varying(255);
+
+UPDATE aries_event_inbox SET ordering_key = event_type WHERE ordering_key IS NULL;
+ALTER TABLE aries_event_inbox ALTER COLUMN ordering_key SET NOT NULL;
+
+CREATE INDEX aries_event_inbox_ordering_key_idx ON aries_event_inbox (ordering_key, state, created_at);
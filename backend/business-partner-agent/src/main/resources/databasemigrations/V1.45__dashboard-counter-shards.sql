@@ -0,0 +1,34 @@
+-- Spread every dashboard counter over shards. Before, all writers of a metric
+-- within the same hour upserted the same row and serialized on its lock. Now
+-- every change goes to a random shard, readers sum over all shards. Shards can
+-- get negative when a row is counted in one shard and removed in another.
+
+ALTER TABLE dashboard_counter ADD COLUMN shard smallint NOT NULL DEFAULT 0;
+ALTER TABLE dashboard_counter DROP CONSTRAINT dashboard_counter_pkey;
+ALTER TABLE dashboard_counter ADD PRIMARY KEY (metric, bucket, shard);
+
+CREATE FUNCTION dashboard_counter_add(add_metric varchar, add_bucket timestamp, delta bigint) RETURNS void AS $$
+BEGIN
+    INSERT INTO dashboard_counter (metric, bucket, shard, count)
+        VALUES (add_metric, add_bucket, floor(random() * 16)::smallint, delta)
+        ON CONFLICT (metric, bucket, shard) DO UPDATE SET count = dashboard_counter.count + delta;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION dashboard_counter_move(old_metric varchar, old_created timestamp,
+                                                  new_metric varchar, new_created timestamp) RETURNS void AS $$
+DECLARE
+    old_bucket timestamp := date_trunc('hour', coalesce(old_created, 'epoch'::timestamp));
+    new_bucket timestamp := date_trunc('hour', coalesce(new_created, 'epoch'::timestamp));
+BEGIN
+    IF old_metric IS NOT DISTINCT FROM new_metric AND old_bucket = new_bucket THEN
+        RETURN;
+    END IF;
+    IF old_metric IS NOT NULL THEN
+        PERFORM dashboard_counter_add(old_metric, old_bucket, -1);
+    END IF;
+    IF new_metric IS NOT NULL THEN
+        PERFORM dashboard_counter_add(new_metric, new_bucket, 1);
+    END IF;
+END;
+$$ LANGUAGE plpgsql;
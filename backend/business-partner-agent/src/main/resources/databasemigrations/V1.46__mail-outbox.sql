@@ -0,0 +1,13 @@
+CREATE TABLE mail_outbox (
+    id uuid PRIMARY KEY,
+    created_at timestamp without time zone,
+    updated_at timestamp without time zone,
+    send_to text NOT NULL,
+    subject text NOT NULL,
+    text_body text NOT NULL,
+    attempts integer NOT NULL DEFAULT 0,
+    next_attempt_at timestamp without time zone NOT NULL,
+    last_error text
+);
+
+CREATE INDEX mail_outbox_next_attempt_idx ON mail_outbox (next_attempt_at);
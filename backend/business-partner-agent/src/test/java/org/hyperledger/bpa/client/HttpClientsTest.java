@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2020-2022 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.client;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.hyperledger.bpa.config.HttpClientProfile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HttpClientsTest {
+
+    private final MockWebServer server = new MockWebServer();
+
+    private HttpClients http;
+
+    @BeforeEach
+    void setup() throws Exception {
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        http.shutdown();
+        server.shutdown();
+    }
+
+    @Test
+    void testProfilesShareConnectionPool() {
+        HttpClientProfile profile = new HttpClientProfile("slow");
+        profile.setReadTimeout(Duration.ofSeconds(42));
+        profile.setFollowRedirects(false);
+        http = HttpClients.withDefaults(profile);
+
+        OkHttpClient slow = http.client("slow");
+        OkHttpClient other = http.client("other");
+
+        assertSame(slow, http.client("slow"));
+        assertSame(slow.connectionPool(), other.connectionPool());
+        assertEquals(42_000, slow.readTimeoutMillis());
+        assertFalse(slow.followRedirects());
+        assertTrue(other.followRedirects());
+    }
+
+    @Test
+    void testReadTimeout() {
+        HttpClientProfile profile = new HttpClientProfile("fast");
+        profile.setReadTimeout(Duration.ofMillis(200));
+        http = HttpClients.withDefaults(profile);
+        server.enqueue(new MockResponse().setHeadersDelay(2, TimeUnit.SECONDS));
+
+        assertThrows(InterruptedIOException.class, () -> call("fast"));
+    }
+
+    @Test
+    void testCircuitOpensAfterRepeatedFailures() throws Exception {
+        http = new HttpClients(List.of(), 4, Duration.ofMinutes(1), 4, Duration.ofSeconds(1), 2,
+                Duration.ofMillis(300));
+        server.enqueue(new MockResponse().setResponseCode(503));
+        server.enqueue(new MockResponse().setResponseCode(503));
+        server.enqueue(new MockResponse().setResponseCode(200));
+
+        assertEquals(503, call("any"));
+        assertEquals(503, call("any"));
+        assertThrows(HttpClients.CircuitOpenException.class, () -> call("any"));
+        assertEquals(2, server.getRequestCount());
+
+        Thread.sleep(400);
+        // trial call closes the circuit again
+        assertEquals(200, call("any"));
+
+        HttpClients.TargetStats stats = http.stats().get(0);
+        assertEquals(3, stats.calls());
+        assertEquals(2, stats.failures());
+        assertEquals(1, stats.rejected());
+        assertFalse(stats.open());
+        assertEquals(3, stats.latency().values().stream().mapToLong(Long::longValue).sum());
+    }
+
+    @Test
+    void testConcurrentCallsPerHostAreLimited() throws Exception {
+        http = new HttpClients(List.of(), 4, Duration.ofMinutes(1), 1, Duration.ofMillis(200), 5,
+                Duration.ofSeconds(30));
+        server.enqueue(new MockResponse().setHeadersDelay(1, TimeUnit.SECONDS));
+        server.enqueue(new MockResponse());
+
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        try {
+            Future<Integer> first = callers.submit(() -> call("any"));
+            Thread.sleep(100);
+            Future<Integer> second = callers.submit(() -> call("any"));
+
+            ExecutionException e = assertThrows(ExecutionException.class, () -> second.get(5, TimeUnit.SECONDS));
+            assertTrue(e.getCause() instanceof IOException);
+            assertEquals(200, first.get(5, TimeUnit.SECONDS));
+        } finally {
+            callers.shutdownNow();
+        }
+        assertEquals(1, http.stats().get(0).rejected());
+    }
+
+    private int call(String profile) throws IOException {
+        Request request = new Request.Builder().url(server.url("/")).build();
+        try (Response response = http.client(profile).newCall(request).execute()) {
+            return response.code();
+        }
+    }
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright (c) 2020-2021 - for information on the respective copyright owner
+ * Copyright (c) 2020-2022 - for information on the respective copyright owner
  * see the NOTICE file and/or the repository at
  * https://github.com/hyperledger-labs/business-partner-agent
  *
@@ -17,26 +17,65 @@
  */
 package org.hyperledger.bpa.client;
 
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
 import org.hyperledger.bpa.BaseTest;
 import org.hyperledger.bpa.controller.api.partner.PartnerCredentialType;
-import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
 
 class LedgerExplorerClientTest extends BaseTest {
 
-    @Test
-    @Disabled
-    // TODO migrate to okhttp mock
-    void test() {
-        LedgerExplorerClient c = new LedgerExplorerClient();
-        c.setUrl("https://indy-test.bosch-digital.de");
+    private final MockWebServer server = new MockWebServer();
+
+    private final HttpClients http = HttpClients.withDefaults();
+
+    private LedgerExplorerClient c;
+
+    @BeforeEach
+    void setupClient() throws Exception {
+        server.start();
+        c = new LedgerExplorerClient();
+        c.setUrl(server.url("/explorer").toString());
         c.setMapper(mapper);
+        c.setHttp(http);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        http.shutdown();
+        server.shutdown();
+    }
+
+    @Test
+    void testQueryCredentialDefinitions() throws Exception {
+        server.enqueue(new MockResponse().setBody("{\"results\":["
+                + "{\"txnMetadata\":{\"seqNo\":1,\"txnId\":\"CHysca6fY8n8ytCDLAJGZj:3:CL:571:bank_account\"}},"
+                + "{\"txnMetadata\":{\"seqNo\":2,\"txnId\":\"CHysca6fY8n8ytCDLAJGZj:3:CL:571:bank_account\"}}]}"));
 
         final Optional<List<PartnerCredentialType>> credDefIds = c.queryCredentialDefinitions(
-                "CHysca6fY8n8ytCDLAJGZj");
-        System.err.println(credDefIds.get());
+                "did:sov:CHysca6fY8n8ytCDLAJGZj");
+
+        assertTrue(credDefIds.isPresent());
+        assertEquals(1, credDefIds.get().size());
+        assertEquals("571", credDefIds.get().get(0).getSeqno());
+        RecordedRequest request = server.takeRequest(5, TimeUnit.SECONDS);
+        assertNotNull(request);
+        assertEquals("/explorer/ledger/domain?query=CHysca6fY8n8ytCDLAJGZj&type=102", request.getPath());
+    }
+
+    @Test
+    void testFailedQuery() {
+        server.enqueue(new MockResponse().setResponseCode(500));
+
+        assertTrue(c.queryCredentialDefinitions("CHysca6fY8n8ytCDLAJGZj").isEmpty());
     }
 }
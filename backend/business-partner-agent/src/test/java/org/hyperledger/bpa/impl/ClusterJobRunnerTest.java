@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2020-2022 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.impl;
+
+import org.hyperledger.bpa.persistence.repository.SchedulerLockRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ClusterJobRunnerTest {
+
+    @Mock
+    SchedulerLockRepository lockRepo;
+
+    @InjectMocks
+    ClusterJobRunner runner;
+
+    @BeforeEach
+    void setup() {
+        runner.lease = Duration.ofMillis(60);
+    }
+
+    @AfterEach
+    void tearDown() {
+        runner.shutdown();
+    }
+
+    @Test
+    void testJobRunsAndReleasesLease() {
+        when(lockRepo.tryAcquire(eq("job"), anyString(), anyDouble())).thenReturn(1);
+        AtomicInteger runs = new AtomicInteger();
+
+        assertTrue(runner.runExclusive("job", Duration.ofSeconds(50), runs::incrementAndGet));
+
+        assertEquals(1, runs.get());
+        verify(lockRepo).createIfMissing("job");
+        verify(lockRepo).release(eq("job"), anyString(), eq(50d));
+    }
+
+    @Test
+    void testJobIsSkippedIfLeaseIsHeldByAnotherInstance() {
+        when(lockRepo.tryAcquire(eq("job"), anyString(), anyDouble())).thenReturn(0);
+        AtomicInteger runs = new AtomicInteger();
+
+        assertFalse(runner.runExclusive("job", Duration.ofSeconds(50), runs::incrementAndGet));
+        assertFalse(runner.runExclusive("job", Duration.ofSeconds(50), runs::incrementAndGet));
+
+        assertEquals(0, runs.get());
+        verify(lockRepo, times(1)).createIfMissing("job");
+        verify(lockRepo, never()).release(anyString(), anyString(), anyDouble());
+    }
+
+    @Test
+    void testJobIsSkippedIfDatabaseIsNotAvailable() {
+        when(lockRepo.tryAcquire(eq("job"), anyString(), anyDouble())).thenThrow(new IllegalStateException());
+
+        assertFalse(runner.runExclusive("job", Duration.ofSeconds(50), () -> fail("must not run")));
+    }
+
+    @Test
+    void testLeaseIsRenewedWhileJobRuns() {
+        when(lockRepo.tryAcquire(eq("job"), anyString(), anyDouble())).thenReturn(1);
+        when(lockRepo.renew(eq("job"), anyString(), anyDouble())).thenReturn(1);
+
+        runner.runExclusive("job", Duration.ZERO, () -> {
+            try {
+                Thread.sleep(150);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        verify(lockRepo, atLeast(2)).renew(eq("job"), anyString(), eq(0.06d));
+        verify(lockRepo).release(eq("job"), anyString(), eq(0d));
+    }
+
+    @Test
+    void testLeaseIsReleasedIfJobFails() {
+        when(lockRepo.tryAcquire(eq("job"), anyString(), anyDouble())).thenReturn(1);
+
+        assertThrows(IllegalStateException.class, () -> runner.runExclusive("job", Duration.ofSeconds(1), () -> {
+            throw new IllegalStateException("failed");
+        }));
+
+        verify(lockRepo).release(eq("job"), anyString(), eq(1d));
+    }
+}
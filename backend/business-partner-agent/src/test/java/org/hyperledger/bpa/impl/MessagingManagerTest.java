@@ -160,6 +160,28 @@ public class MessagingManagerTest {
                         && cmd.getTextBody() != null && cmd.getTextBody().startsWith("My Template")));
     }
 
+    @Test
+    void testUpdatedTemplateIsRecompiled() {
+        Partner p = createDefaultPartner(UUID.randomUUID().toString(), InvitationRecord.builder()
+                .invitationUrl("https://mock.test.com")
+                .build());
+        MessageTemplate t = createDefaultTemplate("My Subject", "First {{uri}}");
+        AdHocMessageRequest request = AdHocMessageRequest
+                .builder()
+                .invitationId(UUID.fromString(p.getInvitationMsgId()))
+                .templateId(t.getId())
+                .email("one@two.com")
+                .build();
+        messagingManager.sendMessage(request);
+        messagingManager.updateMessageTemplate(t.getId(), "My Subject", "Second {{uri}}");
+        messagingManager.sendMessage(request);
+
+        Mockito.verify(emailService, Mockito.times(1))
+                .send(Mockito.argThat(cmd -> "First https://mock.test.com".equals(cmd.getTextBody())));
+        Mockito.verify(emailService, Mockito.times(1))
+                .send(Mockito.argThat(cmd -> "Second https://mock.test.com".equals(cmd.getTextBody())));
+    }
+
     private Partner createDefaultPartner(String invitationMsgId, InvitationRecord invitationRecord) {
         return partnerRepo.save(Partner.builder()
                 .did(UUID.randomUUID().toString())
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2020-2022 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.impl;
+
+import org.hyperledger.bpa.api.PartnerAPI;
+import org.hyperledger.bpa.controller.api.WebSocketMessageBody;
+import org.hyperledger.bpa.controller.api.WebSocketMessageBody.WebSocketMessageType;
+import org.hyperledger.bpa.impl.messaging.websocket.MessageService;
+import org.hyperledger.bpa.impl.util.Converter;
+import org.hyperledger.bpa.persistence.model.Partner;
+import org.hyperledger.bpa.persistence.repository.PartnerRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class NotificationPipelineTest {
+
+    private final PartnerRepository partnerRepo = mock(PartnerRepository.class);
+    private final Converter conv = mock(Converter.class);
+    private final MessageService messageService = mock(MessageService.class);
+
+    private NotificationPipeline pipeline;
+
+    @AfterEach
+    void tearDown() {
+        pipeline.shutdown();
+    }
+
+    @Test
+    void testPartnerIsResolvedOncePerWindow() {
+        pipeline = new NotificationPipeline(Duration.ofMinutes(1), partnerRepo, conv, messageService);
+        Partner p = Partner.builder().id(UUID.randomUUID()).connectionId("c1").build();
+        when(partnerRepo.findByConnectionId("c1")).thenReturn(Optional.of(p));
+        when(conv.toAPIObject(any(Partner.class))).thenAnswer(i -> PartnerAPI.builder().id("p1").build());
+
+        PartnerAPI first = pipeline.partnerByConnectionId("c1");
+        assertSame(first, pipeline.partnerByConnectionId("c1"));
+        assertSame(first, pipeline.partnerById(p.getId()).orElseThrow());
+        verify(partnerRepo, times(1)).findByConnectionId("c1");
+        verify(partnerRepo, never()).findById(any());
+        verify(conv, times(1)).toAPIObject(any(Partner.class));
+
+        // partner of an event replaces the resolved one
+        PartnerAPI updated = pipeline.partner(p);
+        assertSame(updated, pipeline.partnerByConnectionId("c1"));
+        assertNotSame(first, updated);
+
+        assertNull(pipeline.partnerByConnectionId("unknown"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testNotificationsAreCollapsedAndSentAtOnce() {
+        pipeline = new NotificationPipeline(Duration.ofMinutes(1), partnerRepo, conv, messageService);
+
+        pipeline.submit(message(WebSocketMessageType.ON_CREDENTIAL_OFFERED, "1", "first"));
+        pipeline.submit(message(WebSocketMessageType.ON_CREDENTIAL_OFFERED, "2", "first"));
+        pipeline.submit(message(WebSocketMessageType.ON_CREDENTIAL_ACCEPTED, "1", "first"));
+        pipeline.submit(message(WebSocketMessageType.ON_CREDENTIAL_OFFERED, "1", "second"));
+        assertEquals(3, pipeline.getPendingSize());
+        verify(messageService, never()).sendMessages(any());
+
+        pipeline.flush();
+
+        ArgumentCaptor<List<WebSocketMessageBody>> sent = ArgumentCaptor.forClass(List.class);
+        verify(messageService, times(1)).sendMessages(sent.capture());
+        assertEquals(List.of("2/first", "1/first", "1/second"), sent.getValue().stream()
+                .map(m -> m.getMessage().getLinkId() + "/" + m.getMessage().getInfo())
+                .collect(Collectors.toList()));
+        assertEquals(0, pipeline.getPendingSize());
+    }
+
+    @Test
+    void testBatchingDisabled() {
+        pipeline = new NotificationPipeline(Duration.ZERO, partnerRepo, conv, messageService);
+        WebSocketMessageBody message = message(WebSocketMessageType.TASK_ADDED, "1", null);
+        pipeline.submit(message);
+
+        verify(messageService, times(1)).sendMessage(message);
+        assertEquals(0, pipeline.getPendingSize());
+    }
+
+    private static WebSocketMessageBody message(WebSocketMessageType type, String linkId, Object info) {
+        return WebSocketMessageBody.notificationEvent(type, linkId, info, null);
+    }
+}
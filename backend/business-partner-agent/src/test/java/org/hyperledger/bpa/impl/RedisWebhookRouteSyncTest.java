@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2020-2022 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.impl;
+
+import io.lettuce.core.pubsub.StatefulRedisPubSubConnection;
+import io.lettuce.core.pubsub.api.reactive.ChannelMessage;
+import io.lettuce.core.pubsub.api.reactive.RedisPubSubReactiveCommands;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class RedisWebhookRouteSyncTest {
+
+    private final WebhookService webhookService = mock(WebhookService.class);
+
+    private final Sinks.Many<ChannelMessage<String, String>> messages = Sinks.many().multicast()
+            .directBestEffort();
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    private final RedisWebhookRouteSync sync = new RedisWebhookRouteSync();
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setup() {
+        StatefulRedisPubSubConnection<String, String> pubSub = mock(StatefulRedisPubSubConnection.class);
+        RedisPubSubReactiveCommands<String, String> reactive = mock(RedisPubSubReactiveCommands.class);
+        when(pubSub.reactive()).thenReturn(reactive);
+        when(reactive.subscribe(any())).thenReturn(Mono.empty());
+        when(reactive.observeChannels()).thenReturn(messages.asFlux());
+        sync.pubSub = pubSub;
+        sync.webhookService = webhookService;
+        sync.executor = executor;
+        sync.onServiceStartedEvent(null);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testFailedReloadDoesNotEndTheSubscription() {
+        doThrow(new IllegalStateException("database down")).doNothing().when(webhookService).reloadRoutes();
+
+        messages.tryEmitNext(new ChannelMessage<>(RedisWebhookRouteSync.CHANNEL, "other-node"));
+        verify(webhookService, timeout(2000)).invalidateRoutes();
+
+        messages.tryEmitNext(new ChannelMessage<>(RedisWebhookRouteSync.CHANNEL, "other-node"));
+        verify(webhookService, timeout(2000).times(2)).reloadRoutes();
+        verify(webhookService, times(1)).invalidateRoutes();
+    }
+
+    @Test
+    void testOtherChannelsAreIgnored() {
+        messages.tryEmitNext(new ChannelMessage<>("bpa-messages", "other-node"));
+
+        verify(webhookService, after(200).never()).reloadRoutes();
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2020-2022 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.impl;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.hyperledger.bpa.client.HttpClients;
+import org.hyperledger.bpa.config.HttpClientProfile;
+import org.hyperledger.bpa.core.RegisteredWebhook;
+import org.hyperledger.bpa.persistence.model.BPAWebhook;
+import org.hyperledger.bpa.persistence.model.WebhookOutbox;
+import org.hyperledger.bpa.persistence.repository.BPAWebhookRepository;
+import org.hyperledger.bpa.persistence.repository.WebhookOutboxRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class WebhookDispatcherTest {
+
+    private final MockWebServer fast = new MockWebServer();
+    private final MockWebServer slow = new MockWebServer();
+
+    private final WebhookOutboxRepository outboxRepo = mock(WebhookOutboxRepository.class);
+    private final BPAWebhookRepository webhookRepo = mock(BPAWebhookRepository.class);
+    private HttpClients http;
+    private WebhookDispatcher dispatcher;
+
+    @BeforeEach
+    void setup() throws Exception {
+        fast.start();
+        slow.start();
+        HttpClientProfile profile = new HttpClientProfile(HttpClients.WEBHOOK);
+        profile.setMaxRequests(8);
+        profile.setMaxRequestsPerHost(2);
+        profile.setCallTimeout(Duration.ofSeconds(10));
+        http = HttpClients.withDefaults(profile);
+        dispatcher = new WebhookDispatcher(http);
+        dispatcher.outboxRepo = outboxRepo;
+        dispatcher.webhookRepo = webhookRepo;
+        dispatcher.maxAttempts = 3;
+        dispatcher.retryBackoff = Duration.ofSeconds(30);
+        dispatcher.retryBatchSize = 10;
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        http.shutdown();
+        fast.shutdown();
+        slow.shutdown();
+    }
+
+    @Test
+    void testSuccessfulCallIsNotPersisted() throws Exception {
+        fast.enqueue(new MockResponse().setResponseCode(200));
+
+        dispatcher.send(UUID.randomUUID(), hook(fast, "user"), payload("{\"a\":1}"));
+
+        RecordedRequest request = fast.takeRequest(5, TimeUnit.SECONDS);
+        assertNotNull(request);
+        assertEquals("{\"a\":1}", request.getBody().readUtf8());
+        assertTrue(Objects.requireNonNull(request.getHeader("Authorization")).startsWith("Basic "));
+        verify(outboxRepo, after(200).never()).save(any());
+    }
+
+    @Test
+    void testFailedCallIsPersistedForRetry() throws Exception {
+        fast.enqueue(new MockResponse().setResponseCode(500));
+        UUID webhookId = UUID.randomUUID();
+
+        dispatcher.send(webhookId, hook(fast, null), payload("{}"));
+
+        assertNotNull(fast.takeRequest(5, TimeUnit.SECONDS));
+        verify(outboxRepo, timeout(5000).times(1)).save(argThat(o -> o.getWebhookId().equals(webhookId)
+                && o.getAttempts() == 1
+                && o.getNextAttemptAt().isAfter(Instant.now())
+                && "code: 500".equals(o.getLastError())));
+    }
+
+    @Test
+    void testSlowTargetDoesNotDelayOthers() throws Exception {
+        slow.enqueue(new MockResponse().setResponseCode(200).setHeadersDelay(3, TimeUnit.SECONDS));
+        fast.enqueue(new MockResponse().setResponseCode(200));
+
+        dispatcher.send(UUID.randomUUID(), hook(slow, null), payload("{}"));
+        dispatcher.send(UUID.randomUUID(), hook(fast, null), payload("{}"));
+
+        long start = System.nanoTime();
+        assertNotNull(fast.takeRequest(5, TimeUnit.SECONDS));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 2000);
+    }
+
+    @Test
+    void testSharedPayloadIsSignedPerTarget() throws Exception {
+        fast.enqueue(new MockResponse().setResponseCode(200));
+        slow.enqueue(new MockResponse().setResponseCode(200));
+        WebhookDispatcher.Payload p = payload("{\"a\":1}");
+        RegisteredWebhook signed = hook(fast, null);
+        signed.setSigningSecret("secret");
+
+        dispatcher.send(UUID.randomUUID(), signed, p);
+        dispatcher.send(UUID.randomUUID(), hook(slow, null), p);
+
+        RecordedRequest fastRequest = fast.takeRequest(5, TimeUnit.SECONDS);
+        RecordedRequest slowRequest = slow.takeRequest(5, TimeUnit.SECONDS);
+        assertNotNull(fastRequest);
+        assertNotNull(slowRequest);
+        assertEquals("{\"a\":1}", fastRequest.getBody().readUtf8());
+        assertEquals("{\"a\":1}", slowRequest.getBody().readUtf8());
+        assertEquals("sha256=" + WebhookDispatcher.sign("secret", p.getBytes()),
+                fastRequest.getHeader(WebhookDispatcher.SIGNATURE_HEADER));
+        assertNull(slowRequest.getHeader(WebhookDispatcher.SIGNATURE_HEADER));
+    }
+
+    @Test
+    void testSignatureIsHmacSha256() {
+        // RFC 4231 test case 2
+        assertEquals("5bdcc146bf60754e6a042426089575c75a003f089d2739839dec58b964ec3843",
+                WebhookDispatcher.sign("Jefe", "what do ya want for nothing?".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void testRetryDeletesOnSuccess() throws Exception {
+        fast.enqueue(new MockResponse().setResponseCode(200));
+        WebhookOutbox o = outbox(1);
+        when(outboxRepo.findByNextAttemptAtBeforeOrderByNextAttemptAt(any(), any())).thenReturn(List.of(o));
+        when(webhookRepo.findById(o.getWebhookId()))
+                .thenReturn(Optional.of(BPAWebhook.builder().webhook(hook(fast, null)).build()));
+
+        dispatcher.retryFailed();
+
+        assertNotNull(fast.takeRequest(5, TimeUnit.SECONDS));
+        verify(outboxRepo, times(1)).updateAttemptsAndNextAttemptAt(eq(o.getId()), eq(2), any());
+        verify(outboxRepo, timeout(5000).times(1)).deleteById(o.getId());
+    }
+
+    @Test
+    void testRetryGivesUpAfterMaxAttempts() throws Exception {
+        fast.enqueue(new MockResponse().setResponseCode(503));
+        WebhookOutbox o = outbox(2);
+        when(outboxRepo.findByNextAttemptAtBeforeOrderByNextAttemptAt(any(), any())).thenReturn(List.of(o));
+        when(webhookRepo.findById(o.getWebhookId()))
+                .thenReturn(Optional.of(BPAWebhook.builder().webhook(hook(fast, null)).build()));
+
+        dispatcher.retryFailed();
+
+        verify(outboxRepo, timeout(5000).times(1)).deleteById(o.getId());
+        verify(outboxRepo, never()).updateLastError(any(), any());
+    }
+
+    @Test
+    void testRetryDropsCallsOfDeletedWebhooks() {
+        WebhookOutbox o = outbox(1);
+        when(outboxRepo.findByNextAttemptAtBeforeOrderByNextAttemptAt(any(), any())).thenReturn(List.of(o));
+        when(webhookRepo.findById(o.getWebhookId())).thenReturn(Optional.empty());
+
+        dispatcher.retryFailed();
+
+        verify(outboxRepo, times(1)).deleteById(o.getId());
+        assertEquals(0, fast.getRequestCount());
+    }
+
+    @Test
+    void testBackoff() {
+        assertEquals(Duration.ofSeconds(30), dispatcher.backoff(1));
+        assertEquals(Duration.ofSeconds(60), dispatcher.backoff(2));
+        assertEquals(Duration.ofSeconds(240), dispatcher.backoff(4));
+    }
+
+    private static WebhookOutbox outbox(int attempts) {
+        return WebhookOutbox.builder()
+                .id(UUID.randomUUID())
+                .webhookId(UUID.randomUUID())
+                .payload("{}")
+                .attempts(attempts)
+                .nextAttemptAt(Instant.now())
+                .build();
+    }
+
+    private static RegisteredWebhook hook(MockWebServer server, String user) {
+        return RegisteredWebhook.builder()
+                .url(server.url("/hook").toString())
+                .registeredEvent(List.of(RegisteredWebhook.WebhookEventType.ALL))
+                .credentials(user != null ? new RegisteredWebhook.WebhookCredentials(user, "secret") : null)
+                .build();
+    }
+
+    private static WebhookDispatcher.Payload payload(String json) {
+        return new WebhookDispatcher.Payload(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2020-2022 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micronaut.context.event.ApplicationEventPublisher;
+import org.hyperledger.bpa.core.RegisteredWebhook;
+import org.hyperledger.bpa.core.RegisteredWebhook.WebhookEventType;
+import org.hyperledger.bpa.impl.util.Converter;
+import org.hyperledger.bpa.persistence.model.BPAWebhook;
+import org.hyperledger.bpa.persistence.repository.BPAWebhookRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class WebhookServiceTest {
+
+    private final BPAWebhookRepository repo = mock(BPAWebhookRepository.class);
+    private final WebhookDispatcher dispatcher = mock(WebhookDispatcher.class);
+    @SuppressWarnings("unchecked")
+    private final ApplicationEventPublisher<WebhookService.RoutesChangedEvent> publisher = mock(
+            ApplicationEventPublisher.class);
+    private final Converter conv = new Converter();
+    private final WebhookService ws = new WebhookService();
+
+    private final UUID partnerHook = UUID.randomUUID();
+    private final UUID allHook = UUID.randomUUID();
+
+    @BeforeEach
+    void setup() {
+        conv.setMapper(new ObjectMapper());
+        ws.conv = conv;
+        ws.repo = repo;
+        ws.dispatcher = dispatcher;
+        ws.eventPublisher = publisher;
+        when(repo.findAll()).thenReturn(List.of(
+                hook(partnerHook, "https://a.test", WebhookEventType.PARTNER_ADD, WebhookEventType.PARTNER_UPDATE),
+                hook(allHook, "https://b.test", WebhookEventType.ALL)));
+    }
+
+    @Test
+    void testFanOutUsesRoutingTable() {
+        ws.convertAndSend(WebhookEventType.PARTNER_ADD, Map.of("a", "b"));
+        ws.convertAndSend(WebhookEventType.PARTNER_UPDATE, Map.of("a", "b"));
+        ws.convertAndSend(WebhookEventType.ALL, Map.of("a", "b"));
+
+        verify(repo, times(1)).findAll();
+        verify(repo, never()).findByEventType(any());
+        verify(dispatcher, times(2)).send(eq(partnerHook), any(), any(WebhookDispatcher.Payload.class));
+        verify(dispatcher, times(1)).send(eq(allHook), any(), any(WebhookDispatcher.Payload.class));
+    }
+
+    @Test
+    void testPayloadIsSerialisedOnceForAllTargets() {
+        when(repo.findAll()).thenReturn(List.of(
+                hook(partnerHook, "https://a.test", WebhookEventType.PARTNER_ADD),
+                hook(allHook, "https://b.test", WebhookEventType.PARTNER_ADD)));
+        ArgumentCaptor<WebhookDispatcher.Payload> payloads = ArgumentCaptor.forClass(WebhookDispatcher.Payload.class);
+
+        ws.convertAndSend(WebhookEventType.PARTNER_ADD, Map.of("a", "b"));
+
+        verify(dispatcher, times(2)).send(any(), any(), payloads.capture());
+        assertSame(payloads.getAllValues().get(0), payloads.getAllValues().get(1));
+        assertTrue(payloads.getValue().asString().contains("\"payload\":{\"a\":\"b\"}"));
+    }
+
+    @Test
+    void testRoutingTableIsImmutable() {
+        Map<WebhookEventType, List<WebhookService.Route>> routes = ws.getRoutes();
+        assertEquals(1, routes.get(WebhookEventType.PARTNER_ADD).size());
+        assertThrows(UnsupportedOperationException.class, () -> routes.remove(WebhookEventType.ALL));
+        assertThrows(UnsupportedOperationException.class,
+                () -> routes.get(WebhookEventType.ALL).add(routes.get(WebhookEventType.PARTNER_ADD).get(0)));
+    }
+
+    @Test
+    void testDeleteReloadsAndAnnouncesChange() {
+        ws.getRoutes();
+        when(repo.findAll()).thenReturn(List.of(
+                hook(allHook, "https://b.test", WebhookEventType.ALL)));
+
+        ws.deleteRegisteredWebhook(partnerHook);
+
+        assertNull(ws.getRoutes().get(WebhookEventType.PARTNER_ADD));
+        verify(publisher).publishEvent(any(WebhookService.RoutesChangedEvent.class));
+    }
+
+    @Test
+    void testUpdateWithoutSecretKeepsTheCurrentSecret() {
+        BPAWebhook existing = hook(allHook, "https://b.test", WebhookEventType.ALL);
+        existing.getWebhook().setSigningSecret("secret");
+        when(repo.findById(allHook)).thenReturn(Optional.of(existing));
+        when(repo.update(any(BPAWebhook.class))).thenAnswer(i -> i.getArgument(0));
+
+        ws.updateRegisteredWebhook(allHook, RegisteredWebhook.builder()
+                .url("https://c.test").registeredEvent(List.of(WebhookEventType.ALL)).build());
+
+        ArgumentCaptor<BPAWebhook> updated = ArgumentCaptor.forClass(BPAWebhook.class);
+        verify(repo).update(updated.capture());
+        assertEquals("https://c.test", updated.getValue().getWebhook().getUrl());
+        assertEquals("secret", updated.getValue().getWebhook().getSigningSecret());
+    }
+
+    private BPAWebhook hook(UUID id, String url, WebhookEventType... types) {
+        RegisteredWebhook rh = RegisteredWebhook.builder().url(url).registeredEvent(List.of(types)).build();
+        return BPAWebhook.builder().id(id).webhook(rh).build();
+    }
+}
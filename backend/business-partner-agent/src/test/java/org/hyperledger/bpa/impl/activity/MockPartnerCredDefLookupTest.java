@@ -33,13 +33,13 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
-import static org.mockito.ArgumentMatchers.anyString;
-import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.*;
 
 @MicronautTest
 @ExtendWith(MockitoExtension.class)
@@ -87,19 +87,21 @@ class MockPartnerCredDefLookupTest {
                 .connectionId(did2)
                 .build());
 
-        when(schemaRepo.findAll()).thenReturn(List.of(
+        when(schemaRepo.findByType(CredentialType.INDY)).thenReturn(List.of(
                 BPASchema.builder().seqNo(1077).type(CredentialType.INDY).build(),
                 BPASchema.builder().seqNo(977).type(CredentialType.INDY).build(),
                 BPASchema.builder().seqNo(9999).type(CredentialType.INDY).build()));
 
-        when(ledger.queryCredentialDefinitions(anyString()))
+        when(ledger.queryCredentialDefinitions("1077"))
                 .thenReturn(Optional.of(List.of(
                         PartnerCredentialType.fromCredDefId("did-1:3:CL:1077:commercial register entry"),
                         PartnerCredentialType.fromCredDefId("did-1:3:CL:1077:commereg test"),
-                        PartnerCredentialType.fromCredDefId("other:3:CL:1077:commreg"))))
+                        PartnerCredentialType.fromCredDefId("other:3:CL:1077:commreg"))));
+        when(ledger.queryCredentialDefinitions("977"))
                 .thenReturn(Optional.of(List.of(
                         PartnerCredentialType.fromCredDefId("did-1:3:CL:977:bank"),
-                        PartnerCredentialType.fromCredDefId("did-2:3:CL:977:my-bank"))))
+                        PartnerCredentialType.fromCredDefId("did-2:3:CL:977:my-bank"))));
+        when(ledger.queryCredentialDefinitions("9999"))
                 .thenReturn(Optional.empty());
 
         lookup.lookupTypesForAllPartners();
@@ -117,4 +119,63 @@ class MockPartnerCredDefLookupTest {
         partners = pRepo.findBySupportedCredential("9999");
         assertEquals(0, partners.size());
     }
+
+    @Test
+    void testLookupForPartnerKeepsTypesOfOtherPartners() {
+        String did1 = "did-11";
+        String did2 = "did-12";
+
+        pRepo.save(Partner.builder().ariesSupport(Boolean.TRUE).did(did1).connectionId(did1).build());
+        pRepo.save(Partner.builder().ariesSupport(Boolean.TRUE).did(did2).connectionId(did2).build());
+
+        when(schemaRepo.findByType(CredentialType.INDY)).thenReturn(List.of(
+                BPASchema.builder().seqNo(2077).type(CredentialType.INDY).build()));
+        when(ledger.queryCredentialDefinitions("2077"))
+                .thenReturn(Optional.of(List.of(
+                        PartnerCredentialType.fromCredDefId("did-11:3:CL:2077:first"))));
+
+        lookup.lookupTypesForAllPartners();
+        assertEquals(List.of(did1), pRepo.findBySupportedCredential("2077").stream().map(Partner::getDid).toList());
+
+        // only the new partner is looked up, types of other schemas or other partners
+        // are ignored
+        when(ledger.queryCredentialDefinitions(did2))
+                .thenReturn(Optional.of(List.of(
+                        PartnerCredentialType.fromCredDefId("did-12:3:CL:2077:second"),
+                        PartnerCredentialType.fromCredDefId("did-12:3:CL:3000:unknown schema"),
+                        PartnerCredentialType.fromCredDefId("did-11:3:CL:2077:not mine"))));
+
+        lookup.lookupTypesForPartner(did2);
+
+        List<String> issuers = pRepo.findBySupportedCredential("2077").stream().map(Partner::getDid).toList();
+        assertEquals(2, issuers.size());
+        assertTrue(issuers.containsAll(List.of(did1, did2)));
+        assertEquals(0, pRepo.findBySupportedCredential("3000").size());
+        verify(ledger, never()).queryCredentialDefinitions(did1);
+    }
+
+    @Test
+    void testLookupForNewSchemasKeepsTypesOfScannedSchemas() {
+        String did = "did-21";
+        pRepo.save(Partner.builder().ariesSupport(Boolean.TRUE).did(did).connectionId(did).build());
+
+        BPASchema scanned = BPASchema.builder().seqNo(4077).type(CredentialType.INDY).build();
+        when(schemaRepo.findByType(CredentialType.INDY)).thenReturn(List.of(scanned));
+        when(ledger.queryCredentialDefinitions("4077"))
+                .thenReturn(Optional.of(List.of(PartnerCredentialType.fromCredDefId("did-21:3:CL:4077:old"))));
+        lookup.lookupTypesForAllPartners();
+
+        scanned.setLedgerScannedAt(Instant.now());
+        when(schemaRepo.findByType(CredentialType.INDY)).thenReturn(List.of(
+                scanned,
+                BPASchema.builder().seqNo(5077).type(CredentialType.INDY).build()));
+        when(ledger.queryCredentialDefinitions("5077"))
+                .thenReturn(Optional.of(List.of(PartnerCredentialType.fromCredDefId("did-21:3:CL:5077:new"))));
+
+        lookup.lookupTypesForNewSchemas();
+
+        verify(ledger, times(1)).queryCredentialDefinitions("4077");
+        assertEquals(1, pRepo.findBySupportedCredential("4077").size());
+        assertEquals(1, pRepo.findBySupportedCredential("5077").size());
+    }
 }
@@ -17,16 +17,116 @@
  */
 package org.hyperledger.bpa.impl.activity;
 
+import org.hyperledger.aries.api.jsonld.VerifiableCredential.VerifiableIndyCredential;
+import org.hyperledger.aries.api.jsonld.VerifiablePresentation;
 import org.hyperledger.aries.api.resolver.DIDDocument;
 import org.hyperledger.bpa.BaseTest;
+import org.hyperledger.bpa.api.PartnerAPI;
+import org.hyperledger.bpa.client.DidDocClient;
+import org.hyperledger.bpa.impl.aries.jsonld.SignVerifyLD;
+import org.hyperledger.bpa.impl.util.Converter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.time.Duration;
 import java.util.Optional;
+import java.util.concurrent.Executors;
 
-import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
 
 class PartnerLookupTest extends BaseTest {
 
+    private static final String DID = "did:web:localhost:8020";
+
+    private PartnerLookup lookup;
+
+    @BeforeEach
+    void setup() throws Exception {
+        DIDDocument didDoc = loadAndConvertTo("files/didLocal.json", DIDDocument.class);
+        didDoc.getService().get(0).setType("profile");
+        VerifiablePresentation<VerifiableIndyCredential> vp = loadAndConvertTo(
+                "files/verifiablePresentation.json", Converter.VP_TYPEREF);
+
+        lookup = new PartnerLookup();
+        lookup.ur = mock(DidDocClient.class);
+        lookup.crypto = mock(SignVerifyLD.class);
+        lookup.converter = mock(Converter.class);
+        lookup.executor = Executors.newSingleThreadExecutor();
+        lookup.profileRefresh = Duration.ofMinutes(3);
+        lookup.expireAfter = Duration.ofHours(1);
+        lookup.maximumSize = 100L;
+
+        when(lookup.ur.getDidDocument(DID)).thenReturn(Optional.of(didDoc));
+        when(lookup.ur.getPublicProfile("https://localhost:8020/profile.jsonld")).thenReturn(Optional.of(vp));
+        when(lookup.converter.toAPIObject(vp))
+                .thenAnswer(i -> PartnerAPI.builder().verifiablePresentation(vp).build());
+        when(lookup.crypto.verify(anyString(), any())).thenReturn(Boolean.TRUE);
+    }
+
+    @AfterEach
+    void shutdown() {
+        lookup.executor.shutdownNow();
+    }
+
+    @Test
+    void testVerificationIsCachedByPresentation() {
+        assertTrue(lookup.lookupPartner(DID).getValid());
+        lookup.invalidate(DID);
+        PartnerAPI partner = lookup.lookupPartner(DID);
+
+        assertTrue(partner.getValid());
+        verify(lookup.ur, times(2)).getPublicProfile(anyString());
+        verify(lookup.crypto, times(1)).verify(anyString(), any());
+    }
+
+    @Test
+    void testPendingLookupDoesNotVerify() {
+        PartnerAPI pending = lookup.lookupPartnerPending(DID);
+        assertNull(pending.getValid());
+        assertNotNull(pending.getDidDocAPI());
+        verify(lookup.crypto, never()).verify(anyString(), any());
+
+        assertTrue(lookup.verify(pending).blockingGet());
+        verify(lookup.crypto, times(1)).verify(anyString(), any());
+        assertTrue(lookup.lookupPartnerPending(DID).getValid());
+        assertNull(pending.getValid());
+    }
+
+    @Test
+    void testChangedPresentationIsVerifiedAgain() throws Exception {
+        PartnerAPI partner = lookup.lookupPartner(DID);
+        assertTrue(partner.getValid());
+
+        VerifiablePresentation<VerifiableIndyCredential> tampered = loadAndConvertTo(
+                "files/verifiablePresentation.json", Converter.VP_TYPEREF);
+        tampered.getVerifiableCredential().remove(0);
+        when(lookup.crypto.verify(anyString(), eq(tampered))).thenReturn(Boolean.FALSE);
+        partner.setVerifiablePresentation(tampered);
+
+        assertFalse(lookup.verify(partner).blockingGet());
+        verify(lookup.crypto, times(2)).verify(anyString(), any());
+    }
+
+    @Test
+    void testAsyncLookup() {
+        PartnerAPI partner = lookup.lookupPartnerAsync(DID).blockingGet();
+        assertTrue(partner.getValid());
+        assertEquals("D2k3NWUDbWWZABrdNSfZvXeJDZX5FWBkMCBpVuN8NzTm", PartnerLookup.matchKey(null,
+                partner.getDidDocAPI().getVerificationMethod()).orElseThrow());
+        verify(lookup.crypto, times(1)).verify(anyString(), any());
+    }
+
+    @Test
+    void testProfileWithoutKeysIsNotVerified() {
+        PartnerAPI partner = PartnerAPI.builder().did(DID).build();
+        assertNull(lookup.verify(partner).blockingGet());
+        verify(lookup.crypto, never()).verify(anyString(), any());
+    }
+
     @Test
     void testResolvePublicKeyNoKeyId() throws Exception {
         DIDDocument didDoc = loadAndConvertTo("files/didLocal.json", DIDDocument.class);
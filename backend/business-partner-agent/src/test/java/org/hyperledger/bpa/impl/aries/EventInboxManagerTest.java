@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2020-2022 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.impl.aries;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.hyperledger.bpa.persistence.model.AriesEventInbox;
+import org.hyperledger.bpa.persistence.repository.AriesEventInboxRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class EventInboxManagerTest {
+
+    private final AriesEventInboxRepository repo = mock(AriesEventInboxRepository.class);
+
+    private final AriesEventHandler handler = mock(AriesEventHandler.class);
+
+    private EventInboxManager inbox;
+
+    @BeforeEach
+    void setup() {
+        inbox = new EventInboxManager(2);
+        inbox.inboxRepo = repo;
+        inbox.handlers = List.of(handler);
+        inbox.mapper = new ObjectMapper();
+        inbox.batcher = new StateChangeBatcher();
+        inbox.batchSize = 10;
+        inbox.maxEventsPerKey = 50;
+        inbox.maxAttempts = 3;
+        inbox.retryBackoff = Duration.ofMillis(1);
+        inbox.claimTimeout = Duration.ofMinutes(5);
+        when(repo.renewClaim(any(), anyString(), any())).thenReturn(1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        inbox.shutdown();
+    }
+
+    @Test
+    void testResolveKey() {
+        assertEquals("c1", inbox.resolveKey(event("connections", "{\"connection_id\":\"c1\"}")));
+        assertEquals("cx1", inbox.resolveKey(
+                event("issue_credential_v2_0", "{\"connection_id\":\"c1\",\"cred_ex_id\":\"cx1\"}")));
+        assertEquals("p1", inbox.resolveKey(
+                event("present_proof", "{\"connection_id\":\"c1\",\"presentation_exchange_id\":\"p1\"}")));
+        assertEquals("ping", inbox.resolveKey(event("ping", "{\"thread_id\":\"t1\"}")));
+        assertEquals("ping", inbox.resolveKey(event("ping", "no json")));
+    }
+
+    @Test
+    void testProcessDeletesHandledEvent() {
+        AriesEventInbox e = event("connections", "{}");
+        inbox.process(e);
+
+        verify(handler, times(1)).handleEventOrThrow("connections", "{}");
+        verify(repo, times(1)).deleteById(e.getId());
+        verify(repo, never()).updateStateAndAttemptsAndLastError(any(), any(), any(), any());
+    }
+
+    @Test
+    void testProcessRetriesAndRecovers() {
+        AriesEventInbox e = event("connections", "{}");
+        doThrow(new IllegalStateException("db down")).doNothing()
+                .when(handler).handleEventOrThrow(anyString(), anyString());
+
+        inbox.process(e);
+
+        verify(handler, times(2)).handleEventOrThrow("connections", "{}");
+        verify(repo, times(1)).updateAttemptsAndLastError(e.getId(), 1, "db down");
+        verify(repo, times(1)).deleteById(e.getId());
+    }
+
+    @Test
+    void testProcessDeadLettersEvent() {
+        AriesEventInbox e = event("connections", "{}");
+        doThrow(new IllegalStateException("broken"))
+                .when(handler).handleEventOrThrow(anyString(), anyString());
+
+        inbox.process(e);
+
+        verify(handler, times(3)).handleEventOrThrow("connections", "{}");
+        verify(repo, never()).deleteById(any());
+        verify(repo, times(1)).updateStateAndAttemptsAndLastError(
+                e.getId(), AriesEventInbox.InboxState.DEAD_LETTER, 3, "broken");
+    }
+
+    @Test
+    void testProcessSkipsEventWithExpiredClaim() {
+        AriesEventInbox e = event("connections", "{}");
+        when(repo.renewClaim(eq(e.getId()), anyString(), any())).thenReturn(0);
+
+        inbox.process(e);
+
+        verify(handler, never()).handleEventOrThrow(anyString(), anyString());
+        verify(repo, never()).deleteById(any());
+    }
+
+    @Test
+    void testPollOnlyClaimsIdleWorkers() {
+        AriesEventInbox c1 = event("connections", "{\"connection_id\":\"c1\"}", "c1");
+        AriesEventInbox c2 = event("connections", "{\"connection_id\":\"c2\"}", "c2");
+        when(repo.claim(anyString(), any(), eq(2))).thenReturn(2).thenReturn(0);
+        when(repo.findByClaimedByOrderByCreatedAt(anyString())).thenReturn(List.of(c1, c2));
+
+        inbox.poll();
+
+        verify(repo, timeout(1000).times(1)).deleteById(c1.getId());
+        verify(repo, timeout(1000).times(1)).deleteById(c2.getId());
+        verify(handler, times(2)).handleEventOrThrow(anyString(), anyString());
+        // polled again when the workers are idle
+        verify(repo, timeout(1000).times(2)).claim(anyString(), any(), eq(2));
+        assertEquals(0, inbox.getInFlight());
+    }
+
+    @Test
+    void testEventsOfAKeyAreHandledTogether() {
+        AriesEventInbox first = event("connections", "{\"connection_id\":\"c1\"}", "c1");
+        AriesEventInbox second = event("connections", "{\"connection_id\":\"c1\"}", "c1");
+        AriesEventInbox other = event("connections", "{\"connection_id\":\"c2\"}", "c2");
+        when(repo.claim(anyString(), any(), eq(2))).thenReturn(2).thenReturn(0);
+        when(repo.findByClaimedByOrderByCreatedAt(anyString())).thenReturn(List.of(first, other, second));
+
+        inbox.poll();
+
+        verify(repo).claimFollowers(anyString(), any(), eq(50));
+        verify(repo, timeout(1000)).deleteByIdIn(List.of(first.getId(), second.getId()));
+        verify(repo, timeout(1000)).deleteById(other.getId());
+        verify(repo, never()).deleteById(first.getId());
+        verify(handler, times(3)).handleEventOrThrow(anyString(), anyString());
+    }
+
+    @Test
+    void testFailedBatchIsHandledOneByOne() {
+        AriesEventInbox first = event("connections", "{}", "c1");
+        AriesEventInbox second = event("connections", "{}", "c1");
+        doThrow(new IllegalStateException("db down")).doNothing()
+                .when(handler).handleEventOrThrow(anyString(), anyString());
+
+        inbox.process("c1", List.of(first, second));
+
+        verify(repo, never()).deleteByIdIn(any());
+        verify(repo).deleteById(first.getId());
+        verify(repo).deleteById(second.getId());
+        verify(handler, times(3)).handleEventOrThrow(anyString(), anyString());
+    }
+
+    @Test
+    void testPollWithoutCapacity() {
+        inbox.batchSize = 0;
+
+        inbox.poll();
+
+        verify(repo, never()).claim(anyString(), any(), anyInt());
+    }
+
+    private static AriesEventInbox event(String type, String body) {
+        return event(type, body, type);
+    }
+
+    private static AriesEventInbox event(String type, String body, String key) {
+        return AriesEventInbox.builder()
+                .id(UUID.randomUUID())
+                .eventType(type)
+                .eventBody(body)
+                .orderingKey(key)
+                .claimedBy("test")
+                .state(AriesEventInbox.InboxState.PROCESSING)
+                .build();
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2020-2022 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.impl.aries;
+
+import org.hyperledger.aries.api.connection.ConnectionState;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StateChangeBatcherTest {
+
+    private final StateChangeBatcher batcher = new StateChangeBatcher();
+
+    private final List<List<StateChangeBatcher.StateChange<ConnectionState, String>>> written = new ArrayList<>();
+
+    @Test
+    void testChangesOfAnExchangeAreWrittenOnce() {
+        batcher.submit("c1", change(ConnectionState.REQUEST, "1"), written::add);
+        batcher.submit("c1", change(ConnectionState.RESPONSE, "2"), written::add);
+        batcher.submit("c2", change(ConnectionState.ACTIVE, "3"), written::add);
+        assertEquals(0, written.size());
+        assertEquals(2, batcher.getPendingSize());
+
+        batcher.flush("c1");
+        batcher.flush("c1");
+        batcher.flush(null);
+
+        assertEquals(1, written.size());
+        assertEquals(List.of(ConnectionState.REQUEST, ConnectionState.RESPONSE),
+                written.get(0).stream().map(StateChangeBatcher.StateChange::state).toList());
+        assertEquals("2", written.get(0).get(1).event());
+        assertEquals(1, batcher.getPendingSize());
+    }
+
+    @Test
+    void testWriteErrorsAreThrown() {
+        batcher.submit("c1", change(ConnectionState.REQUEST, "1"), changes -> {
+            throw new IllegalStateException("db down");
+        });
+
+        assertThrows(IllegalStateException.class, () -> batcher.flush("c1"));
+        assertEquals(0, batcher.getPendingSize());
+    }
+
+    @Test
+    void testDiscardDropsPendingChanges() {
+        batcher.submit("c1", change(ConnectionState.REQUEST, "1"), written::add);
+        batcher.discard("c1");
+        batcher.flush("c1");
+
+        assertEquals(0, written.size());
+        assertEquals(0, batcher.getPendingSize());
+    }
+
+    @Test
+    void testChangesOfCollectedEventsAreWrittenOnce() {
+        batcher.collect("c1", () -> {
+            batcher.submit("c1", change(ConnectionState.REQUEST, "1"), written::add);
+            batcher.release("c1");
+            batcher.submit("c1", change(ConnectionState.RESPONSE, "2"), written::add);
+            batcher.release("c1");
+            assertEquals(0, written.size());
+        });
+
+        assertEquals(1, written.size());
+        assertEquals(2, written.get(0).size());
+        assertEquals(0, batcher.getPendingSize());
+
+        // released right away outside of a collect
+        batcher.submit("c1", change(ConnectionState.ACTIVE, "3"), written::add);
+        batcher.release("c1");
+        assertEquals(2, written.size());
+    }
+
+    @Test
+    void testFailedCollectDropsChanges() {
+        assertThrows(IllegalStateException.class, () -> batcher.collect("c1", () -> {
+            batcher.submit("c1", change(ConnectionState.REQUEST, "1"), written::add);
+            throw new IllegalStateException("broken");
+        }));
+
+        assertEquals(0, written.size());
+        assertEquals(0, batcher.getPendingSize());
+    }
+
+    private static StateChangeBatcher.StateChange<ConnectionState, String> change(ConnectionState s, String event) {
+        return new StateChangeBatcher.StateChange<>(s, Instant.now(), event);
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2020-2022 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.impl.aries;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StripedEventDispatcherTest {
+
+    private static final int KEYS = 20;
+    private static final int EVENTS_PER_KEY = 50;
+
+    private StripedEventDispatcher dispatcher;
+
+    @BeforeEach
+    void setup() {
+        dispatcher = new StripedEventDispatcher(4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        dispatcher.shutdown();
+    }
+
+    @Test
+    void testEventsWithSameKeyAreHandledInOrder() {
+        Map<String, List<Integer>> handled = new ConcurrentHashMap<>();
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+
+        for (int event = 0; event < EVENTS_PER_KEY; event++) {
+            for (int key = 0; key < KEYS; key++) {
+                final String k = "exchange-" + key;
+                final int e = event;
+                futures.add(dispatcher.submit(k, () -> {
+                    sleepRandom();
+                    handled.computeIfAbsent(k, x -> Collections.synchronizedList(new ArrayList<>())).add(e);
+                }));
+            }
+        }
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+
+        assertEquals(KEYS, handled.size());
+        List<Integer> expected = IntStream.range(0, EVENTS_PER_KEY).boxed().toList();
+        handled.forEach((k, v) -> assertEquals(expected, v, "Events out of order for " + k));
+    }
+
+    @Test
+    void testEventsWithDifferentKeysRunInParallel() throws Exception {
+        String a = "a";
+        String b = IntStream.range(0, 100).mapToObj(i -> "b" + i)
+                .filter(k -> dispatcher.stripeFor(k) != dispatcher.stripeFor(a))
+                .findFirst()
+                .orElseThrow();
+
+        CountDownLatch latch = new CountDownLatch(1);
+        CompletableFuture<Void> waiting = dispatcher.submit(a, () -> {
+            try {
+                assertTrue(latch.await(5, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        // would block forever if both keys shared the same thread
+        dispatcher.dispatch(b, latch::countDown);
+        waiting.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void testDispatchBlocksAndRethrows() {
+        List<String> result = new ArrayList<>();
+        dispatcher.dispatch("x", () -> result.add("done"));
+        assertEquals(List.of("done"), result);
+
+        assertThrows(IllegalStateException.class, () -> dispatcher.dispatch("x", () -> {
+            throw new IllegalStateException("failed");
+        }));
+    }
+
+    @Test
+    void testNestedDispatchOnSameStripe() {
+        List<String> result = new ArrayList<>();
+        dispatcher.dispatch("x", () -> dispatcher.dispatch("x", () -> result.add("nested")));
+        assertEquals(List.of("nested"), result);
+    }
+
+    @Test
+    void testNestedDispatchToOtherStripeIsRejected() {
+        String b = IntStream.range(0, 100).mapToObj(i -> "b" + i)
+                .filter(k -> dispatcher.stripeFor(k) != dispatcher.stripeFor("x"))
+                .findFirst()
+                .orElseThrow();
+        assertThrows(IllegalStateException.class,
+                () -> dispatcher.dispatch("x", () -> dispatcher.dispatch(b, () -> {
+                })));
+    }
+
+    @Test
+    void testStripesOfOtherDispatchersAreIgnored() {
+        StripedEventDispatcher other = new StripedEventDispatcher(4, "other-");
+        try {
+            // same stripe index, but another dispatcher, so the event is queued on its own
+            // thread
+            List<String> threads = Collections.synchronizedList(new ArrayList<>());
+            other.submit("x", () -> dispatcher.dispatch("x", () -> threads.add(Thread.currentThread().getName())))
+                    .join();
+            assertTrue(threads.get(0).startsWith("bpa-event-"), threads.toString());
+        } finally {
+            other.shutdown();
+        }
+    }
+
+    @Test
+    void testNullKeyAndInvalidConfig() {
+        assertEquals(0, dispatcher.stripeFor(null));
+        assertThrows(IllegalArgumentException.class, () -> new StripedEventDispatcher(0));
+    }
+
+    private static void sleepRandom() {
+        try {
+            TimeUnit.MICROSECONDS.sleep(ThreadLocalRandom.current().nextInt(500));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -20,6 +20,7 @@ package org.hyperledger.bpa.impl.aries.connection;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
+import org.hyperledger.bpa.client.HttpClients;
 import org.hyperledger.bpa.controller.api.invitation.CheckInvitationResponse;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
@@ -37,7 +38,7 @@ public class InvitationParserTest {
 
     @BeforeEach
     void init() throws Exception {
-        p = new InvitationParser();
+        p = new InvitationParser(HttpClients.withDefaults());
         p.setMapper(new ObjectMapper());
 
         mockWebServer = new MockWebServer();
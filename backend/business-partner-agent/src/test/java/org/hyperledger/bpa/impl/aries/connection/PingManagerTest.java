@@ -20,21 +20,29 @@ package org.hyperledger.bpa.impl.aries.connection;
 import lombok.NonNull;
 import org.hyperledger.aries.AriesClient;
 import org.hyperledger.aries.api.connection.ConnectionState;
+import org.hyperledger.aries.api.exception.AriesException;
 import org.hyperledger.aries.api.trustping.PingEvent;
 import org.hyperledger.aries.api.trustping.PingEventState;
 import org.hyperledger.aries.api.trustping.PingRequest;
 import org.hyperledger.aries.api.trustping.PingResponse;
 import org.hyperledger.bpa.persistence.model.Partner;
+import org.hyperledger.bpa.persistence.model.TrustPing;
 import org.hyperledger.bpa.persistence.repository.PartnerRepository;
+import org.hyperledger.bpa.persistence.repository.TrustPingRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.io.IOException;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.*;
@@ -49,66 +57,102 @@ class PingManagerTest {
     @Mock
     private PartnerRepository repo;
 
+    @Mock
+    private TrustPingRepository pings;
+
     @InjectMocks
     private PingManager ping;
 
+    @BeforeEach
+    void setup() {
+        ping.concurrency = 2;
+        ping.rate = 1000;
+        ping.spread = Duration.ofMillis(10);
+        ping.stalePageSize = 2;
+        ping.staleDeleteConcurrency = 2;
+    }
+
+    @AfterEach
+    void tearDown() {
+        ping.shutdown();
+    }
+
     @Test
     void testHappyFlow() throws Exception {
-        ping.checkConnections();
-
         when(repo.findByStateInAndTrustPingTrueAndAriesSupportTrue(PingManager.statesToFilter))
                 .thenReturn(List.of(
                         createPartner("1"),
                         createPartner("2")));
-
         when(aries.connectionsSendPing(anyString(), any(PingRequest.class)))
-                .thenReturn(Optional.of(new PingResponse("a")))
-                .thenReturn(Optional.of(new PingResponse("b")))
-                .thenReturn(Optional.of(new PingResponse("a")))
-                .thenReturn(Optional.of(new PingResponse("b")))
-                .thenReturn(Optional.of(new PingResponse("a")))
-                .thenReturn(Optional.of(new PingResponse("b")));
+                .thenAnswer(inv -> Optional.of(new PingResponse("1".equals(inv.getArgument(0)) ? "a" : "b")));
+
+        ping.checkConnections();
+
+        verify(pings, times(1)).recordSent(eq("a"), eq("1"), any(Instant.class));
+        verify(pings, times(1)).recordSent(eq("b"), eq("2"), any(Instant.class));
+        verify(repo, never()).updatePingResults(any(), any(), any(), any(), any());
 
+        // responses can be received by any instance
         ping.handlePingEvent(PingEvent.of("a", PingEventState.RESPONSE_RECEIVED));
-        assertEquals(1, ping.getReceivedSize());
+        ping.handlePingEvent(PingEvent.of("comment", PingEventState.RECEIVED));
+        verify(pings, times(1)).recordResponse("a");
+        verify(pings, never()).recordResponse("comment");
+
+        when(pings.findBySentAtLessThan(any(Instant.class))).thenReturn(List.of(
+                createPing("a", "1", Instant.now()),
+                createPing("b", "2", null)));
 
         ping.checkConnections();
 
-        verify(repo, times(2)).findByStateInAndTrustPingTrueAndAriesSupportTrue(PingManager.statesToFilter);
-        verify(repo, never()).updateStateByConnectionId(anyString(), any(ConnectionState.class));
-        verify(repo, never()).updateStateAndLastSeenByConnectionId(any(), any(), any());
+        verify(repo, times(1)).updatePingResults(eq(Set.of("1", "2")), eq(Set.of("1")),
+                eq(ConnectionState.PING_RESPONSE), eq(ConnectionState.PING_NO_RESPONSE),
+                argThat(a -> !a.isAfter(Instant.now())));
+        verify(pings, times(1)).deleteByThreadIdIn(List.of("a", "b"));
+    }
 
-        assertEquals(2, ping.getSentSize());
-        assertEquals(0, ping.getReceivedSize());
+    @Test
+    void testUnrecordedResponsesAreDropped() throws Exception {
+        when(repo.findByStateInAndTrustPingTrueAndAriesSupportTrue(PingManager.statesToFilter))
+                .thenReturn(List.of(createPartner("1")));
+        when(pings.findBySentAtLessThan(any(Instant.class))).thenReturn(List.of(
+                createPing("x", null, Instant.now())));
 
         ping.checkConnections();
 
-        verify(repo, times(3)).findByStateInAndTrustPingTrueAndAriesSupportTrue(PingManager.statesToFilter);
-        verify(repo, times(1)).updateStateByConnectionId("1", ConnectionState.PING_NO_RESPONSE);
-        verify(repo, times(1)).updateStateByConnectionId("2", ConnectionState.PING_NO_RESPONSE);
-        verify(repo, never()).updateStateAndLastSeenByConnectionId(any(), any(), any());
+        verify(pings, times(1)).deleteByThreadIdIn(List.of("x"));
+        verify(repo, never()).updatePingResults(any(), any(), any(), any(), any());
+    }
 
-        assertEquals(2, ping.getSentSize());
-        assertEquals(0, ping.getReceivedSize());
+    @Test
+    void testMissingConnectionIsRecordedAsUnanswered() throws Exception {
+        when(repo.findByStateInAndTrustPingTrueAndAriesSupportTrue(PingManager.statesToFilter))
+                .thenReturn(List.of(
+                        createPartner("1"),
+                        createPartner("2")));
+        when(aries.connectionsSendPing(eq("1"), any(PingRequest.class)))
+                .thenReturn(Optional.of(new PingResponse("a")));
+        when(aries.connectionsSendPing(eq("2"), any(PingRequest.class)))
+                .thenThrow(new AriesException(404, "not found"));
 
-        ping.handlePingEvent(PingEvent.of("a", PingEventState.RESPONSE_RECEIVED));
-        ping.handlePingEvent(PingEvent.of("b", PingEventState.RESPONSE_RECEIVED));
-        ping.handlePingEvent(PingEvent.of("comment", PingEventState.RECEIVED));
+        ping.checkConnections();
 
-        assertEquals(2, ping.getReceivedSize());
+        verify(pings, times(1)).recordSent(eq("a"), eq("1"), any(Instant.class));
+        verify(pings, times(1)).recordSent(argThat(t -> !"a".equals(t)), eq("2"), any(Instant.class));
+    }
 
-        ping.checkConnections();
+    @Test
+    void testAcaPyNotAvailable() throws Exception {
+        when(repo.findByStateInAndTrustPingTrueAndAriesSupportTrue(PingManager.statesToFilter))
+                .thenReturn(List.of(
+                        createPartner("1"),
+                        createPartner("2")));
+        when(aries.connectionsSendPing(anyString(), any(PingRequest.class)))
+                .thenThrow(new IOException("connection refused"));
 
-        verify(repo, times(1)).updateStateAndLastSeenByConnectionId(
-                argThat(a -> a.equals("1")),
-                argThat(a -> a.equals(ConnectionState.PING_RESPONSE)),
-                argThat(a -> a.isBefore(Instant.now())));
-        verify(repo, times(1)).updateStateAndLastSeenByConnectionId(
-                argThat(a -> a.equals("2")),
-                argThat(a -> a.equals(ConnectionState.PING_RESPONSE)),
-                argThat(a -> a.isBefore(Instant.now())));
+        ping.checkConnections();
 
-        assertEquals(2, ping.getSentSize());
+        verify(aries, times(1)).connectionsSendPing(anyString(), any(PingRequest.class));
+        verify(pings, never()).recordSent(anyString(), anyString(), any(Instant.class));
     }
 
     @Test
@@ -120,25 +164,27 @@ class PingManagerTest {
 
         ping.checkConnections();
         verify(repo, never()).updateStateByConnectionId(anyString(), any(ConnectionState.class));
-
-        assertEquals(0, ping.getSentSize());
+        verify(repo, never()).updatePingResults(any(), any(), any(), any(), any());
     }
 
     @Test
     void testRemoveStale() throws Exception {
         when(aries.connectionIds()).thenReturn(List.of("1", "2", "3"));
-        when(repo.findAll()).thenReturn(List.of(Partner.builder().connectionId("1").build()));
+        when(repo.findConnectionIds()).thenReturn(List.of("1"));
 
         ping.deleteStaleConnections();
 
         verify(aries, times(1)).connectionsRemove("2");
         verify(aries, times(1)).connectionsRemove("3");
+        assertEquals(3, ping.getLastReconciliation().scanned());
+        assertEquals(2, ping.getLastReconciliation().removed());
+        assertEquals(0, ping.getLastReconciliation().failed());
     }
 
     @Test
     void testRemoveStaleOnlyBpa() throws Exception {
         when(aries.connectionIds()).thenReturn(List.of());
-        when(repo.findAll()).thenReturn(List.of(Partner.builder().connectionId("1").build()));
+        when(repo.findConnectionIds()).thenReturn(List.of("1"));
 
         ping.deleteStaleConnections();
 
@@ -148,7 +194,7 @@ class PingManagerTest {
     @Test
     void testRemoveStaleBothEmpty() throws Exception {
         when(aries.connectionIds()).thenReturn(List.of());
-        when(repo.findAll()).thenReturn(List.of());
+        when(repo.findConnectionIds()).thenReturn(List.of());
 
         ping.deleteStaleConnections();
 
@@ -158,15 +204,38 @@ class PingManagerTest {
     @Test
     void testRemoveStaleBothSame() throws Exception {
         when(aries.connectionIds()).thenReturn(List.of("1", "2"));
-        when(repo.findAll()).thenReturn(List.of(
-                Partner.builder().connectionId("1").build(),
-                Partner.builder().connectionId("2").build()));
+        when(repo.findConnectionIds()).thenReturn(List.of("1", "2"));
 
         ping.deleteStaleConnections();
 
         verify(aries, never()).connectionsRemove(anyString());
     }
 
+    @Test
+    void testRemoveStaleCountsFailures() throws Exception {
+        when(aries.connectionIds()).thenReturn(List.of("1", "2", "3", "4", "5"));
+        when(repo.findConnectionIds()).thenReturn(List.of("1", "4"));
+        lenient().doThrow(new AriesException(500, "error")).when(aries).connectionsRemove("3");
+
+        ping.deleteStaleConnections();
+
+        verify(aries, times(1)).connectionsRemove("2");
+        verify(aries, times(1)).connectionsRemove("3");
+        verify(aries, times(1)).connectionsRemove("5");
+        assertEquals(5, ping.getLastReconciliation().scanned());
+        assertEquals(2, ping.getLastReconciliation().removed());
+        assertEquals(1, ping.getLastReconciliation().failed());
+    }
+
+    private TrustPing createPing(@NonNull String threadId, String connectionId, Instant respondedAt) {
+        return TrustPing.builder()
+                .threadId(threadId)
+                .connectionId(connectionId)
+                .sentAt(Instant.now().minusSeconds(60))
+                .respondedAt(respondedAt)
+                .build();
+    }
+
     private Partner createPartner(@NonNull String connectionId) {
         return Partner.builder()
                 .connectionId(connectionId)
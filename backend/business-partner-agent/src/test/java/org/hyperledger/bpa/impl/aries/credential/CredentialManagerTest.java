@@ -41,9 +41,6 @@ class CredentialManagerTest extends BaseTest {
     @Inject
     PartnerRepository partnerRepo;
 
-    @Inject
-    Converter conv;
-
     @Test
     void testResolveIssuerDidOnly() {
         Partner p = partnerRepo.save(Partner
@@ -78,7 +75,7 @@ class CredentialManagerTest extends BaseTest {
                 .builder()
                 .did(DID)
                 .ariesSupport(Boolean.TRUE)
-                .verifiablePresentation(conv.toMap(vp))
+                .verifiablePresentation(vp)
                 .build());
 
         String iss = mgmt.resolveIssuer(p);
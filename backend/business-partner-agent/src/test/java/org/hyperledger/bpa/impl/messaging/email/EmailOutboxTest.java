@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2020-2022 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.impl.messaging.email;
+
+import io.micronaut.data.model.Pageable;
+import org.hyperledger.bpa.persistence.model.messaging.MailOutbox;
+import org.hyperledger.bpa.persistence.repository.messaging.MailOutboxRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class EmailOutboxTest {
+
+    private final EmailService emailService = mock(EmailService.class);
+    private final MailOutboxRepository outboxRepo = mock(MailOutboxRepository.class);
+
+    private final EmailOutbox outbox = new EmailOutbox();
+
+    @BeforeEach
+    void setup() {
+        outbox.emailService = emailService;
+        outbox.outboxRepo = outboxRepo;
+        outbox.rate = 5;
+        outbox.maxAttempts = 3;
+        outbox.retryBackoff = Duration.ofSeconds(10);
+    }
+
+    @Test
+    void testSubmittedEmailIsPersisted() {
+        outbox.submit(EmailCmd.builder().to("one@test.com").subject("subject").textBody("body").build());
+
+        verify(outboxRepo).save(argThat(m -> "one@test.com".equals(m.getSendTo())
+                && m.getAttempts() == 0
+                && !m.getNextAttemptAt().isAfter(Instant.now())));
+        verify(emailService, never()).send(any(EmailCmd.class));
+    }
+
+    @Test
+    void testDueEmailsAreSentAtTheConfiguredRate() {
+        MailOutbox mail = mail(0);
+        when(outboxRepo.findByNextAttemptAtBeforeOrderByNextAttemptAt(any(Instant.class), any(Pageable.class)))
+                .thenReturn(List.of(mail));
+
+        outbox.sendDue();
+
+        verify(outboxRepo).findByNextAttemptAtBeforeOrderByNextAttemptAt(any(Instant.class),
+                eq(Pageable.from(0, 5)));
+        verify(emailService).send(argThat(cmd -> "one@test.com".equals(cmd.getTo())));
+        verify(outboxRepo).deleteById(mail.getId());
+    }
+
+    @Test
+    void testFailedEmailIsKeptForRetry() {
+        doThrow(new IllegalStateException("provider down")).when(emailService).send(any(EmailCmd.class));
+        MailOutbox mail = mail(0);
+        when(outboxRepo.findByNextAttemptAtBeforeOrderByNextAttemptAt(any(Instant.class), any(Pageable.class)))
+                .thenReturn(List.of(mail));
+
+        outbox.sendDue();
+
+        verify(outboxRepo).updateAttemptsAndNextAttemptAt(eq(mail.getId()), eq(1),
+                argThat(next -> next.isAfter(Instant.now().plusSeconds(5))));
+        verify(outboxRepo).updateLastError(eq(mail.getId()), contains("provider down"));
+        verify(outboxRepo, never()).deleteById(any());
+    }
+
+    @Test
+    void testEmailIsRemovedAfterMaxAttempts() {
+        doThrow(new IllegalStateException("provider down")).when(emailService).send(any(EmailCmd.class));
+        MailOutbox mail = mail(2);
+        when(outboxRepo.findByNextAttemptAtBeforeOrderByNextAttemptAt(any(Instant.class), any(Pageable.class)))
+                .thenReturn(List.of(mail));
+
+        outbox.sendDue();
+
+        verify(outboxRepo).deleteById(mail.getId());
+        verify(outboxRepo, never()).updateLastError(any(), any());
+    }
+
+    private static MailOutbox mail(int attempts) {
+        return MailOutbox.builder()
+                .id(UUID.randomUUID())
+                .sendTo("one@test.com")
+                .subject("subject")
+                .textBody("body")
+                .attempts(attempts)
+                .nextAttemptAt(Instant.now())
+                .build();
+    }
+}
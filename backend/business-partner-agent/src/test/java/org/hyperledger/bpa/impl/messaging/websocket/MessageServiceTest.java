@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2020-2022 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.impl.messaging.websocket;
+
+import io.micronaut.websocket.WebSocketBroadcaster;
+import org.hyperledger.bpa.controller.api.WebSocketMessageBody;
+import org.hyperledger.bpa.controller.api.WebSocketMessageBody.WebSocketMessageType;
+import org.hyperledger.bpa.persistence.model.MessageQueue;
+import org.hyperledger.bpa.persistence.repository.MessageQueueRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class MessageServiceTest {
+
+    private final MessageQueueRepository queue = mock(MessageQueueRepository.class);
+    private final WebSocketBroadcaster broadcaster = mock(WebSocketBroadcaster.class);
+
+    private InMemoryMessageService ms;
+
+    @BeforeEach
+    void setup() {
+        ms = new InMemoryMessageService();
+        ms.queue = queue;
+        ms.broadcaster = broadcaster;
+        when(broadcaster.broadcastAsync(any(), any(Predicate.class)))
+                .thenReturn(CompletableFuture.completedFuture(null));
+    }
+
+    @Test
+    void testReplayIsPagedAndKeptUntilAcknowledged() {
+        List<MessageQueue> first = stored(1, MessageService.REPLAY_PAGE_SIZE);
+        List<MessageQueue> second = stored(MessageService.REPLAY_PAGE_SIZE + 1, 2);
+        when(queue.findPage(0, MessageService.REPLAY_PAGE_SIZE)).thenReturn(first);
+        when(queue.findPage(MessageService.REPLAY_PAGE_SIZE, MessageService.REPLAY_PAGE_SIZE)).thenReturn(second);
+
+        ms.sendStored(null);
+
+        ArgumentCaptor<WebSocketMessageBody> sent = ArgumentCaptor.forClass(WebSocketMessageBody.class);
+        verify(broadcaster, times(MessageService.REPLAY_PAGE_SIZE + 2)).broadcastAsync(sent.capture(),
+                any(Predicate.class));
+        assertEquals(LongStream.rangeClosed(1, MessageService.REPLAY_PAGE_SIZE + 2).mapToObj(String::valueOf)
+                .collect(Collectors.toList()),
+                sent.getAllValues().stream().map(m -> m.getMessage().getLinkId()).collect(Collectors.toList()));
+        assertEquals(LongStream.rangeClosed(1, MessageService.REPLAY_PAGE_SIZE + 2).boxed()
+                .collect(Collectors.toList()),
+                sent.getAllValues().stream().map(WebSocketMessageBody::getSequence).collect(Collectors.toList()));
+
+        verify(queue, never()).deleteBySeqLessThanEquals(any());
+        verify(queue, never()).deleteAll();
+
+        ms.acknowledge(MessageService.REPLAY_PAGE_SIZE + 2);
+        verify(queue).deleteBySeqLessThanEquals((long) MessageService.REPLAY_PAGE_SIZE + 2);
+    }
+
+    @Test
+    void testResumeAfterLastSeen() {
+        List<MessageQueue> page = stored(8, 2);
+        when(queue.findPage(7, MessageService.REPLAY_PAGE_SIZE)).thenReturn(page);
+
+        ms.sendStored(7L);
+
+        InOrder inOrder = inOrder(queue);
+        inOrder.verify(queue).deleteBySeqLessThanEquals(7L);
+        inOrder.verify(queue).findPage(7, MessageService.REPLAY_PAGE_SIZE);
+        verify(broadcaster, times(2)).broadcastAsync(any(WebSocketMessageBody.class), any(Predicate.class));
+    }
+
+    @Test
+    void testFailedSendStopsReplay() {
+        List<MessageQueue> page = stored(1, 3);
+        when(queue.findPage(0, MessageService.REPLAY_PAGE_SIZE)).thenReturn(page);
+        doReturn(CompletableFuture.completedFuture(null)).doThrow(new IllegalStateException("closed"))
+                .when(broadcaster).broadcastAsync(any(WebSocketMessageBody.class), any(Predicate.class));
+
+        ms.sendStored(null);
+
+        verify(broadcaster, times(2)).broadcastAsync(any(WebSocketMessageBody.class), any(Predicate.class));
+        verify(queue, times(1)).findPage(anyLong(), eq(MessageService.REPLAY_PAGE_SIZE));
+    }
+
+    private static List<MessageQueue> stored(long firstSeq, int count) {
+        return LongStream.range(firstSeq, firstSeq + count)
+                .mapToObj(seq -> MessageQueue.builder()
+                        .id(UUID.randomUUID())
+                        .seq(seq)
+                        .message(WebSocketMessageBody.notificationEvent(
+                                WebSocketMessageType.TASK_ADDED, String.valueOf(seq), null, null))
+                        .build())
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2020-2022 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.impl.messaging.websocket;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.lettuce.core.RedisFuture;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.async.RedisAsyncCommands;
+import io.micronaut.websocket.WebSocketBroadcaster;
+import io.micronaut.websocket.WebSocketSession;
+import org.hyperledger.bpa.controller.api.WebSocketMessageBody;
+import org.hyperledger.bpa.controller.api.WebSocketMessageBody.WebSocketMessageType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class RedisMessageServiceTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final WebSocketBroadcaster broadcaster = mock(WebSocketBroadcaster.class);
+
+    @SuppressWarnings("unchecked")
+    private final RedisAsyncCommands<String, String> async = mock(RedisAsyncCommands.class);
+
+    @SuppressWarnings("unchecked")
+    private final RedisFuture<Long> published = mock(RedisFuture.class);
+
+    private RedisMessageService ms;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setup() {
+        StatefulRedisConnection<String, String> redis = mock(StatefulRedisConnection.class);
+        when(redis.async()).thenReturn(async);
+        when(async.publish(anyString(), anyString())).thenReturn(published);
+        when(async.zadd(anyString(), anyDouble(), anyString())).thenReturn(mock(RedisFuture.class, RETURNS_DEEP_STUBS));
+        when(async.zrem(anyString(), anyString())).thenReturn(mock(RedisFuture.class, RETURNS_DEEP_STUBS));
+
+        ms = new RedisMessageService();
+        ms.broadcaster = broadcaster;
+        ms.mapper = mapper;
+        ms.redis = redis;
+        ms.presenceTtl = Duration.ofSeconds(90);
+        ms.maxBatchSize = 2;
+        when(broadcaster.broadcastAsync(any(), any(Predicate.class)))
+                .thenReturn(CompletableFuture.completedFuture(null));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testBurstIsPublishedInBatches() throws Exception {
+        ArgumentCaptor<BiConsumer<Long, Throwable>> done = ArgumentCaptor.forClass(BiConsumer.class);
+        ArgumentCaptor<String> messages = ArgumentCaptor.forClass(String.class);
+
+        ms.send(message("1"));
+        ms.send(message("2"));
+        ms.send(message("3"));
+        ms.send(message("4"));
+        // a single message keeps the format of the base channel
+        verify(async, times(1)).publish(eq("bpa-messages"), messages.capture());
+        assertTrue(mapper.readTree(messages.getValue()).isObject());
+
+        verify(published, times(1)).whenComplete(done.capture());
+        done.getValue().accept(1L, null);
+        verify(async, times(1)).publish(eq("bpa-messages-batch"), messages.capture());
+        assertEquals(2, mapper.readTree(messages.getValue()).size());
+
+        verify(published, times(2)).whenComplete(done.capture());
+        done.getValue().accept(1L, null);
+        verify(async, times(2)).publish(eq("bpa-messages"), messages.capture());
+        assertTrue(mapper.readTree(messages.getValue()).isObject());
+    }
+
+    @Test
+    void testBatchIsOnlyDeliveredToLocalSessions() throws Exception {
+        String batch = mapper.writeValueAsString(List.of(message("1"), message("2")));
+        ms.deliver(batch);
+        verify(broadcaster, never()).broadcastAsync(any(), any(Predicate.class));
+
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn("s1");
+        ms.subscribe(session);
+        assertTrue(ms.hasConnectedSessions());
+
+        ms.deliver(batch);
+        verify(broadcaster, times(2)).broadcastAsync(anyString(), any(Predicate.class));
+
+        ms.deliver(mapper.writeValueAsString(message("3")));
+        verify(broadcaster, times(3)).broadcastAsync(anyString(), any(Predicate.class));
+
+        ms.unsubscribe(session);
+        assertFalse(ms.hasConnectedSessions());
+    }
+
+    private static WebSocketMessageBody message(String id) {
+        return WebSocketMessageBody.notificationEvent(WebSocketMessageType.TASK_ADDED, id, null, null);
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2020-2022 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.impl.messaging.websocket;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micronaut.core.convert.value.ConvertibleMultiValues;
+import io.micronaut.websocket.WebSocketSession;
+import org.hyperledger.bpa.api.PartnerAPI;
+import org.hyperledger.bpa.controller.api.WebSocketMessageBody;
+import org.hyperledger.bpa.controller.api.WebSocketMessageBody.WebSocketMessageType;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SessionFilterTest {
+
+    @Test
+    void testFilterFromQueryParameters() {
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.getRequestParameters()).thenReturn(ConvertibleMultiValues.of(Map.of(
+                "types", List.of("TASK_ADDED,ON_PARTNER_ADDED", "NOT_A_TYPE"),
+                "partnerIds", List.of("p1", " p2 "))));
+
+        SessionFilter filter = SessionFilter.fromRequest(session);
+        assertEquals(Set.of(WebSocketMessageType.TASK_ADDED, WebSocketMessageType.ON_PARTNER_ADDED),
+                filter.types());
+        assertEquals(Set.of("p1", "p2"), filter.partnerIds());
+    }
+
+    @Test
+    void testNoQueryParametersMatchesAll() {
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.getRequestParameters()).thenReturn(ConvertibleMultiValues.empty());
+
+        assertEquals(SessionFilter.ALL, SessionFilter.fromRequest(session));
+        assertTrue(SessionFilter.ALL.matches(WebSocketMessageType.TASK_ADDED, "p1"));
+    }
+
+    @Test
+    void testMatches() {
+        SessionFilter filter = new SessionFilter(Set.of(WebSocketMessageType.ON_PARTNER_ADDED), Set.of("p1"));
+        assertTrue(filter.matches(WebSocketMessageType.ON_PARTNER_ADDED, "p1"));
+        assertFalse(filter.matches(WebSocketMessageType.ON_PARTNER_ADDED, "p2"));
+        assertFalse(filter.matches(WebSocketMessageType.TASK_ADDED, "p1"));
+        assertFalse(filter.matches(null, null));
+
+        // events without partner are only filtered by type
+        SessionFilter partnersOnly = new SessionFilter(null, Set.of("p1"));
+        assertTrue(partnersOnly.matches(WebSocketMessageType.TASK_ADDED, null));
+    }
+
+    @Test
+    void testSessionsForEvent() {
+        WebSocketSession interested = mock(WebSocketSession.class);
+        when(interested.get(anyString(), eq(SessionFilter.class))).thenReturn(Optional.of(
+                new SessionFilter(Set.of(WebSocketMessageType.ON_PARTNER_ADDED), null)));
+        WebSocketSession other = mock(WebSocketSession.class);
+        when(other.get(anyString(), eq(SessionFilter.class))).thenReturn(Optional.of(
+                new SessionFilter(Set.of(WebSocketMessageType.TASK_ADDED), null)));
+        WebSocketSession unfiltered = mock(WebSocketSession.class);
+        when(unfiltered.get(anyString(), eq(SessionFilter.class))).thenReturn(Optional.empty());
+
+        WebSocketMessageBody event = WebSocketMessageBody.notificationEvent(
+                WebSocketMessageType.ON_PARTNER_ADDED, "p1", null, PartnerAPI.builder().id("p1").build());
+        assertTrue(SessionFilter.sessionsFor(event).test(interested));
+        assertFalse(SessionFilter.sessionsFor(event).test(other));
+        assertTrue(SessionFilter.sessionsFor(event).test(unfiltered));
+    }
+
+    @Test
+    void testFilterFromJson() throws Exception {
+        SessionFilter filter = new ObjectMapper().readValue(
+                "{\"types\": [\"TASK_ADDED\"], \"partnerIds\": [\"p1\"]}", SessionFilter.class);
+        assertEquals(Set.of(WebSocketMessageType.TASK_ADDED), filter.types());
+        assertEquals(Set.of("p1"), filter.partnerIds());
+    }
+}
@@ -116,7 +116,32 @@ class ConverterTest extends BaseTest {
         final Partner model = conv.toModelObject("did:web:test.foo", partner);
         assertTrue(model.getDid().startsWith("did"));
         assertNotNull(model.getVerifiablePresentation());
-        assertEquals(vp, conv.fromMap(model.getVerifiablePresentation(), Converter.VP_TYPEREF));
+        assertEquals(vp, model.getVerifiablePresentation());
+    }
+
+    @Test
+    void testDecodedProfileIsCachedPerPartner() throws Exception {
+        VerifiablePresentation<VerifiableIndyCredential> vp = loadAndConvertTo("files/verifiablePresentation.json",
+                Converter.VP_TYPEREF);
+        Partner p = conv.toModelObject("did:web:test.foo", conv.toAPIObject(vp));
+        p.setId(UUID.randomUUID());
+
+        final PartnerAPI first = conv.toAPIObject(p);
+        final PartnerAPI second = conv.toAPIObject(p);
+        assertEquals(4, second.getCredential().size());
+        assertSame(first.getCredential(), second.getCredential());
+        assertEquals(p.getId().toString(), second.getId());
+
+        // changed presentation is decoded again even without invalidation
+        VerifiablePresentation<VerifiableIndyCredential> changedVp = loadAndConvertTo(
+                "files/verifiablePresentation.json", Converter.VP_TYPEREF);
+        changedVp.getVerifiableCredential().remove(0);
+        p.setVerifiablePresentation(changedVp);
+        final PartnerAPI changed = conv.toAPIObject(p);
+        assertEquals(3, changed.getCredential().size());
+
+        conv.invalidateDecodedProfile(p.getId());
+        assertNotSame(changed.getCredential(), conv.toAPIObject(p).getCredential());
     }
 
     @Test
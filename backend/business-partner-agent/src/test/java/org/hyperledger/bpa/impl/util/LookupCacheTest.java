@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2020-2022 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.impl.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LookupCacheTest {
+
+    private final AtomicInteger lookups = new AtomicInteger();
+
+    @Test
+    void testConcurrentCallersShareOneLookup() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        LookupCache<Integer> cache = new LookupCache<>("test", Duration.ofMinutes(1), Duration.ofMinutes(5), 10,
+                Runnable::run, key -> {
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return lookups.incrementAndGet();
+                });
+        ExecutorService callers = Executors.newFixedThreadPool(4);
+        try {
+            CompletableFuture<?>[] calls = new CompletableFuture<?>[4];
+            for (int i = 0; i < calls.length; i++) {
+                calls[i] = CompletableFuture.supplyAsync(() -> cache.get("did:sov:1"), callers);
+            }
+            Thread.sleep(100);
+            release.countDown();
+            CompletableFuture.allOf(calls).get(5, TimeUnit.SECONDS);
+            for (CompletableFuture<?> call : calls) {
+                assertEquals(1, call.get());
+            }
+        } finally {
+            callers.shutdownNow();
+        }
+        assertEquals(1, lookups.get());
+        assertEquals(1, cache.stats().misses());
+        assertEquals(3, cache.stats().hits());
+    }
+
+    @Test
+    void testStaleValueIsServedWhileRefreshing() throws Exception {
+        LookupCache<Integer> cache = new LookupCache<>("test", Duration.ofMillis(50), Duration.ofMinutes(5), 10,
+                Runnable::run, key -> lookups.incrementAndGet());
+
+        assertEquals(1, cache.get("did:sov:1"));
+        Thread.sleep(100);
+        assertEquals(1, cache.get("did:sov:1"));
+        assertEquals(2, cache.get("did:sov:1"));
+    }
+
+    @Test
+    void testFailedRefreshKeepsValue() throws Exception {
+        LookupCache<Integer> cache = new LookupCache<>("test", Duration.ofMillis(50), Duration.ofMinutes(5), 10,
+                Runnable::run, key -> {
+                    if (lookups.incrementAndGet() > 1) {
+                        throw new IllegalStateException("resolver unavailable");
+                    }
+                    return 1;
+                });
+
+        assertEquals(1, cache.get("did:sov:1"));
+        Thread.sleep(100);
+        assertEquals(1, cache.get("did:sov:1"));
+        assertEquals(1, cache.get("did:sov:1"));
+    }
+
+    @Test
+    void testFailedLookupIsNotCached() {
+        LookupCache<Integer> cache = new LookupCache<>("test", Duration.ofMinutes(1), Duration.ofMinutes(5), 10,
+                Runnable::run, key -> {
+                    if (lookups.incrementAndGet() == 1) {
+                        throw new IllegalStateException("resolver unavailable");
+                    }
+                    return 2;
+                });
+
+        assertThrows(IllegalStateException.class, () -> cache.get("did:sov:1"));
+        assertEquals(2, cache.get("did:sov:1"));
+        assertEquals(1, cache.stats().failures());
+    }
+
+    @Test
+    void testInvalidateSingleKey() {
+        LookupCache<Integer> cache = new LookupCache<>("test", Duration.ofMinutes(1), Duration.ofMinutes(5), 10,
+                Runnable::run, key -> lookups.incrementAndGet());
+
+        assertEquals(1, cache.get("did:sov:1"));
+        assertEquals(2, cache.get("did:sov:2"));
+        cache.invalidate("did:sov:1");
+
+        assertEquals(3, cache.get("did:sov:1"));
+        assertEquals(2, cache.get("did:sov:2"));
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2020-2022 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.model.converter;
+
+import io.micronaut.core.convert.ConversionContext;
+import org.hyperledger.aries.api.jsonld.VerifiableCredential.VerifiableIndyCredential;
+import org.hyperledger.aries.api.jsonld.VerifiablePresentation;
+import org.hyperledger.bpa.BaseTest;
+import org.hyperledger.bpa.core.RegisteredWebhook;
+import org.hyperledger.bpa.impl.util.Converter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonAttributeConverterTest extends BaseTest {
+
+    private final VerifiablePresentationConverter vpConverter = new VerifiablePresentationConverter();
+
+    private final RegisteredWebhookConverter webhookConverter = new RegisteredWebhookConverter();
+
+    @BeforeEach
+    void setupConverters() {
+        vpConverter.setMapper(mapper);
+        webhookConverter.setMapper(mapper);
+    }
+
+    @Test
+    void testVerifiablePresentationRoundTrip() throws Exception {
+        VerifiablePresentation<VerifiableIndyCredential> vp = loadAndConvertTo("files/verifiablePresentation.json",
+                Converter.VP_TYPEREF);
+
+        String json = vpConverter.convertToPersistedValue(vp, ConversionContext.DEFAULT);
+        VerifiablePresentation<VerifiableIndyCredential> read = vpConverter.convertToEntityValue(json,
+                ConversionContext.DEFAULT);
+
+        assertEquals(vp, read);
+        assertEquals(4, read.getVerifiableCredential().size());
+        assertEquals(VerifiableIndyCredential.class, read.getVerifiableCredential().get(0).getClass());
+    }
+
+    @Test
+    void testWebhookRoundTrip() {
+        RegisteredWebhook hook = RegisteredWebhook.builder()
+                .url("https://example.com/hook")
+                .registeredEvent(List.of(RegisteredWebhook.WebhookEventType.PARTNER_ADD))
+                .build();
+
+        String json = webhookConverter.convertToPersistedValue(hook, ConversionContext.DEFAULT);
+
+        assertEquals(hook, webhookConverter.convertToEntityValue(json, ConversionContext.DEFAULT));
+    }
+
+    @Test
+    void testWebhookSigningSecretIsPersistedButNotExposed() throws Exception {
+        RegisteredWebhook hook = RegisteredWebhook.builder()
+                .url("https://example.com/hook")
+                .registeredEvent(List.of(RegisteredWebhook.WebhookEventType.ALL))
+                .signingSecret("top-secret")
+                .build();
+
+        String json = webhookConverter.convertToPersistedValue(hook, ConversionContext.DEFAULT);
+        assertEquals("top-secret",
+                webhookConverter.convertToEntityValue(json, ConversionContext.DEFAULT).getSigningSecret());
+
+        RegisteredWebhook.RegisteredWebhookResponse response = new RegisteredWebhook.RegisteredWebhookResponse(
+                UUID.randomUUID(), hook);
+        assertFalse(mapper.writeValueAsString(response).contains("top-secret"));
+        assertFalse(response.toString().contains("top-secret"));
+        assertEquals("top-secret", mapper.readValue("{\"signingSecret\":\"top-secret\"}", RegisteredWebhook.class)
+                .getSigningSecret());
+    }
+
+    @Test
+    void testNullValues() {
+        assertNull(vpConverter.convertToPersistedValue(null, ConversionContext.DEFAULT));
+        assertNull(vpConverter.convertToEntityValue(null, ConversionContext.DEFAULT));
+    }
+
+    @Test
+    void testInvalidJson() {
+        assertThrows(IllegalStateException.class,
+                () -> webhookConverter.convertToEntityValue("{\"url\":", ConversionContext.DEFAULT));
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2020-2022 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.persistence.repository;
+
+import io.micronaut.test.extensions.junit5.annotation.MicronautTest;
+import jakarta.inject.Inject;
+import org.hyperledger.bpa.controller.api.activity.ActivityRole;
+import org.hyperledger.bpa.controller.api.activity.ActivityState;
+import org.hyperledger.bpa.controller.api.activity.ActivityType;
+import org.hyperledger.bpa.persistence.model.Activity;
+import org.hyperledger.bpa.persistence.model.Partner;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@MicronautTest
+class ActivityRepositoryTest {
+
+    @Inject
+    ActivityRepository activityRepo;
+
+    @Inject
+    PartnerRepository partnerRepo;
+
+    @Test
+    void testFindPageByKeyset() {
+        Partner p1 = partnerRepo.save(Partner.builder().did("did:act:1").ariesSupport(Boolean.TRUE).build());
+        Partner p2 = partnerRepo.save(Partner.builder().did("did:act:2").ariesSupport(Boolean.TRUE).build());
+        for (int i = 0; i < 4; i++) {
+            activityRepo.save(activity(i % 2 == 0 ? p1 : p2, i < 2));
+        }
+
+        List<Activity> first = activityRepo.findPage(null, null, null, null, null, null, null, 3);
+        assertEquals(3, first.size());
+        Activity last = first.get(2);
+        List<Activity> second = activityRepo.findPage(null, null, null, null, null,
+                last.getUpdatedAt(), last.getId(), 3);
+        assertEquals(1, second.size());
+        assertTrue(first.get(0).getUpdatedAt().compareTo(first.get(1).getUpdatedAt()) >= 0);
+
+        assertEquals(2, activityRepo.findPage(Boolean.TRUE, null, null, null, null, null, null, 10).size());
+        assertEquals(2, activityRepo.findPage(null, null, p1.getId(), null, null, null, null, 10).size());
+        assertEquals(4, activityRepo.findPage(null, ActivityType.CONNECTION_REQUEST.name(), null,
+                null, null, null, null, 10).size());
+        assertEquals(0, activityRepo.findPage(null, null, null,
+                Instant.now().plus(1, ChronoUnit.HOURS), null, null, null, 10).size());
+    }
+
+    @Test
+    void testArchiveCompleted() {
+        Partner p = partnerRepo.save(Partner.builder().did("did:act:3").ariesSupport(Boolean.TRUE).build());
+        activityRepo.save(activity(p, true));
+        activityRepo.save(activity(p, true));
+        activityRepo.save(activity(p, false));
+
+        Instant cutoff = Instant.now().plus(1, ChronoUnit.MINUTES);
+        assertEquals(1, activityRepo.archiveCompleted(cutoff, 1));
+        assertEquals(1, activityRepo.archiveCompleted(cutoff, 10));
+        assertEquals(0, activityRepo.archiveCompleted(cutoff, 10));
+        assertEquals(1, activityRepo.count());
+    }
+
+    private static Activity activity(Partner p, boolean completed) {
+        return Activity.builder()
+                .linkId(UUID.randomUUID())
+                .partner(p)
+                .type(ActivityType.CONNECTION_REQUEST)
+                .role(ActivityRole.CONNECTION_REQUEST_SENDER)
+                .state(ActivityState.CONNECTION_REQUEST_ACCEPTED)
+                .completed(completed)
+                .build();
+    }
+}
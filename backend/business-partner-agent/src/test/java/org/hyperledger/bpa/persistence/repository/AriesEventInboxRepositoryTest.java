@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2020-2022 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.persistence.repository;
+
+import io.micronaut.test.extensions.junit5.annotation.MicronautTest;
+import jakarta.inject.Inject;
+import org.hyperledger.bpa.persistence.model.AriesEventInbox;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@MicronautTest
+class AriesEventInboxRepositoryTest {
+
+    @Inject
+    AriesEventInboxRepository repo;
+
+    @Test
+    void testClaimAndRelease() {
+        AriesEventInbox saved = repo.save(event("c1"));
+
+        assertEquals(1, repo.claim("first", Instant.now().minus(1, ChronoUnit.HOURS), 10));
+        assertEquals(0, repo.claim("second", Instant.now(), 10));
+        AriesEventInbox claimed = repo.findById(saved.getId()).orElseThrow();
+        assertEquals(AriesEventInbox.InboxState.PROCESSING, claimed.getState());
+        assertEquals("first", claimed.getClaimedBy());
+
+        assertEquals(1, repo.releaseExpiredClaims(Instant.now().minus(5, ChronoUnit.MINUTES)));
+        assertEquals(AriesEventInbox.InboxState.NEW, repo.findById(saved.getId()).orElseThrow().getState());
+        // released events can not be renewed by the old claim
+        assertEquals(0, repo.renewClaim(saved.getId(), "first", Instant.now()));
+
+        repo.deleteById(saved.getId());
+    }
+
+    @Test
+    void testOneEventPerKeyIsClaimed() {
+        AriesEventInbox first = repo.save(event("c1"));
+        AriesEventInbox second = repo.save(event("c1"));
+        AriesEventInbox other = repo.save(event("c2"));
+
+        assertEquals(2, repo.claim("first", Instant.now(), 10));
+        List<AriesEventInbox> claimed = repo.findByClaimedByOrderByCreatedAt("first");
+        assertEquals(List.of(first.getId(), other.getId()), claimed.stream().map(AriesEventInbox::getId).toList());
+        assertEquals(1, repo.renewClaim(first.getId(), "first", Instant.now()));
+
+        // the next event of the key is claimed once the previous one is done
+        assertEquals(0, repo.claim("second", Instant.now(), 10));
+        repo.deleteById(first.getId());
+        assertEquals(1, repo.claim("second", Instant.now(), 10));
+        assertEquals(second.getId(), repo.findByClaimedByOrderByCreatedAt("second").get(0).getId());
+
+        repo.deleteById(second.getId());
+        repo.deleteById(other.getId());
+    }
+
+    @Test
+    void testFollowersOfClaimedKeysAreClaimed() {
+        AriesEventInbox first = repo.save(event("c3"));
+        AriesEventInbox second = repo.save(event("c3"));
+        AriesEventInbox third = repo.save(event("c3"));
+        AriesEventInbox other = repo.save(event("c4"));
+
+        assertEquals(1, repo.claim("first", Instant.now(), 1));
+        assertEquals(1, repo.claimFollowers("first", Instant.now(), 2));
+        assertEquals(List.of(first.getId(), second.getId()), repo.findByClaimedByOrderByCreatedAt("first")
+                .stream().map(AriesEventInbox::getId).toList());
+
+        // the rest of the key waits, other keys can be claimed
+        assertEquals(1, repo.claim("second", Instant.now(), 10));
+        assertEquals(other.getId(), repo.findByClaimedByOrderByCreatedAt("second").get(0).getId());
+
+        repo.deleteByIdIn(List.of(first.getId(), second.getId()));
+        assertEquals(1, repo.claim("third", Instant.now(), 10));
+        assertEquals(third.getId(), repo.findByClaimedByOrderByCreatedAt("third").get(0).getId());
+
+        repo.deleteByIdIn(List.of(third.getId(), other.getId()));
+    }
+
+    @Test
+    void testDeadLetter() {
+        AriesEventInbox saved = repo.save(AriesEventInbox
+                .builder()
+                .eventType("connections")
+                .eventBody("{}")
+                .orderingKey("connections")
+                .state(AriesEventInbox.InboxState.PROCESSING)
+                .build());
+
+        repo.updateStateAndAttemptsAndLastError(saved.getId(), AriesEventInbox.InboxState.DEAD_LETTER, 3, "error");
+
+        AriesEventInbox dead = repo.findById(saved.getId()).orElseThrow();
+        assertEquals(AriesEventInbox.InboxState.DEAD_LETTER, dead.getState());
+        assertEquals(3, dead.getAttempts());
+        assertEquals("error", dead.getLastError());
+        assertEquals(1, repo.countByState(AriesEventInbox.InboxState.DEAD_LETTER));
+    }
+
+    private static AriesEventInbox event(String connectionId) {
+        return AriesEventInbox
+                .builder()
+                .eventType("connections")
+                .eventBody("{\"connection_id\":\"" + connectionId + "\"}")
+                .orderingKey(connectionId)
+                .state(AriesEventInbox.InboxState.NEW)
+                .build();
+    }
+}
@@ -23,7 +23,6 @@ import jakarta.inject.Inject;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.hyperledger.bpa.core.RegisteredWebhook;
 import org.hyperledger.bpa.core.RegisteredWebhook.WebhookEventType;
-import org.hyperledger.bpa.impl.util.Converter;
 import org.hyperledger.bpa.persistence.model.BPAWebhook;
 import org.junit.jupiter.api.Test;
 
@@ -38,9 +37,6 @@ class BPAWebhookRepositoryTest {
     @Inject
     BPAWebhookRepository repo;
 
-    @Inject
-    Converter conv;
-
     @Test
     void testGetByUrl() {
         final String url = "https://test.me";
@@ -50,7 +46,7 @@ class BPAWebhookRepositoryTest {
                 .build();
         BPAWebhook entity = BPAWebhook
                 .builder()
-                .webhook(conv.toMap(h))
+                .webhook(h)
                 .build();
         BPAWebhook saved = repo.save(entity);
 
@@ -68,7 +64,7 @@ class BPAWebhookRepositoryTest {
                 .build();
         BPAWebhook entity = BPAWebhook
                 .builder()
-                .webhook(conv.toMap(h))
+                .webhook(h)
                 .build();
         repo.save(entity);
 
@@ -97,7 +93,7 @@ class BPAWebhookRepositoryTest {
                 .build();
         return BPAWebhook
                 .builder()
-                .webhook(conv.toMap(h))
+                .webhook(h)
                 .build();
     }
 
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2020-2022 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.persistence.repository;
+
+import io.micronaut.test.extensions.junit5.annotation.MicronautTest;
+import jakarta.inject.Inject;
+import org.hyperledger.aries.api.connection.ConnectionState;
+import org.hyperledger.bpa.persistence.model.DashboardCounter;
+import org.hyperledger.bpa.persistence.model.Partner;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@MicronautTest
+class DashboardCounterRepositoryTest {
+
+    @Inject
+    DashboardCounterRepository counterRepo;
+
+    @Inject
+    PartnerRepository partnerRepo;
+
+    @Test
+    void testTriggersMaintainCounters() {
+        Partner active = partnerRepo.save(partner("did:dash:1", ConnectionState.ACTIVE));
+        partnerRepo.save(partner("did:dash:2", ConnectionState.INVITATION));
+        Partner invited = partnerRepo.save(partner("did:dash:3", ConnectionState.INVITATION));
+        partnerRepo.save(partner("did:dash:4", null));
+
+        assertEquals(1L, sums().get(DashboardCounter.PARTNERS).getTotal());
+
+        // native update, bypasses the entity
+        partnerRepo.updateStateByConnectionId(invited.getConnectionId(), ConnectionState.REQUEST);
+        assertEquals(2L, sums().get(DashboardCounter.PARTNERS).getTotal());
+
+        // state does not change the metric
+        partnerRepo.updateStateByConnectionId(active.getConnectionId(), ConnectionState.PING_RESPONSE);
+        assertEquals(2L, sums().get(DashboardCounter.PARTNERS).getTotal());
+
+        partnerRepo.deleteByPartnerId(active.getId());
+        DashboardCounter.MetricSum partners = sums().get(DashboardCounter.PARTNERS);
+        assertEquals(1L, partners.getTotal());
+        assertEquals(1L, partners.getPeriod());
+        assertNull(sums().get(DashboardCounter.TASKS));
+    }
+
+    @Test
+    void testPeriodOnlyCountsRecentBuckets() {
+        partnerRepo.save(partner("did:dash:5", ConnectionState.ACTIVE));
+
+        DashboardCounter.MetricSum future = counterRepo.sumByMetric(Instant.now().plus(2, ChronoUnit.HOURS))
+                .stream().filter(s -> DashboardCounter.PARTNERS.equals(s.getMetric())).findFirst().orElseThrow();
+        assertEquals(1L, future.getTotal());
+        assertEquals(0L, future.getPeriod());
+    }
+
+    @Test
+    void testConcurrentWritersAreSpreadOverShards() {
+        for (int i = 0; i < 20; i++) {
+            partnerRepo.save(partner("did:dash:shard:" + i, ConnectionState.ACTIVE));
+        }
+
+        assertEquals(20L, sums().get(DashboardCounter.PARTNERS).getTotal());
+        assertTrue(StreamSupport.stream(counterRepo.findAll().spliterator(), false)
+                .filter(c -> DashboardCounter.PARTNERS.equals(c.getId().getMetric()))
+                .count() > 1);
+    }
+
+    private Map<String, DashboardCounter.MetricSum> sums() {
+        return counterRepo.sumByMetric(Instant.now().minus(1, ChronoUnit.DAYS))
+                .stream()
+                .collect(Collectors.toMap(DashboardCounter.MetricSum::getMetric, s -> s));
+    }
+
+    private static Partner partner(String did, ConnectionState state) {
+        return Partner.builder()
+                .did(did)
+                .ariesSupport(Boolean.TRUE)
+                .connectionId(did)
+                .state(state)
+                .build();
+    }
+}
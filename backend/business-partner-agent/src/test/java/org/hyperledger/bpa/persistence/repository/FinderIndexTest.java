@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2020-2022 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.persistence.repository;
+
+import io.micronaut.context.BeanContext;
+import io.micronaut.data.annotation.Query;
+import io.micronaut.data.intercept.annotation.DataMethod;
+import io.micronaut.inject.ExecutableMethod;
+import io.micronaut.test.extensions.junit5.annotation.MicronautTest;
+import io.micronaut.transaction.jdbc.DelegatingDataSource;
+import jakarta.inject.Inject;
+import org.hyperledger.bpa.controller.api.activity.ActivityRole;
+import org.hyperledger.bpa.controller.api.activity.ActivityType;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Makes sure that the finders used while handling aries events, or looking up
+ * the issuers of a schema, can be served by an index. The query is taken from
+ * the repository method, as generated by micronaut data, and explained with the
+ * given arguments. The tables are empty, so sequential scans are disabled to
+ * see which plan postgres would pick if they were not.
+ */
+@MicronautTest(transactional = false)
+class FinderIndexTest {
+
+    private static final UUID ID = UUID.fromString("3e5b1b0e-9c42-4b8e-8f5e-1d5b0a0b7c11");
+
+    @Inject
+    DataSource ds;
+
+    @Inject
+    BeanContext beanContext;
+
+    static Stream<Arguments> finders() {
+        return Stream.of(
+                finder("partner_connection_id_idx", PartnerRepository.class, "findByConnectionId", "c1"),
+                finder("partner_invitation_msg_id_idx", PartnerRepository.class, "findByInvitationMsgId", "i1"),
+                finder("partner_did_idx", PartnerRepository.class, "findByDid", "did:sov:1"),
+                finder("partner_supported_credential_seq_no_idx", PartnerRepository.class,
+                        "findBySupportedCredential", "571"),
+                finder("bpa_credential_exchange_cred_ex_id_idx", HolderCredExRepository.class,
+                        "findByCredentialExchangeId", "c1"),
+                finder("bpa_credential_exchange_cred_ex_id_idx", IssuerCredExRepository.class,
+                        "findByCredentialExchangeId", "c1"),
+                finder("bpa_credential_exchange_referent_idx", HolderCredExRepository.class,
+                        "findByReferent", "r1"),
+                finder("bpa_credential_exchange_revocation_idx", HolderCredExRepository.class,
+                        "findByRevRegIdAndCredRevId", "r1", "1"),
+                finder("bpa_credential_exchange_holder_cred_def_idx", HolderCredExRepository.class,
+                        "findBySchemaIdAndCredentialDefinitionId", "s1", "c1"),
+                finder("partner_proof_presentation_exchange_id_idx", PartnerProofRepository.class,
+                        "findByPresentationExchangeId", "p1"),
+                finder("partner_proof_thread_id_idx", PartnerProofRepository.class, "findByThreadId", "t1"),
+                Arguments.of("activity_link_id_type_role_idx", ActivityRepository.class,
+                        "findByLinkIdAndTypeAndRole", new Class<?>[] { UUID.class, ActivityType.class,
+                                ActivityRole.class },
+                        new Object[] { ID, ActivityType.CONNECTION_REQUEST.name(),
+                                ActivityRole.CONNECTION_REQUEST_SENDER.name() }),
+                Arguments.of("chat_message_partner_id_created_at_idx", ChatMessageRepository.class,
+                        "findByPartnerIdOrderByCreatedAtAsc", new Class<?>[] { UUID.class }, new Object[] { ID }));
+    }
+
+    @ParameterizedTest
+    @MethodSource("finders")
+    void testFinderUsesIndex(String index, Class<?> repository, String method, Class<?>[] argumentTypes,
+            Object[] arguments) throws SQLException {
+        String plan = explain(query(repository, method, argumentTypes), arguments);
+        assertTrue(plan.contains(index), "Expected " + index + " in plan:\n" + plan);
+    }
+
+    /**
+     * @return the sql of the repository method, with positional parameters
+     */
+    private String query(Class<?> repository, String method, Class<?>[] argumentTypes) {
+        ExecutableMethod<?, ?> m = beanContext.getBeanDefinition(repository)
+                .findMethod(method, argumentTypes)
+                .orElseThrow(() -> new IllegalArgumentException("No such finder: " + method));
+        return m.stringValue(Query.class, DataMethod.META_MEMBER_RAW_QUERY)
+                .or(() -> m.stringValue(Query.class))
+                .orElseThrow(() -> new IllegalArgumentException("No query for finder: " + method));
+    }
+
+    private String explain(String query, Object[] arguments) throws SQLException {
+        try (Connection c = DelegatingDataSource.unwrapDataSource(ds).getConnection();
+                Statement s = c.createStatement()) {
+            s.execute("SET enable_seqscan = off");
+            StringBuilder plan = new StringBuilder();
+            try (PreparedStatement ps = c.prepareStatement("EXPLAIN " + query)) {
+                for (int i = 0; i < arguments.length; i++) {
+                    ps.setObject(i + 1, arguments[i]);
+                }
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        plan.append(rs.getString(1)).append('\n');
+                    }
+                }
+            }
+            s.execute("RESET enable_seqscan");
+            return plan.toString();
+        }
+    }
+
+    private static Arguments finder(String index, Class<?> repository, String method, String... arguments) {
+        Class<?>[] types = new Class<?>[arguments.length];
+        Arrays.fill(types, String.class);
+        return Arguments.of(index, repository, method, types, arguments);
+    }
+}
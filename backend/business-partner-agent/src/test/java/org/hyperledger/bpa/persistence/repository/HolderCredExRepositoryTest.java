@@ -103,17 +103,6 @@ class HolderCredExRepositoryTest extends BaseTest {
         assertEquals("My Bank", cred.get(0).getIssuer());
     }
 
-    @Test
-    void testCountByState() {
-        Partner p = createRandomPartner();
-        holderCredExRepo.save(createDummyCredEx(p));
-        holderCredExRepo.save(createDummyCredEx(p).setState(CredentialExchangeState.CREDENTIAL_ISSUED));
-        holderCredExRepo.save(createDummyCredEx(createRandomPartner()));
-
-        assertEquals(2, holderCredExRepo.countByRoleEqualsAndStateEquals(
-                CredentialExchangeRole.HOLDER, CredentialExchangeState.CREDENTIAL_ACKED));
-    }
-
     @Test
     void testFindNotRevoked() {
         Partner p = createRandomPartner();
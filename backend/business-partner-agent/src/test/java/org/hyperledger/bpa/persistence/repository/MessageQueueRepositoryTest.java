@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2020-2022 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.persistence.repository;
+
+import io.micronaut.test.extensions.junit5.annotation.MicronautTest;
+import jakarta.inject.Inject;
+import org.hyperledger.bpa.controller.api.WebSocketMessageBody;
+import org.hyperledger.bpa.controller.api.WebSocketMessageBody.WebSocketMessageType;
+import org.hyperledger.bpa.persistence.model.MessageQueue;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@MicronautTest
+class MessageQueueRepositoryTest {
+
+    @Inject
+    MessageQueueRepository queue;
+
+    @Test
+    void testPagesAreOrderedBySequence() {
+        for (int i = 0; i < 5; i++) {
+            queue.save(MessageQueue.builder().message(message(String.valueOf(i))).build());
+        }
+
+        List<MessageQueue> first = queue.findPage(0, 3);
+        assertEquals(3, first.size());
+        assertEquals(List.of("0", "1", "2"), linkIds(first));
+        assertTrue(first.get(0).getSeq() < first.get(1).getSeq());
+
+        List<MessageQueue> second = queue.findPage(first.get(2).getSeq(), 3);
+        assertEquals(List.of("3", "4"), linkIds(second));
+
+        assertEquals(3, queue.deleteBySeqLessThanEquals(first.get(2).getSeq()));
+        assertEquals(2, queue.count());
+        assertEquals(2, queue.deleteByCreatedAtLessThan(Instant.now().plusSeconds(60)));
+    }
+
+    private static List<String> linkIds(List<MessageQueue> page) {
+        return page.stream().map(m -> m.getMessage().getMessage().getLinkId()).collect(Collectors.toList());
+    }
+
+    private static WebSocketMessageBody message(String linkId) {
+        return WebSocketMessageBody.notificationEvent(WebSocketMessageType.TASK_ADDED, linkId, null, null);
+    }
+}
@@ -24,9 +24,12 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.hyperledger.aries.api.connection.ConnectionState;
+import org.hyperledger.aries.api.jsonld.VerifiablePresentation;
 import org.hyperledger.bpa.controller.api.partner.PartnerCredentialType;
 import org.hyperledger.bpa.impl.util.Converter;
 import org.hyperledger.bpa.persistence.model.Partner;
+import org.hyperledger.bpa.persistence.model.PartnerSummary;
+import org.hyperledger.bpa.persistence.model.Tag;
 import org.junit.jupiter.api.Test;
 
 import java.time.Instant;
@@ -174,6 +177,54 @@ class PartnerRepositoryTest {
         assertNull(p2.get().getState());
     }
 
+    @Test
+    void testFindConnectionIds() {
+        partnerRepo.save(Partner.builder().ariesSupport(Boolean.TRUE).did("did:sov:c1").connectionId("c-1").build());
+        partnerRepo.save(Partner.builder().ariesSupport(Boolean.TRUE).did("did:sov:c2").connectionId("").build());
+        partnerRepo.save(Partner.builder().ariesSupport(Boolean.FALSE).did("did:web:c3").build());
+
+        assertEquals(List.of("c-1"), partnerRepo.findConnectionIds());
+    }
+
+    @Test
+    void testUpdatePingResults() {
+        Instant before = Instant.now().minus(1, ChronoUnit.DAYS).truncatedTo(ChronoUnit.MILLIS);
+        for (String cId : List.of("ping-1", "ping-2", "ping-3")) {
+            partnerRepo.save(Partner
+                    .builder()
+                    .ariesSupport(Boolean.TRUE)
+                    .did("did:sov:" + cId)
+                    .connectionId(cId)
+                    .state(ConnectionState.ACTIVE)
+                    .lastSeen(before)
+                    .build());
+        }
+
+        Instant now = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        int updated = partnerRepo.updatePingResults(List.of("ping-1", "ping-2"), List.of("ping-1"),
+                ConnectionState.PING_RESPONSE, ConnectionState.PING_NO_RESPONSE, now);
+        assertEquals(2, updated);
+
+        Partner p1 = partnerRepo.findByConnectionId("ping-1").orElseThrow();
+        assertEquals(ConnectionState.PING_RESPONSE, p1.getState());
+        assertEquals(now, p1.getLastSeen());
+
+        Partner p2 = partnerRepo.findByConnectionId("ping-2").orElseThrow();
+        assertEquals(ConnectionState.PING_NO_RESPONSE, p2.getState());
+        assertEquals(before, p2.getLastSeen());
+
+        Partner p3 = partnerRepo.findByConnectionId("ping-3").orElseThrow();
+        assertEquals(ConnectionState.ACTIVE, p3.getState());
+
+        // nobody responded, partners that are already in PING_NO_RESPONSE are not
+        // touched
+        updated = partnerRepo.updatePingResults(List.of("ping-1", "ping-2"), List.of(),
+                ConnectionState.PING_RESPONSE, ConnectionState.PING_NO_RESPONSE, now);
+        assertEquals(1, updated);
+        assertEquals(ConnectionState.PING_NO_RESPONSE,
+                partnerRepo.findByConnectionId("ping-1").orElseThrow().getState());
+    }
+
     @Test
     void testFindBySupportedCredentials() {
         createPartnerWithCredentialType(571);
@@ -193,6 +244,31 @@ class PartnerRepositoryTest {
         assertEquals(3, found.size());
     }
 
+    @Test
+    void testSupportedCredentialsFollowJson() {
+        final String did = "did:sov:supported";
+        Partner p = partnerRepo.save(Partner
+                .builder()
+                .ariesSupport(Boolean.TRUE)
+                .did(did)
+                .connectionId(did)
+                .build());
+
+        partnerRepo.updateByDid(did, conv.toMap(new Foo(List.of(
+                PartnerCredentialType.fromCredDefId("M6Mbe3qx7vB4wpZF4sBRj1:3:CL:671:a"),
+                PartnerCredentialType.fromCredDefId("M6Mbe3qx7vB4wpZF4sBRj1:3:CL:671:b")))));
+        assertEquals(1, partnerRepo.findBySupportedCredential("671").size());
+
+        // replacing the types removes the old rows
+        partnerRepo.updateByDid(did, conv.toMap(new Foo(List.of(
+                PartnerCredentialType.fromCredDefId("M6Mbe3qx7vB4wpZF4sBRj1:3:CL:673:c")))));
+        assertEquals(0, partnerRepo.findBySupportedCredential("671").size());
+        assertEquals(1, partnerRepo.findBySupportedCredential("673").size());
+
+        partnerRepo.deleteByPartnerId(p.getId());
+        assertEquals(0, partnerRepo.findBySupportedCredential("673").size());
+    }
+
     @Test
     void testFindByDidIn() {
         partnerRepo.save(Partner.builder().ariesSupport(Boolean.TRUE).did("did1").connectionId("con1").build());
@@ -234,13 +310,15 @@ class PartnerRepositoryTest {
                 .connectionId("con1")
                 .build());
 
-        partnerRepo.updateVerifiablePresentation(partner.getId(), Map.of(), Boolean.TRUE, "alias", "did:indy:public");
+        partnerRepo.updateVerifiablePresentation(partner.getId(), new VerifiablePresentation<>(), Boolean.TRUE,
+                "alias", "did:indy:public");
 
         Optional<Partner> reload = partnerRepo.findById(partner.getId());
         assertTrue(reload.isPresent());
         assertEquals("alias", reload.get().getLabel());
         assertEquals("did:indy:public", reload.get().getDid());
         assertEquals(Boolean.TRUE, reload.get().getValid());
+        assertNotNull(reload.get().getVerifiablePresentation());
     }
 
     @Test
@@ -284,6 +362,35 @@ class PartnerRepositoryTest {
         assertEquals("both", p.getAlias());
     }
 
+    @Test
+    void testFindPageByKeyset() {
+        Tag tag = tagRepo.save(Tag.builder().name("paged").build());
+        for (int i = 0; i < 5; i++) {
+            Partner p = partnerRepo.save(Partner.builder().did("did:page:" + i).alias("Page " + i)
+                    .ariesSupport(Boolean.FALSE)
+                    .state(i % 2 == 0 ? ConnectionState.ACTIVE : ConnectionState.REQUEST).build());
+            if (i == 4) {
+                tagRepo.createPartnerToTagMapping(p.getId(), tag.getId());
+            }
+        }
+        partnerRepo.save(Partner.builder().did("did:other").label("Other").ariesSupport(Boolean.FALSE).build());
+
+        List<PartnerSummary> first = partnerRepo.findPage(null, null, "page%", null, null, 2);
+        assertEquals(2, first.size());
+        assertEquals("Page 4", first.get(0).getAlias());
+        PartnerSummary last = first.get(1);
+        List<PartnerSummary> second = partnerRepo.findPage(null, null, "page%", last.getUpdatedAt(), last.getId(), 10);
+        assertEquals(3, second.size());
+        assertEquals("Page 0", second.get(2).getAlias());
+
+        assertEquals(3, partnerRepo.findPage(ConnectionState.ACTIVE.name(), null, null, null, null, 10).size());
+        List<PartnerSummary> tagged = partnerRepo.findPage(null, tag.getId(), null, null, null, 10);
+        assertEquals(1, tagged.size());
+        assertEquals("did:page:4", tagged.get(0).getDid());
+        assertEquals(1, partnerRepo.findPage(null, null, "oth%", null, null, 10).size());
+        assertEquals(6, partnerRepo.findPage(null, null, null, null, null, 10).size());
+    }
+
     @Data
     @AllArgsConstructor
     @NoArgsConstructor
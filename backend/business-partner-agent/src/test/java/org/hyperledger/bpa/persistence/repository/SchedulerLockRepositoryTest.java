@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2020-2022 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.persistence.repository;
+
+import io.micronaut.test.extensions.junit5.annotation.MicronautTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@MicronautTest
+class SchedulerLockRepositoryTest {
+
+    @Inject
+    SchedulerLockRepository lockRepo;
+
+    @Test
+    void testOnlyOneInstanceHoldsTheLease() {
+        lockRepo.createIfMissing("job");
+        lockRepo.createIfMissing("job");
+
+        assertEquals(1, lockRepo.tryAcquire("job", "node-a", 60));
+        assertEquals(0, lockRepo.tryAcquire("job", "node-b", 60));
+        assertEquals(0, lockRepo.tryAcquire("job", "node-a", 60));
+
+        assertEquals(1, lockRepo.renew("job", "node-a", 60));
+        assertEquals(0, lockRepo.renew("job", "node-b", 60));
+
+        assertEquals(1, lockRepo.release("job", "node-a", 0));
+        assertEquals(1, lockRepo.tryAcquire("job", "node-b", 60));
+        assertEquals("node-b", lockRepo.findById("job").orElseThrow().getLockedBy());
+    }
+
+    @Test
+    void testReleaseKeepsLeaseForMinInterval() {
+        lockRepo.createIfMissing("job");
+
+        assertEquals(1, lockRepo.tryAcquire("job", "node-a", 60));
+        assertEquals(1, lockRepo.release("job", "node-a", 30));
+        assertEquals(0, lockRepo.tryAcquire("job", "node-b", 60));
+    }
+
+    @Test
+    void testExpiredLeaseIsTakenOver() {
+        lockRepo.createIfMissing("job");
+
+        // node-a died without renewing, its lease expired
+        assertEquals(1, lockRepo.tryAcquire("job", "node-a", 0));
+        assertEquals(1, lockRepo.tryAcquire("job", "node-b", 60));
+        assertEquals(0, lockRepo.renew("job", "node-a", 60));
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2020-2022 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.bpa.persistence.repository;
+
+import io.micronaut.test.extensions.junit5.annotation.MicronautTest;
+import jakarta.inject.Inject;
+import org.hyperledger.bpa.persistence.model.TrustPing;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@MicronautTest
+class TrustPingRepositoryTest {
+
+    @Inject
+    TrustPingRepository pings;
+
+    @Test
+    void testResponseBeforeAndAfterSent() {
+        Instant sent = Instant.now().minus(1, ChronoUnit.MINUTES);
+        pings.recordSent("a", "1", sent);
+        pings.recordResponse("a");
+
+        // response of another instance arrives before the ping was recorded
+        pings.recordResponse("b");
+        pings.recordSent("b", "2", sent);
+
+        pings.recordSent("c", "3", sent);
+
+        List<TrustPing> previous = pings.findBySentAtLessThan(Instant.now());
+        assertEquals(3, previous.size());
+        previous.forEach(p -> assertNotNull(p.getConnectionId()));
+        assertNotNull(pings.findById("a").orElseThrow().getRespondedAt());
+        assertNotNull(pings.findById("b").orElseThrow().getRespondedAt());
+        assertNull(pings.findById("c").orElseThrow().getRespondedAt());
+
+        pings.deleteByThreadIdIn(List.of("a", "b", "c"));
+        assertEquals(0, pings.count());
+    }
+}
@@ -17,6 +17,7 @@ import vuetify from "./plugins/vuetify";
 import router from "./router";
 import store from "./store";
 import SortUtil from "./utils/sortUtils";
+import { acknowledge, ackOnOpen, getLastSeen } from "./utils/eventAckUtils";
 import "@/filters";
 
 import VueJsonPretty from "vue-json-pretty";
@@ -35,7 +36,7 @@ const eventsHost = process.env.VUE_APP_EVENTS_HOST
   : window.location.host;
 const socketApi = `${
   window.location.protocol === "https:" ? "wss" : "ws"
-}://${eventsHost}/${process.env.VUE_APP_EVENTS_PATH}`;
+}://${eventsHost}/${process.env.VUE_APP_EVENTS_PATH}?lastSeen=${getLastSeen()}`;
 
 if (process.env.NODE_ENV === "development") {
   store.commit({
@@ -56,8 +57,18 @@ Vue.use(VueNativeSock, socketApi, {
     let message = event;
     const method = "commit";
     let target = eventName.toUpperCase();
+    if (target === "SOCKET_ONOPEN") {
+      ackOnOpen(event.currentTarget);
+    }
     if (target === "SOCKET_ONMESSAGE" && this.format === "json" && event.data) {
       message = JSON.parse(event.data);
+      if (
+        message.sequence &&
+        !acknowledge(event.currentTarget, message.sequence)
+      ) {
+        // replayed again, it was handled before
+        return;
+      }
       // method = 'dispatch';
       switch (message.message.type) {
         case "ON_MESSAGE_RECEIVED":
@@ -113,6 +113,7 @@ const mutations = {
       case "ON_PARTNER_REQUEST_RECEIVED":
       case "ON_PARTNER_ACCEPTED":
       case "ON_PARTNER_ADDED":
+      case "ON_PARTNER_VERIFIED":
         state.partnerNotifications = addItem(
           state.partnerNotifications,
           payload.message.partner.id,
@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2020-2022 - for information on the respective copyright owner
+ * see the NOTICE file and/or the repository at
+ * https://github.com/hyperledger-labs/business-partner-agent
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+// Notifications that were stored by the backend while no session was connected
+// are replayed with their sequence. The backend keeps them until they are
+// acknowledged, so the sequence of the last one that was handled is sent back,
+// and kept to resume after it on the next connect.
+
+const lastSeenKey = "eventsLastSeen";
+const ackDelay = 500;
+
+let ackTimer: ReturnType<typeof setTimeout> | undefined;
+
+export const getLastSeen = (): number => {
+  return Number(localStorage.getItem(lastSeenKey)) || 0;
+};
+
+const sendAck = (socket: WebSocket, sequence: number) => {
+  if (sequence > 0 && socket.readyState === WebSocket.OPEN) {
+    socket.send(JSON.stringify({ ack: sequence }));
+  }
+};
+
+/**
+ * Acknowledges everything that was handled before the socket (re)connected
+ */
+export const ackOnOpen = (socket: WebSocket) => {
+  sendAck(socket, getLastSeen());
+};
+
+/**
+ * @return false if the replayed notification was already handled
+ */
+export const acknowledge = (socket: WebSocket, sequence: number): boolean => {
+  if (sequence <= getLastSeen()) {
+    return false;
+  }
+  localStorage.setItem(lastSeenKey, String(sequence));
+  // a replay sends many notifications at once, only the last one is acknowledged
+  clearTimeout(ackTimer);
+  ackTimer = setTimeout(() => sendAck(socket, sequence), ackDelay);
+  return true;
+};